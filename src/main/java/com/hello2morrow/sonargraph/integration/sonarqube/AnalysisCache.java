@@ -0,0 +1,190 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Keeps the issues saved for a Sonargraph report in a local cache directory, keyed by a digest of the report files, the active rules, the
+ * configuration and the files of the project. The files of the project are part of the digest, since the secondary locations and
+ * messages of an issue depend on which other files are found in the project (e.g. of duplicate code blocks). An analysis of the same report (e.g. of another branch or pull request) replays the issues of unchanged files
+ * instead of recomputing them. The plugin API the plugin is built against offers no analysis cache, therefore the cache directory needs
+ * to be configured.
+ */
+final class AnalysisCache
+{
+    private static final Logger LOGGER = Loggers.get(AnalysisCache.class);
+    private static final String FORMAT_VERSION = "2";
+    private static final String FILE_SUFFIX = ".idx";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    static final int MAX_CACHED_REPORTS = 10;
+
+    /** Configuration affecting the issues created from a report */
+    private static final List<String> DIGEST_CONFIG_KEYS = Arrays.asList(SonargraphBase.SONARGRAPH_BASE_DIR_KEY,
+            SonargraphBase.ISSUE_CATEGORIES_INCLUDE_KEY, SonargraphBase.ISSUE_CATEGORIES_EXCLUDE_KEY,
+            SonargraphBase.ISSUE_SEVERITIES_INCLUDE_KEY, SonargraphBase.ISSUE_SEVERITIES_EXCLUDE_KEY,
+            SonargraphBase.ISSUE_PROVIDERS_INCLUDE_KEY, SonargraphBase.ISSUE_PROVIDERS_EXCLUDE_KEY,
+            SonargraphBase.MODULES_INCLUDE_KEY, SonargraphBase.MODULES_EXCLUDE_KEY);
+
+    private final File directory;
+
+    AnalysisCache(final File directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * @return The cache, or null if no cache directory is configured
+     */
+    static AnalysisCache create(final Configuration config, final FileSystem fileSystem)
+    {
+        final String path = config.get(SonargraphBase.CACHE_DIR_KEY).orElse("").trim();
+        return path.isEmpty() ? null : new AnalysisCache(fileSystem.resolvePath(path));
+    }
+
+    File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * @param projectFiles The paths of the input files of the project, relative to its base directory
+     */
+    static String computeDigest(final List<File> reportFiles, final String language, final Collection<String> ruleKeys,
+            final Collection<String> projectFiles, final Configuration config) throws IOException
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (final NoSuchAlgorithmException e)
+        {
+            throw new IOException("Digest algorithm not available", e);
+        }
+
+        update(digest, FORMAT_VERSION);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        for (final File nextReportFile : reportFiles)
+        {
+            try (InputStream in = new DigestInputStream(Files.newInputStream(nextReportFile.toPath()), digest))
+            {
+                while (in.read(buffer) != -1)
+                {
+                    //Reading updates the digest
+                }
+            }
+        }
+        update(digest, language);
+        ruleKeys.stream().sorted().forEach(k -> update(digest, k));
+        update(digest, "");
+        projectFiles.stream().sorted().forEach(p -> update(digest, p));
+        for (final String nextKey : DIGEST_CONFIG_KEYS)
+        {
+            update(digest, nextKey + "=" + String.join(",", config.getStringArray(nextKey)));
+        }
+
+        final StringBuilder result = new StringBuilder();
+        for (final byte next : digest.digest())
+        {
+            result.append(String.format("%02x", next));
+        }
+        return result.toString();
+    }
+
+    private static void update(final MessageDigest digest, final String value)
+    {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * @return The issues saved for the digest, or null if there are none
+     */
+    IssueIndex load(final String digest)
+    {
+        final File file = new File(directory, digest + FILE_SUFFIX);
+        if (!file.canRead())
+        {
+            return null;
+        }
+
+        try
+        {
+            final IssueIndex result = IssueIndex.read(file);
+            //Most recently used entries are kept when cleaning up
+            Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+            return result;
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Ignoring cache entry '"
+                    + file.getAbsolutePath() + "'", e);
+            return null;
+        }
+    }
+
+    void store(final String digest, final IssueIndex issueIndex)
+    {
+        final File file = new File(directory, digest + FILE_SUFFIX);
+        try
+        {
+            issueIndex.write(file);
+            removeLeastRecentlyUsed();
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to write cache entry '"
+                    + file.getAbsolutePath() + "'", e);
+        }
+    }
+
+    private void removeLeastRecentlyUsed() throws IOException
+    {
+        final File[] entries = directory.listFiles((d, n) -> n.endsWith(FILE_SUFFIX));
+        if (entries == null || entries.length <= MAX_CACHED_REPORTS)
+        {
+            return;
+        }
+
+        final List<File> sorted = new ArrayList<>(Arrays.asList(entries));
+        sorted.sort(Comparator.comparingLong(File::lastModified).reversed());
+        for (final File nextEntry : sorted.subList(MAX_CACHED_REPORTS, sorted.size()))
+        {
+            Files.deleteIfExists(nextEntry.toPath());
+        }
+    }
+}
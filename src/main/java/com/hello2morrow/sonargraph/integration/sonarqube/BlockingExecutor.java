@@ -0,0 +1,189 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Executes blocking tasks (reading report files), so that several of them can wait for I/O at the same time. If enabled and running on
+ * Java 21 or later, each task runs on its own virtual thread and the number of concurrently running tasks is limited by a semaphore.
+ * Otherwise the tasks run on a fixed pool of platform threads of the size of the limit, which is therefore small by default. The virtual thread
+ * executor is looked up by reflection, since the plugin is compiled for Java 11.
+ */
+final class BlockingExecutor implements AutoCloseable
+{
+    private static final Logger LOGGER = Loggers.get(BlockingExecutor.class);
+    static final int DEFAULT_VIRTUAL_CONCURRENCY_LIMIT = 64;
+    static final int DEFAULT_PLATFORM_CONCURRENCY_LIMIT = 4;
+
+    private final String name;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int concurrencyLimit;
+
+    /**
+     * @param useVirtualThreads Uses virtual threads if available
+     * @param concurrencyLimit Maximum number of tasks running at the same time, 0 for the default of the kind of threads used
+     */
+    BlockingExecutor(final String name, final boolean useVirtualThreads, final int concurrencyLimit)
+    {
+        assert concurrencyLimit >= 0 : "Parameter 'concurrencyLimit' of method 'BlockingExecutor' must be >= 0";
+        this.name = name;
+
+        final ExecutorService virtualThreadExecutor = useVirtualThreads ? createVirtualThreadExecutor() : null;
+        if (virtualThreadExecutor != null)
+        {
+            this.concurrencyLimit = concurrencyLimit > 0 ? concurrencyLimit : DEFAULT_VIRTUAL_CONCURRENCY_LIMIT;
+            executor = virtualThreadExecutor;
+            permits = new Semaphore(this.concurrencyLimit);
+        }
+        else
+        {
+            this.concurrencyLimit = concurrencyLimit > 0 ? concurrencyLimit : DEFAULT_PLATFORM_CONCURRENCY_LIMIT;
+            final AtomicInteger threadCounter = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(this.concurrencyLimit, r ->
+            {
+                final Thread thread = new Thread(r, name + " " + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            permits = null;
+        }
+    }
+
+    /**
+     * @return The executor configured for the analysis
+     */
+    static BlockingExecutor create(final Configuration config)
+    {
+        final boolean useVirtualThreads = config.getBoolean(SonargraphBase.VIRTUAL_THREADS_KEY).orElse(Boolean.FALSE)
+                .booleanValue();
+        final int configuredLimit = config.getInt(SonargraphBase.IO_CONCURRENCY_KEY).orElse(0);
+        final BlockingExecutor result = new BlockingExecutor(
+                SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + " I/O", useVirtualThreads, Math.max(configuredLimit, 0));
+        if (useVirtualThreads && !result.isVirtual())
+        {
+            LOGGER.info("{}: Virtual threads are not available on Java {}, using {} platform thread(s) for blocking I/O",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, System.getProperty("java.version"),
+                    result.getConcurrencyLimit());
+        }
+        return result;
+    }
+
+    private static ExecutorService createVirtualThreadExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (final ReflectiveOperationException | RuntimeException e)
+        {
+            LOGGER.debug("{}: Unable to create virtual thread executor: {}",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, e.toString());
+            return null;
+        }
+    }
+
+    boolean isVirtual()
+    {
+        return permits != null;
+    }
+
+    int getConcurrencyLimit()
+    {
+        return concurrencyLimit;
+    }
+
+    <T> Future<T> submit(final Callable<T> task)
+    {
+        if (permits == null)
+        {
+            return executor.submit(task);
+        }
+        //The permit is acquired on the virtual thread, so that submitting never blocks.
+        return executor.submit(() ->
+        {
+            permits.acquire();
+            try
+            {
+                return task.call();
+            }
+            finally
+            {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Processes the items concurrently and waits until all of them have been processed.
+     *
+     * @throws IllegalStateException if processing of an item failed or waiting has been interrupted
+     */
+    <T> void forEach(final Collection<T> items, final Consumer<T> action)
+    {
+        final List<Future<Object>> processing = new ArrayList<>(items.size());
+        for (final T nextItem : items)
+        {
+            processing.add(submit(() ->
+            {
+                action.accept(nextItem);
+                return null;
+            }));
+        }
+
+        try
+        {
+            for (final Future<Object> next : processing)
+            {
+                next.get();
+            }
+        }
+        catch (final ExecutionException e)
+        {
+            processing.forEach(f -> f.cancel(true));
+            throw new IllegalStateException(name + " failed", e.getCause());
+        }
+        catch (final InterruptedException e)
+        {
+            processing.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + name, e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,413 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compact form of the custom rules, stored next to the custom rules properties file. It additionally records the analysis in which each
+ * rule has been seen last, so that rules of script or plugin issue types that are no longer reported can be dropped. All projects
+ * analyzed by the same user share the custom rules, therefore the analyses are counted per project. A rule is only dropped if none of the
+ * projects that have seen it has seen it in its last analyses.
+ * <p>
+ * The custom rules of an issue type only differ by severity, their name, category, tags and description are stored once per issue type
+ * in a string table. The whole file is read with a single sequential read. Binary format:
+ *
+ * <pre>
+ * int magic, int version
+ * int number of strings, UTF string*
+ * int number of projects, (int project, int number of completed analyses)*
+ * int number of issue types, (int base key, int name, int category, int tags, int description, int number of severities,
+ *         (int key suffix, int severity, int number of projects, (int project, int last seen analysis)*)*)*
+ * </pre>
+ *
+ * All ints except the counts and analyses are indexes into the string table. Issue types and severities are sorted by key.
+ */
+final class CustomRuleIndex
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomRuleIndex.class);
+
+    static final String FILE_NAME = "SonargraphRules.idx";
+    private static final int MAGIC = 0x53475249;
+    private static final int VERSION = 2;
+    private static final String SEPARATOR = "|";
+    private static final Pattern SEPARATOR_PATTERN = Pattern.compile(Pattern.quote(SEPARATOR));
+    private static final char KEY_SUFFIX_SEPARATOR = '_';
+    private static final int NUMBER_OF_VALUE_PARTS = 5;
+    private static final int SEVERITY_PART = 3;
+
+    /**
+     * The parts of a rule value except the severity, with the severity part left empty.
+     */
+    private static final class IssueType
+    {
+        private final String baseKey;
+        private final String[] parts;
+        private final Map<String, Rule> severities = new LinkedHashMap<>();
+
+        IssueType(final String baseKey, final String[] parts)
+        {
+            this.baseKey = baseKey;
+            this.parts = parts;
+        }
+    }
+
+    private static final class Rule
+    {
+        private final String value;
+        /** The last analysis of each project the rule has been seen in */
+        private final Map<String, Integer> lastSeen;
+
+        Rule(final String value, final Map<String, Integer> lastSeen)
+        {
+            this.value = value;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    private final Map<String, Rule> rules = new TreeMap<>();
+    private final Map<String, Integer> completedAnalyses = new TreeMap<>();
+
+    private int getCompletedAnalyses(final String project)
+    {
+        return completedAnalyses.getOrDefault(project, Integer.valueOf(0)).intValue();
+    }
+
+    /**
+     * @return The number of the analysis of the project in progress
+     */
+    int getCurrentAnalysis(final String project)
+    {
+        return getCompletedAnalyses(project) + 1;
+    }
+
+    int size()
+    {
+        return rules.size();
+    }
+
+    /**
+     * @param value The rule in the format of the custom rules properties file
+     */
+    void put(final String project, final String key, final String value)
+    {
+        final Rule existing = rules.get(key);
+        final Rule rule = new Rule(value, existing != null ? existing.lastSeen : new TreeMap<>());
+        rules.put(key, rule);
+        rule.lastSeen.put(project, Integer.valueOf(getCurrentAnalysis(project)));
+    }
+
+    void markSeen(final String project, final String key)
+    {
+        final Rule rule = rules.get(key);
+        if (rule != null)
+        {
+            rule.lastSeen.put(project, Integer.valueOf(getCurrentAnalysis(project)));
+        }
+    }
+
+    /**
+     * Completes the analysis of the project in progress and drops the rules that have not been seen in the last analyses of any project.
+     * Rules that no project has seen yet (e.g. only known from the properties file) are counted as unseen since the first analysis of
+     * the project.
+     *
+     * @param retention Number of analyses a rule is kept without being seen, 0 to keep all rules
+     * @return The number of dropped rules
+     */
+    int completeAnalysis(final String project, final int retention)
+    {
+        final int completed = getCompletedAnalyses(project) + 1;
+        completedAnalyses.put(project, Integer.valueOf(completed));
+        if (retention <= 0)
+        {
+            return 0;
+        }
+
+        int dropped = 0;
+        for (final Iterator<Entry<String, Rule>> iter = rules.entrySet().iterator(); iter.hasNext();)
+        {
+            final Entry<String, Rule> next = iter.next();
+            if (isUnseen(next.getValue(), completed, retention))
+            {
+                LOGGER.info("{}: Dropping custom rule '{}', it has not been seen in the last {} analyses",
+                        SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, next.getKey(), retention);
+                iter.remove();
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    private boolean isUnseen(final Rule rule, final int completedByProject, final int retention)
+    {
+        if (rule.lastSeen.isEmpty())
+        {
+            return completedByProject >= retention;
+        }
+        for (final Entry<String, Integer> next : rule.lastSeen.entrySet())
+        {
+            if (getCompletedAnalyses(next.getKey()) - next.getValue().intValue() < retention)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes over the rules of the properties, keeping the analyses the rules have been seen last from this index.
+     */
+    CustomRuleIndex update(final Properties properties)
+    {
+        final CustomRuleIndex result = new CustomRuleIndex();
+        result.completedAnalyses.putAll(completedAnalyses);
+        for (final String nextKey : properties.stringPropertyNames())
+        {
+            final Rule existing = rules.get(nextKey);
+            result.rules.put(nextKey, new Rule(properties.getProperty(nextKey),
+                    existing != null ? existing.lastSeen : new TreeMap<>()));
+        }
+        return result;
+    }
+
+    void copyTo(final Properties properties)
+    {
+        properties.clear();
+        for (final Entry<String, Rule> next : rules.entrySet())
+        {
+            properties.setProperty(next.getKey(), next.getValue().value);
+        }
+    }
+
+    void write(final File file) throws IOException
+    {
+        final Map<String, Integer> strings = new LinkedHashMap<>();
+        final List<IssueType> issueTypes = groupByIssueType(strings);
+
+        for (final String nextProject : completedAnalyses.keySet())
+        {
+            strings.computeIfAbsent(nextProject, s -> Integer.valueOf(strings.size()));
+        }
+        for (final Rule nextRule : rules.values())
+        {
+            for (final String nextProject : nextRule.lastSeen.keySet())
+            {
+                strings.computeIfAbsent(nextProject, s -> Integer.valueOf(strings.size()));
+            }
+        }
+
+        //Concurrent analyses of other projects might write the index at the same time, each one writes its own file.
+        final Path directory = file.getAbsoluteFile().getParentFile().toPath();
+        final Path tempFile = Files.createTempFile(directory, FILE_NAME, ".tmp");
+        try
+        {
+            try (OutputStream outputStream = Files.newOutputStream(tempFile);
+                    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream)))
+            {
+                write(output, strings, issueTypes);
+            }
+            moveAtomically(tempFile, file.toPath());
+        }
+        finally
+        {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void moveAtomically(final Path source, final Path target) throws IOException
+    {
+        try
+        {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (final AtomicMoveNotSupportedException e)
+        {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void write(final DataOutputStream output, final Map<String, Integer> strings,
+            final List<IssueType> issueTypes) throws IOException
+    {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(strings.size());
+        for (final String next : strings.keySet())
+        {
+            output.writeUTF(next);
+        }
+        output.writeInt(completedAnalyses.size());
+        for (final Entry<String, Integer> next : completedAnalyses.entrySet())
+        {
+            output.writeInt(strings.get(next.getKey()).intValue());
+            output.writeInt(next.getValue().intValue());
+        }
+        output.writeInt(issueTypes.size());
+        for (final IssueType nextIssueType : issueTypes)
+        {
+            output.writeInt(strings.get(nextIssueType.baseKey).intValue());
+            for (int i = 0; i < NUMBER_OF_VALUE_PARTS; i++)
+            {
+                if (i != SEVERITY_PART)
+                {
+                    output.writeInt(strings.get(nextIssueType.parts[i]).intValue());
+                }
+            }
+            output.writeInt(nextIssueType.severities.size());
+            for (final Entry<String, Rule> nextSeverity : nextIssueType.severities.entrySet())
+            {
+                output.writeInt(strings.get(nextSeverity.getKey()).intValue());
+                output.writeInt(strings.get(getParts(nextSeverity.getValue().value)[SEVERITY_PART]).intValue());
+                final Map<String, Integer> lastSeen = nextSeverity.getValue().lastSeen;
+                output.writeInt(lastSeen.size());
+                for (final Entry<String, Integer> nextLastSeen : lastSeen.entrySet())
+                {
+                    output.writeInt(strings.get(nextLastSeen.getKey()).intValue());
+                    output.writeInt(nextLastSeen.getValue().intValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Rules with the same base key and the same value parts except the severity belong to the same issue type. Rules with an invalid
+     * value are dropped, they cannot be converted to a rule anyway.
+     */
+    private List<IssueType> groupByIssueType(final Map<String, Integer> strings)
+    {
+        final List<IssueType> result = new ArrayList<>();
+        final Map<String, IssueType> issueTypes = new HashMap<>();
+        for (final Iterator<Entry<String, Rule>> iter = rules.entrySet().iterator(); iter.hasNext();)
+        {
+            final Entry<String, Rule> next = iter.next();
+            final String[] parts = getParts(next.getValue().value);
+            if (parts.length != NUMBER_OF_VALUE_PARTS)
+            {
+                LOGGER.warn("{}: Dropping invalid custom rule '{}={}'", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                        next.getKey(), next.getValue().value);
+                iter.remove();
+                continue;
+            }
+
+            final String key = next.getKey();
+            final int suffixIndex = key.lastIndexOf(KEY_SUFFIX_SEPARATOR);
+            final String baseKey = suffixIndex < 0 ? key : key.substring(0, suffixIndex);
+            final String suffix = suffixIndex < 0 ? "" : key.substring(suffixIndex);
+            final String severity = parts[SEVERITY_PART];
+            parts[SEVERITY_PART] = "";
+            final IssueType issueType = issueTypes.computeIfAbsent(baseKey + SEPARATOR + String.join(SEPARATOR, parts),
+                    k ->
+                    {
+                        final IssueType created = new IssueType(baseKey, parts);
+                        result.add(created);
+                        return created;
+                    });
+            issueType.severities.put(suffix, next.getValue());
+
+            for (final String nextString : new String[] { baseKey, parts[0], parts[1], parts[2], parts[4], suffix,
+                    severity })
+            {
+                strings.computeIfAbsent(nextString, s -> Integer.valueOf(strings.size()));
+            }
+        }
+        return result;
+    }
+
+    private static String[] getParts(final String value)
+    {
+        return SEPARATOR_PATTERN.split(value, -1);
+    }
+
+    static CustomRuleIndex read(final File file) throws IOException
+    {
+        final byte[] content = Files.readAllBytes(file.toPath());
+        final CustomRuleIndex result = new CustomRuleIndex();
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(content)))
+        {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+            {
+                throw new IOException("Unsupported custom rules index format in '" + file.getAbsolutePath() + "'");
+            }
+            final String[] strings = new String[input.readInt()];
+            for (int i = 0; i < strings.length; i++)
+            {
+                strings[i] = input.readUTF();
+            }
+            final int numberOfProjects = input.readInt();
+            for (int i = 0; i < numberOfProjects; i++)
+            {
+                result.completedAnalyses.put(strings[input.readInt()], Integer.valueOf(input.readInt()));
+            }
+
+            final int numberOfIssueTypes = input.readInt();
+            final String[] parts = new String[NUMBER_OF_VALUE_PARTS];
+            for (int i = 0; i < numberOfIssueTypes; i++)
+            {
+                final String baseKey = strings[input.readInt()];
+                for (int j = 0; j < NUMBER_OF_VALUE_PARTS; j++)
+                {
+                    if (j != SEVERITY_PART)
+                    {
+                        parts[j] = strings[input.readInt()];
+                    }
+                }
+                final int numberOfSeverities = input.readInt();
+                for (int j = 0; j < numberOfSeverities; j++)
+                {
+                    final String suffix = strings[input.readInt()];
+                    parts[SEVERITY_PART] = strings[input.readInt()];
+                    final Map<String, Integer> lastSeen = new TreeMap<>();
+                    final int numberOfLastSeen = input.readInt();
+                    for (int k = 0; k < numberOfLastSeen; k++)
+                    {
+                        lastSeen.put(strings[input.readInt()], Integer.valueOf(input.readInt()));
+                    }
+                    result.rules.put(baseKey + suffix, new Rule(String.join(SEPARATOR, parts), lastSeen));
+                }
+            }
+        }
+        catch (final ArrayIndexOutOfBoundsException e)
+        {
+            throw new IOException("Corrupt custom rules index '" + file.getAbsolutePath() + "'", e);
+        }
+        return result;
+    }
+}
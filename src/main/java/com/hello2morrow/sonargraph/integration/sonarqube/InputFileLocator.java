@@ -0,0 +1,69 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+
+import com.hello2morrow.sonargraph.integration.access.model.ISourceFile;
+
+/**
+ * Locates the SonarQube input files of Sonargraph source files underneath a base directory. Each source file is looked up only once,
+ * since it is needed for its own issues as well as for secondary locations of issues on other source files. The root directories shared
+ * by the source files are resolved once. The locator is used concurrently for the source files of a module.
+ */
+final class InputFileLocator
+{
+    private final FileSystem sqFileSystem;
+    private final String baseDirectory;
+    private final Map<ISourceFile, Optional<InputFile>> located = new ConcurrentHashMap<>();
+    private final Map<String, Path> rootDirectories = new ConcurrentHashMap<>();
+
+    InputFileLocator(final FileSystem sqFileSystem, final String baseDirectory)
+    {
+        this.sqFileSystem = sqFileSystem;
+        this.baseDirectory = baseDirectory;
+    }
+
+    String getBaseDirectory()
+    {
+        return baseDirectory;
+    }
+
+    String getAbsolutePath(final ISourceFile sourceFile)
+    {
+        final Path rootDirectory = rootDirectories.computeIfAbsent(sourceFile.getRelativeRootDirectory(),
+                r -> Paths.get(baseDirectory, r).toAbsolutePath().normalize());
+        return rootDirectory.resolve(sourceFile.getRelativePath()).normalize().toString();
+    }
+
+    /**
+     * @return The input file or null, if it is not part of the SonarQube project.
+     */
+    InputFile locate(final ISourceFile sourceFile)
+    {
+        return located.computeIfAbsent(sourceFile, f -> Optional.ofNullable(
+                sqFileSystem.inputFile(sqFileSystem.predicates().hasAbsolutePath(getAbsolutePath(f))))).orElse(null);
+    }
+}
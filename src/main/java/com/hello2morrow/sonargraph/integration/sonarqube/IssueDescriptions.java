@@ -0,0 +1,86 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+import com.hello2morrow.sonargraph.integration.access.model.ISourceFile;
+
+/**
+ * Creates the messages of SonarQube issues for the issues of one report. A message is assembled from fragments (presentation name or
+ * resolution, description, detail, provider), so that issues converted into a {@link ModuleIssuePartition} only need to keep the ids of
+ * their fragments.
+ */
+final class IssueDescriptions
+{
+    private final ResolutionIndex resolutionIndex;
+
+    IssueDescriptions(final ResolutionIndex resolutionIndex)
+    {
+        this.resolutionIndex = resolutionIndex;
+    }
+
+    String create(final IIssue issue)
+    {
+        return create(createPrefix(issue), issue.getDescription(), "", issue.getIssueProvider().getPresentationName());
+    }
+
+    /**
+     * @return The presentation name of the issue in brackets, together with its resolution if it has one
+     */
+    String createPrefix(final IIssue issue)
+    {
+        final ResolutionIndex.Resolution resolution = resolutionIndex.getResolution(issue);
+        if (resolution == null)
+        {
+            return "[" + issue.getPresentationName() + "]";
+        }
+        final StringBuilder result = new StringBuilder();
+        resolution.appendTo(result, issue);
+        return result.toString();
+    }
+
+    /**
+     * @param detail Appended to the description, empty if there is none
+     * @param provider Presentation name of the issue provider
+     */
+    static String create(final String prefix, final String description, final String detail, final String provider)
+    {
+        final StringBuilder result = new StringBuilder(prefix);
+        result.append(" ").append(description);
+        if (!detail.isEmpty())
+        {
+            result.append(" ").append(detail);
+        }
+        result.append(" [").append(provider).append("]");
+        return result.toString();
+    }
+
+    /**
+     * The other occurrences of a duplicate code block are reported as secondary locations. Only the ones that are not part of the
+     * SonarQube project are mentioned in the detail of the message, so that the message remains stable.
+     */
+    static void appendUnlocatedOccurrence(final StringBuilder detail, final ISourceFile sourceFile, final int startLine,
+            final int blockSize)
+    {
+        detail.append(detail.length() == 0 ? "Duplicate of " : ", ");
+        detail.append(sourceFile.getRelativePath() != null ? sourceFile.getRelativePath()
+                : sourceFile.getPresentationName());
+        detail.append(" line(s) ").append(startLine);
+        detail.append("-").append(startLine + blockSize - 1);
+    }
+}
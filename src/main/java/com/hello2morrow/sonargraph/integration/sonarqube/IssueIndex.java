@@ -0,0 +1,451 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sonar.api.batch.fs.InputFile;
+
+import com.hello2morrow.sonargraph.integration.access.foundation.Utility;
+
+/**
+ * Compact per-file index of the issues saved by {@link SonargraphSensor}, keyed by the path of the file relative to the project base
+ * directory. It allows {@link SonargraphIssueIndexSensor} to report the issues of a single file without parsing the XML report, and
+ * {@link AnalysisCache} to replay the issues of unchanged files.
+ * <p>
+ * Text format, sorted by path:
+ *
+ * <pre>
+ * #Sonargraph issue index 2
+ * relative/path/of/File.java\t&lt;MD5 hash of the file&gt;
+ * \t&lt;rule key&gt;\t&lt;start line&gt;\t&lt;end line&gt;\t&lt;message&gt;[\t&lt;path&gt;\t&lt;start line&gt;\t&lt;end line&gt;\t&lt;message&gt;]*
+ * </pre>
+ *
+ * The optional groups of an issue line are its secondary locations. A start line of 0 means the location refers to the whole file. Tabs,
+ * line breaks and backslashes of messages are escaped.
+ * <p>
+ * Rule keys, the paths of secondary locations and messages are shared within the index, as many issues refer to the same files with the
+ * same messages (e.g. all files of a cycle group).
+ */
+final class IssueIndex
+{
+    static final String HEADER = "#Sonargraph issue index 2";
+    private static final int LOCATION_PARTS = 4;
+    //Empty part in front of the leading separator, rule key, start line, end line and message
+    private static final int ISSUE_PARTS = 5;
+    private static final char SEPARATOR = '\t';
+    private static final char ESCAPE = '\\';
+
+    private static final class CachedIndex
+    {
+        private final long lastModified;
+        private final IssueIndex index;
+
+        CachedIndex(final long lastModified, final IssueIndex index)
+        {
+            this.lastModified = lastModified;
+            this.index = index;
+        }
+    }
+
+    /** Loading an index once per modification is sufficient for repeated analyses in the same process (e.g. in the IDE). */
+    private static final Map<Path, CachedIndex> LOADED = new ConcurrentHashMap<>();
+
+    static final class Location
+    {
+        private final String path;
+        private final int startLine;
+        private final int endLine;
+        private final String message;
+
+        Location(final String path, final int startLine, final int endLine, final String message)
+        {
+            this.path = path;
+            this.startLine = startLine;
+            this.endLine = endLine;
+            this.message = message;
+        }
+
+        String getPath()
+        {
+            return path;
+        }
+
+        int getStartLine()
+        {
+            return startLine;
+        }
+
+        int getEndLine()
+        {
+            return endLine;
+        }
+
+        String getMessage()
+        {
+            return message;
+        }
+    }
+
+    static final class Entry
+    {
+        private final String ruleKey;
+        private final int startLine;
+        private final int endLine;
+        private final String message;
+        private List<Location> secondaryLocations;
+
+        Entry(final String ruleKey, final int startLine, final int endLine, final String message)
+        {
+            this(ruleKey, startLine, endLine, message, Collections.emptyList());
+        }
+
+        Entry(final String ruleKey, final int startLine, final int endLine, final String message,
+                final List<Location> secondaryLocations)
+        {
+            this.ruleKey = ruleKey;
+            this.startLine = startLine;
+            this.endLine = endLine;
+            this.message = message;
+            this.secondaryLocations = secondaryLocations;
+        }
+
+        String getRuleKey()
+        {
+            return ruleKey;
+        }
+
+        List<Location> getSecondaryLocations()
+        {
+            return Collections.unmodifiableList(secondaryLocations);
+        }
+
+        /**
+         * Adds a secondary location to an entry created without secondary locations or with a modifiable list of them.
+         */
+        void addSecondaryLocation(final Location location)
+        {
+            if (secondaryLocations.isEmpty())
+            {
+                secondaryLocations = new ArrayList<>(2);
+            }
+            secondaryLocations.add(location);
+        }
+
+        int getStartLine()
+        {
+            return startLine;
+        }
+
+        int getEndLine()
+        {
+            return endLine;
+        }
+
+        String getMessage()
+        {
+            return message;
+        }
+    }
+
+    private final Map<String, List<Entry>> pathToEntries = new TreeMap<>();
+    private final Map<String, String> pathToHash = new HashMap<>();
+    private final StringPool stringPool = new StringPool();
+    private int size;
+
+    /**
+     * @return The path of the input file relative to the base directory in universal form, the key of the index
+     */
+    static String createKey(final File baseDirectory, final InputFile inputFile)
+    {
+        final Path filePath = Paths.get(inputFile.uri());
+        return Utility.convertPathToUniversalForm(baseDirectory.toPath().toAbsolutePath().normalize()
+                .relativize(filePath.toAbsolutePath().normalize()).toString());
+    }
+
+    /**
+     * @return The entry with the rule key and message shared with the other entries of the index
+     */
+    Entry createEntry(final String ruleKey, final int startLine, final int endLine, final String message,
+            final List<Location> secondaryLocations)
+    {
+        return new Entry(stringPool.share(ruleKey), startLine, endLine, stringPool.share(message),
+                secondaryLocations);
+    }
+
+    /**
+     * @return The secondary location with the path and message shared with the other locations of the index
+     */
+    Location createLocation(final String path, final int startLine, final int endLine, final String message)
+    {
+        return new Location(stringPool.share(path), startLine, endLine, stringPool.share(message));
+    }
+
+    /**
+     * @param hash MD5 hash of the file content, null if unknown
+     */
+    void add(final String path, final String hash, final Entry entry)
+    {
+        pathToEntries.computeIfAbsent(path, k -> new ArrayList<>()).add(entry);
+        if (hash != null)
+        {
+            pathToHash.put(path, hash);
+        }
+        size++;
+    }
+
+    Set<String> getPaths()
+    {
+        return Collections.unmodifiableSet(pathToEntries.keySet());
+    }
+
+    /**
+     * @return The MD5 hash of the file content when the index has been created, null if unknown
+     */
+    String getHash(final String path)
+    {
+        return pathToHash.get(path);
+    }
+
+    List<Entry> get(final String path)
+    {
+        final List<Entry> entries = pathToEntries.get(path);
+        return entries != null ? Collections.unmodifiableList(entries) : Collections.emptyList();
+    }
+
+    int getNumberOfFiles()
+    {
+        return pathToEntries.size();
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    void write(final File file) throws IOException
+    {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+        {
+            Files.createDirectories(parent.toPath());
+        }
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+        {
+            write(writer);
+        }
+    }
+
+    void write(final Writer writer) throws IOException
+    {
+        writer.write(HEADER);
+        writer.write('\n');
+        for (final Map.Entry<String, List<Entry>> nextPath : pathToEntries.entrySet())
+        {
+            writer.write(nextPath.getKey());
+            final String hash = pathToHash.get(nextPath.getKey());
+            if (hash != null)
+            {
+                writer.write(SEPARATOR);
+                writer.write(hash);
+            }
+            writer.write('\n');
+            for (final Entry nextEntry : nextPath.getValue())
+            {
+                writer.write(SEPARATOR);
+                writer.write(nextEntry.getRuleKey());
+                writeLocation(writer, nextEntry.getStartLine(), nextEntry.getEndLine(), nextEntry.getMessage());
+                for (final Location nextLocation : nextEntry.getSecondaryLocations())
+                {
+                    writer.write(SEPARATOR);
+                    writer.write(nextLocation.getPath());
+                    writeLocation(writer, nextLocation.getStartLine(), nextLocation.getEndLine(),
+                            nextLocation.getMessage());
+                }
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static void writeLocation(final Writer writer, final int startLine, final int endLine,
+            final String message) throws IOException
+    {
+        writer.write(SEPARATOR);
+        writer.write(Integer.toString(startLine));
+        writer.write(SEPARATOR);
+        writer.write(Integer.toString(endLine));
+        writer.write(SEPARATOR);
+        writer.write(escape(message));
+    }
+
+    static IssueIndex read(final File file) throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+        {
+            return read(reader, "'" + file.getAbsolutePath() + "'");
+        }
+    }
+
+    /**
+     * Reads the index up to the end of the reader or to the first empty line, whatever comes first.
+     *
+     * @param source Description of the source used in error messages
+     */
+    static IssueIndex read(final BufferedReader reader, final String source) throws IOException
+    {
+        final IssueIndex index = new IssueIndex();
+        final String header = reader.readLine();
+        if (!HEADER.equals(header))
+        {
+            throw new IOException("Unsupported issue index format in " + source + ": " + header);
+        }
+
+        String path = null;
+        String hash = null;
+        String line;
+        int lineNumber = 1;
+        while ((line = reader.readLine()) != null && !line.isEmpty())
+        {
+            lineNumber++;
+            if (line.charAt(0) != SEPARATOR)
+            {
+                final int separatorIndex = line.indexOf(SEPARATOR);
+                path = separatorIndex < 0 ? line : line.substring(0, separatorIndex);
+                hash = separatorIndex < 0 ? null : line.substring(separatorIndex + 1);
+                continue;
+            }
+
+            final String[] parts = line.split(String.valueOf(SEPARATOR), -1);
+            if (path == null || parts.length < ISSUE_PARTS || (parts.length - ISSUE_PARTS) % LOCATION_PARTS != 0)
+            {
+                throw new IOException("Invalid line " + lineNumber + " in issue index " + source);
+            }
+            try
+            {
+                final List<Location> secondaryLocations = new ArrayList<>();
+                for (int i = ISSUE_PARTS; i < parts.length; i += LOCATION_PARTS)
+                {
+                    secondaryLocations.add(index.createLocation(parts[i], Integer.parseInt(parts[i + 1]),
+                            Integer.parseInt(parts[i + 2]), unescape(parts[i + 3])));
+                }
+                index.add(path, hash, index.createEntry(parts[1], Integer.parseInt(parts[2]),
+                        Integer.parseInt(parts[3]), unescape(parts[4]),
+                        secondaryLocations.isEmpty() ? Collections.emptyList() : secondaryLocations));
+            }
+            catch (final NumberFormatException e)
+            {
+                throw new IOException("Invalid line " + lineNumber + " in issue index " + source, e);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return The index, re-read only if the file has been modified since it was last loaded
+     */
+    static IssueIndex load(final File file) throws IOException
+    {
+        final Path path = file.toPath().toAbsolutePath().normalize();
+        final long lastModified = Files.getLastModifiedTime(path).toMillis();
+        final CachedIndex cached = LOADED.get(path);
+        if (cached != null && cached.lastModified == lastModified)
+        {
+            return cached.index;
+        }
+
+        final IssueIndex index = read(file);
+        LOADED.put(path, new CachedIndex(lastModified, index));
+        return index;
+    }
+
+    static String escape(final String text)
+    {
+        final StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++)
+        {
+            final char next = text.charAt(i);
+            switch (next)
+            {
+            case ESCAPE:
+                result.append(ESCAPE).append(ESCAPE);
+                break;
+            case SEPARATOR:
+                result.append(ESCAPE).append('t');
+                break;
+            case '\n':
+                result.append(ESCAPE).append('n');
+                break;
+            case '\r':
+                result.append(ESCAPE).append('r');
+                break;
+            default:
+                result.append(next);
+                break;
+            }
+        }
+        return result.toString();
+    }
+
+    static String unescape(final String text)
+    {
+        final StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++)
+        {
+            final char next = text.charAt(i);
+            if (next != ESCAPE || i + 1 == text.length())
+            {
+                result.append(next);
+                continue;
+            }
+
+            i++;
+            final char escaped = text.charAt(i);
+            switch (escaped)
+            {
+            case 't':
+                result.append(SEPARATOR);
+                break;
+            case 'n':
+                result.append('\n');
+                break;
+            case 'r':
+                result.append('\r');
+                break;
+            default:
+                result.append(escaped);
+                break;
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,257 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueProvider;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
+import com.hello2morrow.sonargraph.integration.access.model.Severity;
+
+/**
+ * The issue categories, severities, providers and modules selected by the user. Each property is a comma-separated list, an empty
+ * include list selects everything. Excludes take precedence over includes. Categories and providers are matched case-insensitively by
+ * name or presentation name, modules by name using glob patterns ('*', '?'). Modules that are not selected are not processed at all,
+ * the other checks are done once per issue type and provider.
+ */
+final class IssueSelection
+{
+    private static final Logger LOGGER = Loggers.get(IssueSelection.class);
+
+    /** The properties the selection is created from */
+    static final List<String> KEYS = Collections.unmodifiableList(Arrays.asList(
+            SonargraphBase.ISSUE_CATEGORIES_INCLUDE_KEY, SonargraphBase.ISSUE_CATEGORIES_EXCLUDE_KEY,
+            SonargraphBase.ISSUE_SEVERITIES_INCLUDE_KEY, SonargraphBase.ISSUE_SEVERITIES_EXCLUDE_KEY,
+            SonargraphBase.ISSUE_PROVIDERS_INCLUDE_KEY, SonargraphBase.ISSUE_PROVIDERS_EXCLUDE_KEY,
+            SonargraphBase.MODULES_INCLUDE_KEY, SonargraphBase.MODULES_EXCLUDE_KEY));
+
+    private final Set<String> includedCategories;
+    private final Set<String> excludedCategories;
+    private final Set<Severity> includedSeverities;
+    private final Set<Severity> excludedSeverities;
+    private final Set<String> includedProviders;
+    private final Set<String> excludedProviders;
+    private final List<Pattern> includedModules;
+    private final List<Pattern> excludedModules;
+    private final Map<IIssueType, Map<IIssueProvider, Boolean>> issueTypeToSelected = new HashMap<>();
+
+    private IssueSelection(final Set<String> includedCategories, final Set<String> excludedCategories,
+            final Set<Severity> includedSeverities, final Set<Severity> excludedSeverities,
+            final Set<String> includedProviders, final Set<String> excludedProviders, final List<Pattern> includedModules,
+            final List<Pattern> excludedModules)
+    {
+        this.includedCategories = includedCategories;
+        this.excludedCategories = excludedCategories;
+        this.includedSeverities = includedSeverities;
+        this.excludedSeverities = excludedSeverities;
+        this.includedProviders = includedProviders;
+        this.excludedProviders = excludedProviders;
+        this.includedModules = includedModules;
+        this.excludedModules = excludedModules;
+    }
+
+    static IssueSelection create(final Configuration config)
+    {
+        return create(config::getStringArray);
+    }
+
+    /**
+     * @param config Returns the values of a property, an empty array if it is not set
+     */
+    static IssueSelection create(final Function<String, String[]> config)
+    {
+        final IssueSelection selection = new IssueSelection(getNames(config, SonargraphBase.ISSUE_CATEGORIES_INCLUDE_KEY),
+                getNames(config, SonargraphBase.ISSUE_CATEGORIES_EXCLUDE_KEY),
+                getSeverities(config, SonargraphBase.ISSUE_SEVERITIES_INCLUDE_KEY),
+                getSeverities(config, SonargraphBase.ISSUE_SEVERITIES_EXCLUDE_KEY),
+                getNames(config, SonargraphBase.ISSUE_PROVIDERS_INCLUDE_KEY),
+                getNames(config, SonargraphBase.ISSUE_PROVIDERS_EXCLUDE_KEY),
+                getPatterns(config, SonargraphBase.MODULES_INCLUDE_KEY),
+                getPatterns(config, SonargraphBase.MODULES_EXCLUDE_KEY));
+        if (!selection.isSelectingAll())
+        {
+            LOGGER.info("{}: Issue selection active - categories {}/{}, severities {}/{}, providers {}/{}, modules {}/{} (include/exclude)",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, selection.includedCategories,
+                    selection.excludedCategories, selection.includedSeverities, selection.excludedSeverities,
+                    selection.includedProviders, selection.excludedProviders, selection.includedModules,
+                    selection.excludedModules);
+        }
+        return selection;
+    }
+
+    boolean isSelectingAll()
+    {
+        return includedCategories.isEmpty() && excludedCategories.isEmpty() && includedSeverities.isEmpty()
+                && excludedSeverities.isEmpty() && includedProviders.isEmpty() && excludedProviders.isEmpty()
+                && includedModules.isEmpty() && excludedModules.isEmpty();
+    }
+
+    boolean isSelected(final String moduleName)
+    {
+        if (matches(excludedModules, moduleName))
+        {
+            return false;
+        }
+        return includedModules.isEmpty() || matches(includedModules, moduleName);
+    }
+
+    boolean isSelected(final IIssue issue)
+    {
+        final Severity severity = issue.getSeverity();
+        if (excludedSeverities.contains(severity)
+                || (!includedSeverities.isEmpty() && !includedSeverities.contains(severity)))
+        {
+            return false;
+        }
+
+        //Issues of the same type can have different providers
+        final IIssueProvider provider = issue.getIssueProvider();
+        return issueTypeToSelected.computeIfAbsent(issue.getIssueType(), t -> new HashMap<>())
+                .computeIfAbsent(provider, p -> Boolean.valueOf(isSelected(issue.getIssueType(), p))).booleanValue();
+    }
+
+    private boolean isSelected(final IIssueType issueType, final IIssueProvider provider)
+    {
+        final String categoryName = SonargraphBase.toLowerCase(issueType.getCategory().getName(), true);
+        final String categoryPresentationName = SonargraphBase
+                .toLowerCase(issueType.getCategory().getPresentationName(), true);
+        if (!isSelected(includedCategories, excludedCategories, categoryName, categoryPresentationName))
+        {
+            return false;
+        }
+
+        final String providerName = provider != null ? SonargraphBase.toLowerCase(provider.getName(), true) : "";
+        final String providerPresentationName = provider != null
+                ? SonargraphBase.toLowerCase(provider.getPresentationName(), true)
+                : "";
+        return isSelected(includedProviders, excludedProviders, providerName, providerPresentationName);
+    }
+
+    private static boolean isSelected(final Set<String> included, final Set<String> excluded, final String name,
+            final String presentationName)
+    {
+        if (excluded.contains(name) || excluded.contains(presentationName))
+        {
+            return false;
+        }
+        return included.isEmpty() || included.contains(name) || included.contains(presentationName);
+    }
+
+    private static boolean matches(final List<Pattern> patterns, final String name)
+    {
+        for (final Pattern nextPattern : patterns)
+        {
+            if (nextPattern.matcher(name).matches())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> getNames(final Function<String, String[]> config, final String key)
+    {
+        final Set<String> result = new HashSet<>();
+        for (final String next : config.apply(key))
+        {
+            final String trimmed = next.trim();
+            if (!trimmed.isEmpty())
+            {
+                result.add(SonargraphBase.toLowerCase(trimmed, true));
+            }
+        }
+        return result.isEmpty() ? Collections.emptySet() : result;
+    }
+
+    private static Set<Severity> getSeverities(final Function<String, String[]> config, final String key)
+    {
+        final Set<Severity> result = EnumSet.noneOf(Severity.class);
+        for (final String next : getNames(config, key))
+        {
+            boolean found = false;
+            for (final Severity nextSeverity : Severity.values())
+            {
+                if (next.equalsIgnoreCase(nextSeverity.name()) || next.equalsIgnoreCase(nextSeverity.getStandardName()))
+                {
+                    result.add(nextSeverity);
+                    found = true;
+                    break;
+                }
+            }
+            if (!found)
+            {
+                LOGGER.warn("{}: Ignoring unknown severity '{}' of property '{}'",
+                        SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, next, key);
+            }
+        }
+        return result;
+    }
+
+    private static List<Pattern> getPatterns(final Function<String, String[]> config, final String key)
+    {
+        final List<Pattern> result = new ArrayList<>();
+        for (final String next : config.apply(key))
+        {
+            final String trimmed = next.trim();
+            if (!trimmed.isEmpty())
+            {
+                result.add(createPattern(trimmed));
+            }
+        }
+        return result;
+    }
+
+    static Pattern createPattern(final String glob)
+    {
+        final StringBuilder regex = new StringBuilder();
+        int start = 0;
+        for (int i = 0; i < glob.length(); i++)
+        {
+            final char next = glob.charAt(i);
+            if (next == '*' || next == '?')
+            {
+                if (i > start)
+                {
+                    regex.append(Pattern.quote(glob.substring(start, i)));
+                }
+                regex.append(next == '*' ? ".*" : ".");
+                start = i + 1;
+            }
+        }
+        if (start < glob.length())
+        {
+            regex.append(Pattern.quote(glob.substring(start)));
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+}
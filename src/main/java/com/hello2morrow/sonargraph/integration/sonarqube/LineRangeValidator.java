@@ -0,0 +1,79 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+
+/**
+ * Validates line ranges of the XML report against the number of lines of the input file before a SonarQube text range is created.
+ * Outdated reports or duplicate code blocks at the end of a file would otherwise cause an exception for each issue. Ranges exceeding the
+ * end of the file are clamped, ranges starting after the last line are dropped. Both cases are counted and reported once per analysis.
+ * The validator reads the content of the input files and is therefore only used on the sensor thread.
+ */
+final class LineRangeValidator
+{
+    private static final int ZERO_LINE_OFFSET = 0;
+
+    private int clampedRanges;
+    private int droppedRanges;
+
+    /**
+     * @param startLine First line of the range (1-based)
+     * @param endLine Line in front of which the range ends (exclusive)
+     * @return The range starting at the beginning of the start line or null, if the start line is not a line of the file. A range
+     *         including the last line ends at the end of that line, since there is no line following it.
+     */
+    TextRange createRange(final InputFile inputFile, final int startLine, final int endLine)
+    {
+        final int lines = inputFile.lines();
+        if (startLine < 1 || startLine > lines)
+        {
+            droppedRanges++;
+            return null;
+        }
+
+        int endLineToUse = Math.max(endLine, startLine + 1);
+        if (endLineToUse > lines + 1)
+        {
+            clampedRanges++;
+            endLineToUse = lines + 1;
+        }
+        if (endLineToUse <= lines)
+        {
+            return inputFile.newRange(startLine, ZERO_LINE_OFFSET, endLineToUse, ZERO_LINE_OFFSET);
+        }
+
+        final TextRange lastLine = inputFile.selectLine(lines);
+        if (startLine == lines)
+        {
+            return lastLine;
+        }
+        return inputFile.newRange(startLine, ZERO_LINE_OFFSET, lines, lastLine.end().lineOffset());
+    }
+
+    int getClampedRanges()
+    {
+        return clampedRanges;
+    }
+
+    int getDroppedRanges()
+    {
+        return droppedRanges;
+    }
+}
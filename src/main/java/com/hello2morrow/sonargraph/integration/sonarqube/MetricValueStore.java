@@ -0,0 +1,233 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonar.api.batch.fs.InputComponent;
+import org.sonar.api.batch.measure.Metric;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.measure.NewMeasure;
+
+/**
+ * Columnar store of the metric values read from the report until they are saved as SonarQube measures. Each metric has one column of
+ * primitive values indexed by a dense component id and a bitmap of the components that have a value, so that no object is held per
+ * value. A value is only boxed when its measure is saved.
+ */
+final class MetricValueStore
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private abstract static class Column
+    {
+        private final Metric<? extends Serializable> metric;
+        private final BitSet present = new BitSet();
+
+        Column(final Metric<? extends Serializable> metric)
+        {
+            this.metric = metric;
+        }
+
+        Metric<? extends Serializable> getMetric()
+        {
+            return metric;
+        }
+
+        BitSet getPresent()
+        {
+            return present;
+        }
+
+        static int grow(final int capacity, final int componentId)
+        {
+            return Math.max(componentId + 1, capacity + (capacity >> 1));
+        }
+
+        abstract void save(SensorContext sensorContext, InputComponent component, int componentId);
+    }
+
+    private static final class IntColumn extends Column
+    {
+        private int[] values = new int[INITIAL_CAPACITY];
+
+        IntColumn(final Metric<? extends Serializable> metric)
+        {
+            super(metric);
+        }
+
+        void put(final int componentId, final int value)
+        {
+            if (componentId >= values.length)
+            {
+                values = Arrays.copyOf(values, grow(values.length, componentId));
+            }
+            values[componentId] = value;
+            getPresent().set(componentId);
+        }
+
+        int get(final int componentId)
+        {
+            return values[componentId];
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        void save(final SensorContext sensorContext, final InputComponent component, final int componentId)
+        {
+            final NewMeasure<Integer> sqMeasure = sensorContext.<Integer> newMeasure();
+            sqMeasure.forMetric((Metric<Integer>) getMetric());
+            sqMeasure.on(component);
+            sqMeasure.withValue(Integer.valueOf(values[componentId]));
+            sqMeasure.save();
+        }
+    }
+
+    private static final class DoubleColumn extends Column
+    {
+        private double[] values = new double[INITIAL_CAPACITY];
+
+        DoubleColumn(final Metric<? extends Serializable> metric)
+        {
+            super(metric);
+        }
+
+        void put(final int componentId, final double value)
+        {
+            if (componentId >= values.length)
+            {
+                values = Arrays.copyOf(values, grow(values.length, componentId));
+            }
+            values[componentId] = value;
+            getPresent().set(componentId);
+        }
+
+        double get(final int componentId)
+        {
+            return values[componentId];
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        void save(final SensorContext sensorContext, final InputComponent component, final int componentId)
+        {
+            final NewMeasure<Double> sqMeasure = sensorContext.<Double> newMeasure();
+            sqMeasure.forMetric((Metric<Double>) getMetric());
+            sqMeasure.on(component);
+            sqMeasure.withValue(Double.valueOf(values[componentId]));
+            sqMeasure.save();
+        }
+    }
+
+    private final List<InputComponent> components = new ArrayList<>();
+    private final Map<InputComponent, Integer> componentIds = new HashMap<>();
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+
+    /**
+     * @return The dense id of the component, assigned on first use
+     */
+    int getComponentId(final InputComponent component)
+    {
+        return componentIds.computeIfAbsent(component, c ->
+        {
+            components.add(c);
+            return Integer.valueOf(components.size() - 1);
+        }).intValue();
+    }
+
+    void putInt(final Metric<? extends Serializable> metric, final int componentId, final int value)
+    {
+        ((IntColumn) columns.computeIfAbsent(metric.key(), k -> new IntColumn(metric))).put(componentId, value);
+    }
+
+    void putDouble(final Metric<? extends Serializable> metric, final int componentId, final double value)
+    {
+        ((DoubleColumn) columns.computeIfAbsent(metric.key(), k -> new DoubleColumn(metric))).put(componentId, value);
+    }
+
+    /**
+     * @param isFloat Stores the value in a float column, an int column otherwise
+     */
+    void put(final Metric<? extends Serializable> metric, final int componentId, final boolean isFloat,
+            final double value)
+    {
+        if (isFloat)
+        {
+            putDouble(metric, componentId, value);
+        }
+        else
+        {
+            putInt(metric, componentId, (int) value);
+        }
+    }
+
+    boolean contains(final String metricKey, final int componentId)
+    {
+        final Column column = columns.get(metricKey);
+        return column != null && column.getPresent().get(componentId);
+    }
+
+    /**
+     * @return The value, to be called only for values contained in an int column
+     */
+    int getInt(final String metricKey, final int componentId)
+    {
+        assert contains(metricKey, componentId) : "No value for metric '" + metricKey + "'";
+        return ((IntColumn) columns.get(metricKey)).get(componentId);
+    }
+
+    /**
+     * @return The value, to be called only for values contained in a float column
+     */
+    double getDouble(final String metricKey, final int componentId)
+    {
+        assert contains(metricKey, componentId) : "No value for metric '" + metricKey + "'";
+        return ((DoubleColumn) columns.get(metricKey)).get(componentId);
+    }
+
+    int size()
+    {
+        int result = 0;
+        for (final Column next : columns.values())
+        {
+            result += next.getPresent().cardinality();
+        }
+        return result;
+    }
+
+    /**
+     * Saves the measures column by column.
+     */
+    void save(final SensorContext sensorContext)
+    {
+        for (final Column nextColumn : columns.values())
+        {
+            final BitSet present = nextColumn.getPresent();
+            for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1))
+            {
+                nextColumn.save(sensorContext, components.get(i), i);
+            }
+        }
+    }
+}
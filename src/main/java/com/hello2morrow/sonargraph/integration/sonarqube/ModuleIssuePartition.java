@@ -0,0 +1,747 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.hello2morrow.sonargraph.integration.access.controller.IModuleInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.model.IDuplicateCodeBlockIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IDuplicateCodeBlockOccurrence;
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
+import com.hello2morrow.sonargraph.integration.access.model.ISourceFile;
+import com.hello2morrow.sonargraph.integration.access.model.Severity;
+
+/**
+ * The issues of a module grouped by the source files and directories they need to be created on, converted into parallel arrays indexed
+ * by issue position: issue type id, severity, file id, line, block size and message fragments. The issues of a file or directory occupy
+ * consecutive positions. Everything the SonarQube issues are created from is resolved during the conversion, neither the grouping
+ * returned by Sonargraph (a map with a list per source file) nor the Sonargraph issues are referenced afterwards:
+ * <ul>
+ * <li>A message consists of the issue's presentation name (or resolution), its description and its provider. These fragments are stored
+ * once per partition and referenced by id, since most of them are shared by many issues.</li>
+ * <li>A duplicate code block issue occupies one position per occurrence in the file, with the occurrence's start line and block size.
+ * The other occurrences are stored as a range of source file, start line and block size per position.</li>
+ * <li>A cycle group issue occupies one position per source file of the group, the file ids of the group are stored once.</li>
+ * </ul>
+ * Rule keys are created once per issue type and severity. Source files are ordered by root directory and relative path, directories by
+ * path, so that the order of the issues does not depend on the order of the maps returned by Sonargraph.
+ */
+final class ModuleIssuePartition
+{
+    /**
+     * Accepts issues that are neither ignored nor of an ignored issue type and that are selected by the user. The issue type check is only
+     * done once per issue type, so the filter can be shared by all modules of an analysis.
+     */
+    static final class IssueFilter implements Predicate<IIssue>
+    {
+        private final IssueSelection issueSelection;
+        private final Map<IIssueType, Boolean> issueTypeToAccepted = new HashMap<>();
+
+        IssueFilter(final IssueSelection issueSelection)
+        {
+            this.issueSelection = issueSelection;
+        }
+
+        @Override
+        public boolean test(final IIssue issue)
+        {
+            if (issue.isIgnored())
+            {
+                return false;
+            }
+            return issueTypeToAccepted.computeIfAbsent(issue.getIssueType(),
+                    t -> Boolean.valueOf(!SonargraphBase.ignoreIssueType(t))).booleanValue()
+                    && issueSelection.isSelected(issue);
+        }
+    }
+
+    /**
+     * Creates the SonarQube issues, or their representation in an issue index, for the issues of a partition. The sensor and the report
+     * daemon create the same issues, but refer to files differently.
+     *
+     * @param <F> Reference to a source file, e.g. its input file or its absolute path
+     * @param <I> The issue created
+     */
+    interface IssueFactory<F, I>
+    {
+        I createIssue(int position, F file, int startLine, int endLine, String message);
+
+        /**
+         * @param startLine First line of the range (1-based), 0 if the location refers to the whole file
+         * @param endLine Line in front of which the range ends (exclusive)
+         */
+        void addSecondaryLocation(I issue, F file, int startLine, int endLine, String message);
+    }
+
+    static final String DUPLICATE_LOCATION_MESSAGE = "Duplicate code block";
+    static final String CYCLE_GROUP_LOCATION_MESSAGE = "Part of the same cycle group";
+    private static final Severity[] SEVERITIES = Severity.values();
+    private static final Comparator<ISourceFile> SOURCE_FILE_ORDER = Comparator
+            .comparing(ISourceFile::getRelativeRootDirectory, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(ISourceFile::getRelativePath, Comparator.nullsFirst(Comparator.naturalOrder()));
+    private static final int NO_CYCLE_GROUP = -1;
+
+    private final ISourceFile[] sourceFiles;
+    private final String[] directories;
+    /** Position of the first issue of each file, source files first, then directories, plus the total number of issues */
+    private final int[] fileStarts;
+    /** File id of the first source file of each root directory, plus the number of source files */
+    private final int[] rootDirectoryStarts;
+
+    private final int[] typeIds;
+    private final byte[] severities;
+    private final int[] fileIds;
+    private final int[] lines;
+    private final int[] blockSizes;
+
+    /** Fragment ids of the presentation names (or resolutions), descriptions and providers of the issues */
+    private final int[] prefixes;
+    private final int[] descriptions;
+    private final int[] providers;
+    private final String[] fragments;
+
+    /** Index of the first other occurrence of each issue, plus the total number of other occurrences */
+    private final int[] otherStarts;
+    private final ISourceFile[] otherSourceFiles;
+    private final int[] otherLines;
+    private final int[] otherBlockSizes;
+
+    /** Cycle group of each issue, NO_CYCLE_GROUP for other issues */
+    private final int[] cycleGroups;
+    /** Index of the first file id of each cycle group, plus the total number of file ids */
+    private final int[] cycleGroupStarts;
+    private final int[] cycleGroupFileIds;
+
+    private final IIssueType[] issueTypes;
+    /** Indexed by type id and severity ordinal */
+    private final String[] ruleKeys;
+
+    private ModuleIssuePartition(final Builder builder)
+    {
+        sourceFiles = builder.sourceFiles;
+        directories = builder.directories;
+        fileStarts = builder.fileStarts;
+        rootDirectoryStarts = builder.rootDirectoryStarts;
+        typeIds = Arrays.copyOf(builder.typeIds, builder.size);
+        severities = Arrays.copyOf(builder.severities, builder.size);
+        fileIds = Arrays.copyOf(builder.fileIds, builder.size);
+        lines = Arrays.copyOf(builder.lines, builder.size);
+        blockSizes = Arrays.copyOf(builder.blockSizes, builder.size);
+        prefixes = Arrays.copyOf(builder.prefixes, builder.size);
+        descriptions = Arrays.copyOf(builder.descriptions, builder.size);
+        providers = Arrays.copyOf(builder.providers, builder.size);
+        fragments = builder.fragmentIds.keySet().toArray(new String[0]);
+        otherStarts = Arrays.copyOf(builder.otherStarts, builder.size + 1);
+        otherStarts[builder.size] = builder.otherSize;
+        otherSourceFiles = Arrays.copyOf(builder.otherSourceFiles, builder.otherSize);
+        otherLines = Arrays.copyOf(builder.otherLines, builder.otherSize);
+        otherBlockSizes = Arrays.copyOf(builder.otherBlockSizes, builder.otherSize);
+        cycleGroups = Arrays.copyOf(builder.cycleGroups, builder.size);
+        cycleGroupStarts = new int[builder.cycleGroupFileIds.size() + 1];
+        cycleGroupFileIds = new int[builder.numberOfCycleGroupFileIds];
+        int next = 0;
+        for (int i = 0; i < builder.cycleGroupFileIds.size(); i++)
+        {
+            cycleGroupStarts[i] = next;
+            for (final Integer nextFileId : builder.cycleGroupFileIds.get(i))
+            {
+                cycleGroupFileIds[next++] = nextFileId.intValue();
+            }
+        }
+        cycleGroupStarts[builder.cycleGroupFileIds.size()] = next;
+        issueTypes = builder.issueTypeIds.keySet().toArray(new IIssueType[0]);
+        ruleKeys = builder.ruleKeys;
+    }
+
+    private static final class Builder
+    {
+        private final IssueDescriptions issueDescriptions;
+        private final StringPool stringPool;
+        private final Map<IIssueType, Integer> issueTypeIds = new LinkedHashMap<>();
+        private final List<Boolean> isCycleGroupType = new ArrayList<>();
+        private final Map<String, Integer> fragmentIds = new LinkedHashMap<>();
+        /** Only needed to assign the positions of a cycle group issue to the same group */
+        private final Map<IIssue, Integer> cycleGroupIds = new IdentityHashMap<>();
+        private final List<List<Integer>> cycleGroupFileIds = new ArrayList<>();
+        private int numberOfCycleGroupFileIds;
+        private String[] ruleKeys = new String[0];
+
+        private ISourceFile[] sourceFiles = new ISourceFile[0];
+        private String[] directories = new String[0];
+        private int[] fileStarts = new int[1];
+        private int[] rootDirectoryStarts = new int[1];
+
+        private int[] typeIds = new int[0];
+        private byte[] severities = new byte[0];
+        private int[] fileIds = new int[0];
+        private int[] lines = new int[0];
+        private int[] blockSizes = new int[0];
+        private int[] prefixes = new int[0];
+        private int[] descriptions = new int[0];
+        private int[] providers = new int[0];
+        private int[] otherStarts = new int[0];
+        private int[] cycleGroups = new int[0];
+        private int size;
+
+        private ISourceFile[] otherSourceFiles = new ISourceFile[0];
+        private int[] otherLines = new int[0];
+        private int[] otherBlockSizes = new int[0];
+        private int otherSize;
+
+        Builder(final IssueDescriptions issueDescriptions, final StringPool stringPool)
+        {
+            this.issueDescriptions = issueDescriptions;
+            this.stringPool = stringPool;
+        }
+
+        private static int[] createRootDirectoryStarts(final ISourceFile[] sourceFiles)
+        {
+            final List<Integer> starts = new ArrayList<>();
+            for (int i = 0; i < sourceFiles.length; i++)
+            {
+                if (i == 0 || !Objects.equals(sourceFiles[i - 1].getRelativeRootDirectory(),
+                        sourceFiles[i].getRelativeRootDirectory()))
+                {
+                    starts.add(Integer.valueOf(i));
+                }
+            }
+            starts.add(Integer.valueOf(sourceFiles.length));
+            return starts.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private void ensureCapacity(final int capacity)
+        {
+            if (capacity <= typeIds.length)
+            {
+                return;
+            }
+            typeIds = Arrays.copyOf(typeIds, capacity);
+            severities = Arrays.copyOf(severities, capacity);
+            fileIds = Arrays.copyOf(fileIds, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            blockSizes = Arrays.copyOf(blockSizes, capacity);
+            prefixes = Arrays.copyOf(prefixes, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+            providers = Arrays.copyOf(providers, capacity);
+            otherStarts = Arrays.copyOf(otherStarts, capacity);
+            cycleGroups = Arrays.copyOf(cycleGroups, capacity);
+        }
+
+        /**
+         * Fragments are shared across the partitions created with the same pool, e.g. the presentation names and providers of the
+         * issues of all modules.
+         */
+        private int getFragmentId(final String fragment)
+        {
+            final Integer existing = fragmentIds.get(fragment);
+            if (existing != null)
+            {
+                return existing.intValue();
+            }
+            final int fragmentId = fragmentIds.size();
+            fragmentIds.put(stringPool.share(fragment), Integer.valueOf(fragmentId));
+            return fragmentId;
+        }
+
+        private int getTypeId(final IIssueType issueType, final Severity severity)
+        {
+            final int typeId = issueTypeIds.computeIfAbsent(issueType, t ->
+            {
+                isCycleGroupType.add(Boolean.valueOf(SonargraphBase.isCycleGroupIssue(t)));
+                return Integer.valueOf(issueTypeIds.size());
+            }).intValue();
+            final int ruleKeyIndex = typeId * SEVERITIES.length + severity.ordinal();
+            if (ruleKeyIndex >= ruleKeys.length)
+            {
+                ruleKeys = Arrays.copyOf(ruleKeys, (typeId + 1) * SEVERITIES.length);
+            }
+            if (ruleKeys[ruleKeyIndex] == null)
+            {
+                ruleKeys[ruleKeyIndex] = SonargraphBase.createRuleKeyToCheck(issueType, severity);
+            }
+            return typeId;
+        }
+
+        private void add(final IIssue issue, final int fileId, final int line, final int blockSize)
+        {
+            final Severity severity = issue.getSeverity();
+            typeIds[size] = getTypeId(issue.getIssueType(), severity);
+            severities[size] = (byte) severity.ordinal();
+            fileIds[size] = fileId;
+            lines[size] = line;
+            blockSizes[size] = blockSize;
+            prefixes[size] = getFragmentId(issueDescriptions.createPrefix(issue));
+            descriptions[size] = getFragmentId(issue.getDescription());
+            providers[size] = getFragmentId(issue.getIssueProvider().getPresentationName());
+            otherStarts[size] = otherSize;
+            cycleGroups[size] = NO_CYCLE_GROUP;
+            size++;
+        }
+
+        /**
+         * Adds the occurrences of the duplicate code block other than the one the last issue has been added for.
+         */
+        private void addOthers(final IDuplicateCodeBlockIssue issue, final ISourceFile sourceFile, final int line,
+                final int blockSize)
+        {
+            for (final IDuplicateCodeBlockOccurrence nextOther : issue.getOccurrences())
+            {
+                if (nextOther.getStartLine() == line && nextOther.getBlockSize() == blockSize
+                        && isOccurrenceIn(nextOther, sourceFile))
+                {
+                    continue;
+                }
+                if (otherSize == otherLines.length)
+                {
+                    final int capacity = Math.max(16, otherSize * 2);
+                    otherSourceFiles = Arrays.copyOf(otherSourceFiles, capacity);
+                    otherLines = Arrays.copyOf(otherLines, capacity);
+                    otherBlockSizes = Arrays.copyOf(otherBlockSizes, capacity);
+                }
+                otherSourceFiles[otherSize] = nextOther.getSourceFile();
+                otherLines[otherSize] = nextOther.getStartLine();
+                otherBlockSizes[otherSize] = nextOther.getBlockSize();
+                otherSize++;
+            }
+        }
+
+        /**
+         * Assigns the last issue to its cycle group, if it is a cycle group issue.
+         */
+        private void addToCycleGroup(final IIssue issue, final int fileId)
+        {
+            if (!isCycleGroupType.get(typeIds[size - 1]).booleanValue())
+            {
+                return;
+            }
+            final int cycleGroup = cycleGroupIds.computeIfAbsent(issue, i ->
+            {
+                cycleGroupFileIds.add(new ArrayList<>());
+                return Integer.valueOf(cycleGroupFileIds.size() - 1);
+            }).intValue();
+            cycleGroupFileIds.get(cycleGroup).add(Integer.valueOf(fileId));
+            numberOfCycleGroupFileIds++;
+            cycleGroups[size - 1] = cycleGroup;
+        }
+
+        void addSourceFiles(final Map<ISourceFile, List<IIssue>> sourceFileIssues)
+        {
+            sourceFiles = sourceFileIssues.keySet().toArray(new ISourceFile[0]);
+            Arrays.sort(sourceFiles, SOURCE_FILE_ORDER);
+            rootDirectoryStarts = createRootDirectoryStarts(sourceFiles);
+            fileStarts = new int[sourceFiles.length + 1];
+
+            int numberOfIssues = 0;
+            for (final Entry<ISourceFile, List<IIssue>> nextEntry : sourceFileIssues.entrySet())
+            {
+                for (final IIssue nextIssue : nextEntry.getValue())
+                {
+                    numberOfIssues += nextIssue instanceof IDuplicateCodeBlockIssue
+                            ? countOccurrences((IDuplicateCodeBlockIssue) nextIssue, nextEntry.getKey())
+                            : 1;
+                }
+            }
+            ensureCapacity(numberOfIssues);
+
+            for (int fileId = 0; fileId < sourceFiles.length; fileId++)
+            {
+                final ISourceFile sourceFile = sourceFiles[fileId];
+                fileStarts[fileId] = size;
+                for (final IIssue nextIssue : sourceFileIssues.get(sourceFile))
+                {
+                    if (nextIssue instanceof IDuplicateCodeBlockIssue)
+                    {
+                        final IDuplicateCodeBlockIssue duplicateCodeBlockIssue = (IDuplicateCodeBlockIssue) nextIssue;
+                        for (final IDuplicateCodeBlockOccurrence nextOccurrence : duplicateCodeBlockIssue
+                                .getOccurrences())
+                        {
+                            if (isOccurrenceIn(nextOccurrence, sourceFile))
+                            {
+                                add(nextIssue, fileId, nextOccurrence.getStartLine(), nextOccurrence.getBlockSize());
+                                addOthers(duplicateCodeBlockIssue, sourceFile, nextOccurrence.getStartLine(),
+                                        nextOccurrence.getBlockSize());
+                            }
+                        }
+                    }
+                    else
+                    {
+                        add(nextIssue, fileId, nextIssue.getLine() <= 0 ? 1 : nextIssue.getLine(), 0);
+                        addToCycleGroup(nextIssue, fileId);
+                    }
+                }
+            }
+            fileStarts[sourceFiles.length] = size;
+        }
+
+        void addDirectories(final Map<String, List<IIssue>> directoryIssues)
+        {
+            directories = directoryIssues.keySet().toArray(new String[0]);
+            Arrays.sort(directories);
+            fileStarts = Arrays.copyOf(fileStarts, sourceFiles.length + directories.length + 1);
+
+            int numberOfIssues = size;
+            for (final List<IIssue> next : directoryIssues.values())
+            {
+                numberOfIssues += next.size();
+            }
+            ensureCapacity(numberOfIssues);
+
+            int fileId = sourceFiles.length;
+            for (final String nextDirectory : directories)
+            {
+                fileStarts[fileId] = size;
+                for (final IIssue nextIssue : directoryIssues.get(nextDirectory))
+                {
+                    add(nextIssue, fileId, 0, 0);
+                }
+                fileId++;
+            }
+            fileStarts[fileId] = size;
+        }
+
+        ModuleIssuePartition build()
+        {
+            return new ModuleIssuePartition(this);
+        }
+    }
+
+    /**
+     * The assignment of issues to source files and directories is done by Sonargraph's module info processor, which offers separate
+     * groupings only. Both are created here with the same filter and converted one after the other, so that only one of them is
+     * referenced at a time and neither is retained.
+     */
+    static ModuleIssuePartition create(final IModuleInfoProcessor moduleInfoProcessor, final IssueFilter filter,
+            final IssueDescriptions issueDescriptions, final StringPool stringPool)
+    {
+        final Builder builder = new Builder(issueDescriptions, stringPool);
+        builder.addSourceFiles(moduleInfoProcessor.getIssuesForSourceFiles(filter));
+        builder.addDirectories(moduleInfoProcessor.getIssuesForDirectories(filter));
+        return builder.build();
+    }
+
+    /**
+     * @return True if the occurrence is in the source file or in the file the source file has been copied from
+     */
+    static boolean isOccurrenceIn(final IDuplicateCodeBlockOccurrence occurrence, final ISourceFile sourceFile)
+    {
+        final ISourceFile occurrenceSourceFile = occurrence.getSourceFile();
+        final Optional<ISourceFile> originalLocationOpt = occurrenceSourceFile.getOriginalLocation();
+        return occurrenceSourceFile.equals(sourceFile)
+                || (originalLocationOpt.isPresent() && originalLocationOpt.get().equals(sourceFile));
+    }
+
+    private static int countOccurrences(final IDuplicateCodeBlockIssue issue, final ISourceFile sourceFile)
+    {
+        int result = 0;
+        for (final IDuplicateCodeBlockOccurrence nextOccurrence : issue.getOccurrences())
+        {
+            if (isOccurrenceIn(nextOccurrence, sourceFile))
+            {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    int getNumberOfSourceFiles()
+    {
+        return sourceFiles.length;
+    }
+
+    ISourceFile getSourceFile(final int fileId)
+    {
+        return sourceFiles[fileId];
+    }
+
+    /**
+     * @return The source files in the order of their file ids
+     */
+    List<ISourceFile> getSourceFiles()
+    {
+        return Collections.unmodifiableList(Arrays.asList(sourceFiles));
+    }
+
+    int getNumberOfRootDirectories()
+    {
+        return rootDirectoryStarts.length - 1;
+    }
+
+    /**
+     * @return The file id of the first source file in the root directory
+     */
+    int getRootDirectoryStart(final int rootDirectoryIndex)
+    {
+        return rootDirectoryStarts[rootDirectoryIndex];
+    }
+
+    /**
+     * @return The file id after the last source file in the root directory
+     */
+    int getRootDirectoryEnd(final int rootDirectoryIndex)
+    {
+        return rootDirectoryStarts[rootDirectoryIndex + 1];
+    }
+
+    int getNumberOfDirectories()
+    {
+        return directories.length;
+    }
+
+    /**
+     * @return The directory relative to the module's base directory
+     */
+    String getDirectory(final int directoryIndex)
+    {
+        return directories[directoryIndex];
+    }
+
+    /**
+     * @return The file id of the directory, directories are numbered after the source files
+     */
+    int getDirectoryFileId(final int directoryIndex)
+    {
+        return sourceFiles.length + directoryIndex;
+    }
+
+    /**
+     * @return The position of the first issue of the file
+     */
+    int getStart(final int fileId)
+    {
+        return fileStarts[fileId];
+    }
+
+    /**
+     * @return The position after the last issue of the file
+     */
+    int getEnd(final int fileId)
+    {
+        return fileStarts[fileId + 1];
+    }
+
+    int getNumberOfIssues()
+    {
+        return typeIds.length;
+    }
+
+    int getFileId(final int position)
+    {
+        return fileIds[position];
+    }
+
+    /**
+     * @return The line of the issue, at least 1 on source files, 0 on directories. The start line of the occurrence for duplicate code
+     *         blocks.
+     */
+    int getLine(final int position)
+    {
+        return lines[position];
+    }
+
+    /**
+     * @return The block size of duplicate code block occurrences, 0 otherwise
+     */
+    int getBlockSize(final int position)
+    {
+        return blockSizes[position];
+    }
+
+    /**
+     * @param detail Appended to the description, empty if there is none
+     */
+    String getMessage(final int position, final String detail)
+    {
+        return IssueDescriptions.create(fragments[prefixes[position]], fragments[descriptions[position]], detail,
+                fragments[providers[position]]);
+    }
+
+    IIssueType getIssueType(final int position)
+    {
+        return issueTypes[typeIds[position]];
+    }
+
+    Severity getSeverity(final int position)
+    {
+        return SEVERITIES[severities[position]];
+    }
+
+    /**
+     * @return The rule key to check of the issue, shared by all issues of the same type and severity
+     */
+    String getRuleKey(final int position)
+    {
+        return ruleKeys[getRuleKeyIndex(position)];
+    }
+
+    /**
+     * @return The rule key to check for each combination of issue type and severity that occurs, the index being type id times the
+     *         number of severities plus severity ordinal, so that each one needs to be resolved only once per module
+     */
+    List<String> getRuleKeys()
+    {
+        return Collections.unmodifiableList(Arrays.asList(ruleKeys));
+    }
+
+    /**
+     * @return The index of the issue's rule key in {@link #getRuleKeys()}
+     */
+    int getRuleKeyIndex(final int position)
+    {
+        return typeIds[position] * SEVERITIES.length + severities[position];
+    }
+
+    /**
+     * @return The index of the first other occurrence of the duplicate code block occurrence at the position
+     */
+    int getOtherStart(final int position)
+    {
+        return otherStarts[position];
+    }
+
+    /**
+     * @return The index after the last other occurrence of the duplicate code block occurrence at the position, the start for other
+     *         issues
+     */
+    int getOtherEnd(final int position)
+    {
+        return otherStarts[position + 1];
+    }
+
+    /**
+     * @return The source file of the other occurrence, it does not need to belong to the module
+     */
+    ISourceFile getOtherSourceFile(final int otherIndex)
+    {
+        return otherSourceFiles[otherIndex];
+    }
+
+    int getOtherLine(final int otherIndex)
+    {
+        return otherLines[otherIndex];
+    }
+
+    int getOtherBlockSize(final int otherIndex)
+    {
+        return otherBlockSizes[otherIndex];
+    }
+
+    /**
+     * @return The index of the first file id of the cycle group the issue at the position is reported for
+     */
+    int getCycleGroupStart(final int position)
+    {
+        return cycleGroups[position] != NO_CYCLE_GROUP ? cycleGroupStarts[cycleGroups[position]] : 0;
+    }
+
+    /**
+     * @return The index after the last file id of the cycle group the issue at the position is reported for, the start for other issues
+     */
+    int getCycleGroupEnd(final int position)
+    {
+        return cycleGroups[position] != NO_CYCLE_GROUP ? cycleGroupStarts[cycleGroups[position] + 1] : 0;
+    }
+
+    /**
+     * @return The file id of a source file of a cycle group, including the one the issue is reported on
+     */
+    int getCycleGroupFileId(final int cycleGroupIndex)
+    {
+        return cycleGroupFileIds[cycleGroupIndex];
+    }
+
+    /**
+     * Creates the issue at a position on a source file. The other occurrences of a duplicate code block are secondary locations, the
+     * ones that are not part of the project are mentioned in the message instead. The other source files of a cycle group are secondary
+     * locations referring to the whole file.
+     *
+     * @param file The reference to the source file of the issue
+     * @param locator Returns the reference to a source file, null if the source file is not part of the project
+     */
+    <F, I> I createSourceFileIssue(final int position, final F file, final Function<ISourceFile, F> locator,
+            final IssueFactory<F, I> factory)
+    {
+        final int line = lines[position];
+        final int blockSize = blockSizes[position];
+        if (blockSize > 0)
+        {
+            final StringBuilder detail = new StringBuilder();
+            for (int i = otherStarts[position]; i < otherStarts[position + 1]; i++)
+            {
+                if (locator.apply(otherSourceFiles[i]) == null)
+                {
+                    IssueDescriptions.appendUnlocatedOccurrence(detail, otherSourceFiles[i], otherLines[i],
+                            otherBlockSizes[i]);
+                }
+            }
+
+            final I issue = factory.createIssue(position, file, line, line + blockSize,
+                    getMessage(position, detail.toString()));
+            for (int i = otherStarts[position]; i < otherStarts[position + 1]; i++)
+            {
+                final F nextOther = locator.apply(otherSourceFiles[i]);
+                if (nextOther != null)
+                {
+                    factory.addSecondaryLocation(issue, nextOther, otherLines[i], otherLines[i] + otherBlockSizes[i],
+                            DUPLICATE_LOCATION_MESSAGE);
+                }
+            }
+            return issue;
+        }
+
+        final I issue = factory.createIssue(position, file, line, line + 1, getMessage(position, ""));
+        for (int i = getCycleGroupStart(position); i < getCycleGroupEnd(position); i++)
+        {
+            final int nextParticipant = cycleGroupFileIds[i];
+            if (nextParticipant == fileIds[position])
+            {
+                continue;
+            }
+            final F nextParticipantFile = locator.apply(sourceFiles[nextParticipant]);
+            if (nextParticipantFile != null)
+            {
+                factory.addSecondaryLocation(issue, nextParticipantFile, 0, 0, CYCLE_GROUP_LOCATION_MESSAGE);
+            }
+        }
+        return issue;
+    }
+
+    /**
+     * @return Rule key and location of the issue, for diagnostics
+     */
+    String describe(final int position)
+    {
+        final int fileId = fileIds[position];
+        return getRuleKey(position) + " on '" + (fileId < sourceFiles.length
+                ? sourceFiles[fileId].getRelativePath() + "' line " + lines[position]
+                : directories[fileId - sourceFiles.length] + "'");
+    }
+}
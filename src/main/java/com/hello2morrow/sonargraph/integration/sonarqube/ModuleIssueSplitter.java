@@ -0,0 +1,192 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Processes the source files of a large module in parallel, so that a module holding most of the issues of a system does not keep a
+ * single core busy. The source files are split by root directory into windows of about {@link #windowIssues} issues, each window is
+ * split recursively into file ranges of at most {@link #leafIssues} issues that are processed as fork/join tasks. The results are passed
+ * on in the order of the source files, so that repeated analyses create the same issues in the same order as sequential processing. The
+ * next window is processed while the results of the current one are passed on.
+ */
+final class ModuleIssueSplitter
+{
+    @FunctionalInterface
+    interface FileProcessor<R>
+    {
+        /**
+         * Called concurrently for different source files.
+         */
+        void process(int fileId, Consumer<R> sink);
+    }
+
+    private final class FileRangeTask<R> extends RecursiveTask<List<R>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ModuleIssuePartition partition;
+        private final transient FileProcessor<R> processor;
+        private final transient BooleanSupplier isCancelled;
+        private final int fromFile;
+        private final int toFile;
+
+        FileRangeTask(final ModuleIssuePartition partition, final FileProcessor<R> processor,
+                final BooleanSupplier isCancelled, final int fromFile, final int toFile)
+        {
+            this.partition = partition;
+            this.processor = processor;
+            this.isCancelled = isCancelled;
+            this.fromFile = fromFile;
+            this.toFile = toFile;
+        }
+
+        @Override
+        protected List<R> compute()
+        {
+            final int numberOfIssues = partition.getStart(toFile) - partition.getStart(fromFile);
+            if (toFile - fromFile > 1 && numberOfIssues > leafIssues)
+            {
+                final int middleFile = findFile(partition, fromFile + 1, toFile - 1,
+                        partition.getStart(fromFile) + numberOfIssues / 2);
+                final FileRangeTask<R> first = new FileRangeTask<>(partition, processor, isCancelled, fromFile,
+                        middleFile);
+                final FileRangeTask<R> second = new FileRangeTask<>(partition, processor, isCancelled, middleFile,
+                        toFile);
+                first.fork();
+                final List<R> secondResult = second.compute();
+                final List<R> result = first.join();
+                result.addAll(secondResult);
+                return result;
+            }
+
+            final List<R> result = new ArrayList<>(numberOfIssues);
+            for (int fileId = fromFile; fileId < toFile && !isCancelled.getAsBoolean(); fileId++)
+            {
+                processor.process(fileId, result::add);
+            }
+            return result;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int leafIssues;
+    private final int windowIssues;
+
+    ModuleIssueSplitter(final int parallelism, final int leafIssues, final int windowIssues)
+    {
+        assert parallelism > 0 : "Parameter 'parallelism' of method 'ModuleIssueSplitter' must be > 0";
+        assert leafIssues > 0 : "Parameter 'leafIssues' of method 'ModuleIssueSplitter' must be > 0";
+        assert windowIssues >= leafIssues : "Parameter 'windowIssues' of method 'ModuleIssueSplitter' must be >= leafIssues";
+        this.pool = new ForkJoinPool(parallelism);
+        this.leafIssues = leafIssues;
+        this.windowIssues = windowIssues;
+    }
+
+    /**
+     * @return True if the module has enough issues to be worth splitting
+     */
+    boolean isSplit(final ModuleIssuePartition partition)
+    {
+        return pool.getParallelism() > 1 && partition.getNumberOfSourceFiles() > 1
+                && partition.getStart(partition.getNumberOfSourceFiles()) > leafIssues;
+    }
+
+    /**
+     * Processes the source files of the partition and passes the results to the sink on the calling thread in the order of the source
+     * files.
+     *
+     * @param isCancelled Stops processing of further source files
+     */
+    <R> void run(final ModuleIssuePartition partition, final FileProcessor<R> processor,
+            final BooleanSupplier isCancelled, final Consumer<R> sink)
+    {
+        ForkJoinTask<List<R>> pending = null;
+        try
+        {
+            for (int rootDirectory = 0; rootDirectory < partition.getNumberOfRootDirectories(); rootDirectory++)
+            {
+                final int end = partition.getRootDirectoryEnd(rootDirectory);
+                int fromFile = partition.getRootDirectoryStart(rootDirectory);
+                while (fromFile < end && !isCancelled.getAsBoolean())
+                {
+                    final int toFile = fromFile + 1 < end
+                            ? Math.max(fromFile + 1,
+                                    findFile(partition, fromFile + 1, end, partition.getStart(fromFile) + windowIssues))
+                            : end;
+                    final ForkJoinTask<List<R>> next = pool
+                            .submit(new FileRangeTask<>(partition, processor, isCancelled, fromFile, toFile));
+                    if (pending != null)
+                    {
+                        pending.join().forEach(sink);
+                    }
+                    pending = next;
+                    fromFile = toFile;
+                }
+            }
+            if (pending != null)
+            {
+                final ForkJoinTask<List<R>> last = pending;
+                pending = null;
+                last.join().forEach(sink);
+            }
+        }
+        finally
+        {
+            if (pending != null)
+            {
+                pending.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @return The first file id in [fromFile, toFile] whose first issue is at or after the given position, toFile if there is none
+     */
+    private static int findFile(final ModuleIssuePartition partition, final int fromFile, final int toFile,
+            final int position)
+    {
+        int low = fromFile;
+        int high = toFile;
+        while (low < high)
+        {
+            final int middle = (low + high) >>> 1;
+            if (partition.getStart(middle) < position)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    void shutdown()
+    {
+        pool.shutdownNow();
+    }
+}
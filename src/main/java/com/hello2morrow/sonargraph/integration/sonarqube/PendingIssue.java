@@ -0,0 +1,259 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import org.sonar.api.batch.fs.InputComponent;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.issue.NewIssue;
+import org.sonar.api.batch.sensor.issue.NewIssueLocation;
+
+import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
+import com.hello2morrow.sonargraph.integration.access.model.Severity;
+
+/**
+ * A SonarQube issue that has been fully prepared (rule, message, locations) from a Sonargraph issue, but has not been saved yet. The
+ * preparation does not need the sensor context and can therefore be done on another thread than saving. Locations only keep their lines,
+ * the text ranges are created when saving, since that reads the content of the input file.
+ */
+final class PendingIssue
+{
+    private static final class Location
+    {
+        private final InputComponent component;
+        private final int startLine;
+        private final int endLine;
+        private final String message;
+
+        /**
+         * @param startLine First line of the range (1-based), 0 if the location refers to the whole component
+         * @param endLine Line in front of which the range ends (exclusive)
+         */
+        Location(final InputComponent component, final int startLine, final int endLine, final String message)
+        {
+            this.component = component;
+            this.startLine = startLine;
+            this.endLine = endLine;
+            this.message = message;
+        }
+
+        /**
+         * @return The location in the index, to be called for locations on files only
+         */
+        IssueIndex.Location toIndexLocation(final IssueIndex issueIndex, final File baseDirectory)
+        {
+            return issueIndex.createLocation(IssueIndex.createKey(baseDirectory, (InputFile) component), startLine,
+                    endLine, message != null ? message : "");
+        }
+
+        NewIssueLocation create(final NewIssue sqIssue, final LineRangeValidator lineRangeValidator)
+        {
+            final NewIssueLocation sqLocation = sqIssue.newLocation();
+            sqLocation.on(component);
+            if (message != null)
+            {
+                sqLocation.message(message);
+            }
+            //Without a valid range the location refers to the whole component.
+            final TextRange range = startLine > 0
+                    ? lineRangeValidator.createRange((InputFile) component, startLine, endLine)
+                    : null;
+            if (range != null)
+            {
+                sqLocation.at(range);
+            }
+            return sqLocation;
+        }
+    }
+
+    private final ActiveRule rule;
+    private final Location primaryLocation;
+    private List<Location> secondaryLocations = Collections.emptyList();
+    /** Only known for issues without an active rule */
+    private final IIssueType issueType;
+    private final Severity severity;
+
+    private PendingIssue(final ActiveRule rule, final Location primaryLocation, final IIssueType issueType,
+            final Severity severity)
+    {
+        this.rule = rule;
+        this.primaryLocation = primaryLocation;
+        this.issueType = issueType;
+        this.severity = severity;
+    }
+
+    /**
+     * The issue refers to the whole component.
+     */
+    PendingIssue(final ActiveRule rule, final InputComponent component, final String message)
+    {
+        this(rule, new Location(component, 0, 0, message), null, null);
+    }
+
+    /**
+     * @param startLine First line of the range (1-based)
+     * @param endLine Line in front of which the range ends (exclusive)
+     */
+    PendingIssue(final ActiveRule rule, final InputFile inputFile, final int startLine, final int endLine,
+            final String message)
+    {
+        this(rule, new Location(inputFile, startLine, endLine, message), null, null);
+    }
+
+    /**
+     * No rule is active for the issue, a custom rule might need to be created for its issue type and severity.
+     */
+    static PendingIssue withoutRule(final IIssueType issueType, final Severity severity)
+    {
+        return new PendingIssue(null, null, issueType, severity);
+    }
+
+    /**
+     * @param startLine First line of the range (1-based), 0 if the location refers to the whole component
+     * @param endLine Line in front of which the range ends (exclusive)
+     */
+    void addSecondaryLocation(final InputComponent component, final int startLine, final int endLine,
+            final String message)
+    {
+        if (secondaryLocations.isEmpty())
+        {
+            secondaryLocations = new ArrayList<>(2);
+        }
+        secondaryLocations.add(new Location(component, startLine, endLine, message));
+    }
+
+    /**
+     * @return The issue type of an issue without active rule, null otherwise
+     */
+    IIssueType getIssueType()
+    {
+        return issueType;
+    }
+
+    /**
+     * @return The severity of an issue without active rule, null otherwise
+     */
+    Severity getSeverity()
+    {
+        return severity;
+    }
+
+    boolean hasRule()
+    {
+        return rule != null;
+    }
+
+    /**
+     * @return The key of the rule within its repository, null if no rule is active for the issue
+     */
+    String getRuleKey()
+    {
+        return rule != null ? rule.ruleKey().rule() : null;
+    }
+
+    /**
+     * Creates an issue from an index entry, secondary locations in files that are not found are omitted.
+     *
+     * @param fileLookup Returns the input file for a path of the index or null
+     */
+    static PendingIssue create(final IssueIndex.Entry entry, final ActiveRule rule, final InputFile inputFile,
+            final Function<String, InputFile> fileLookup)
+    {
+        final PendingIssue pendingIssue = new PendingIssue(rule, inputFile, entry.getStartLine(), entry.getEndLine(),
+                entry.getMessage());
+        for (final IssueIndex.Location nextLocation : entry.getSecondaryLocations())
+        {
+            final InputFile nextInputFile = fileLookup.apply(nextLocation.getPath());
+            if (nextInputFile != null)
+            {
+                pendingIssue.addSecondaryLocation(nextInputFile, nextLocation.getStartLine(),
+                        nextLocation.getEndLine(), nextLocation.getMessage());
+            }
+        }
+        return pendingIssue;
+    }
+
+    /**
+     * Adds the issue to the index, if its primary location refers to a file. Secondary locations not referring to a file are omitted.
+     */
+    void addTo(final IssueIndex issueIndex, final File baseDirectory)
+    {
+        assert rule != null : "Issue has no active rule";
+        if (!(primaryLocation.component instanceof InputFile))
+        {
+            return;
+        }
+
+        List<IssueIndex.Location> indexLocations = Collections.emptyList();
+        for (final Location nextLocation : secondaryLocations)
+        {
+            if (nextLocation.component instanceof InputFile)
+            {
+                if (indexLocations.isEmpty())
+                {
+                    indexLocations = new ArrayList<>(secondaryLocations.size());
+                }
+                indexLocations.add(nextLocation.toIndexLocation(issueIndex, baseDirectory));
+            }
+        }
+
+        final InputFile inputFile = (InputFile) primaryLocation.component;
+        final String path = IssueIndex.createKey(baseDirectory, inputFile);
+        issueIndex.add(path, inputFile.md5Hash(),
+                issueIndex.createEntry(rule.ruleKey().toString(), primaryLocation.startLine,
+                        primaryLocation.endLine, primaryLocation.message != null ? primaryLocation.message : "",
+                        indexLocations));
+    }
+
+    @Override
+    public String toString()
+    {
+        if (rule == null)
+        {
+            return "<no rule> " + issueType + " [" + severity + "]";
+        }
+        return rule.ruleKey() + " on " + primaryLocation.component
+                + (primaryLocation.startLine > 0 ? " line " + primaryLocation.startLine : "");
+    }
+
+    /**
+     * Creates the text ranges of the locations, which reads the content of the input files. It must therefore be called on the sensor
+     * thread.
+     */
+    void save(final SensorContext sensorContext, final LineRangeValidator lineRangeValidator)
+    {
+        assert rule != null : "Issue has no active rule";
+
+        final NewIssue sqIssue = sensorContext.newIssue();
+        sqIssue.forRule(rule.ruleKey());
+        sqIssue.at(primaryLocation.create(sqIssue, lineRangeValidator));
+        for (final Location nextSecondaryLocation : secondaryLocations)
+        {
+            sqIssue.addLocation(nextSecondaryLocation.create(sqIssue, lineRangeValidator));
+        }
+        sqIssue.save();
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Runs reading, transforming and emitting as three stages connected by bounded queues. Reading and transforming are done on their own
+ * threads, emitting on the calling thread, so that calls to the sensor context stay on the sensor thread. A full queue blocks the stage
+ * in front of it, so at most the capacity of both queues is held in memory. The order of the items is preserved. The pipeline only
+ * returns after all stages have finished.
+ *
+ * @param <T> Work item produced by the reader and consumed by the transformer
+ * @param <R> Result produced by the transformer and consumed by the emitter
+ */
+final class ProcessingPipeline<T, R>
+{
+    private static final Object END = new Object();
+
+    private final String name;
+    private final int workQueueCapacity;
+    private final int resultQueueCapacity;
+
+    ProcessingPipeline(final String name, final int workQueueCapacity, final int resultQueueCapacity)
+    {
+        assert workQueueCapacity > 0 : "Parameter 'workQueueCapacity' of method 'ProcessingPipeline' must be > 0";
+        assert resultQueueCapacity > 0 : "Parameter 'resultQueueCapacity' of method 'ProcessingPipeline' must be > 0";
+        this.name = name;
+        this.workQueueCapacity = workQueueCapacity;
+        this.resultQueueCapacity = resultQueueCapacity;
+    }
+
+    /**
+     * @param reader Passes all work items to the given sink
+     * @param transformer Passes the results for a work item to the given sink
+     * @param emitter Consumes the results on the calling thread
+     * @throws IllegalStateException if a stage failed or the pipeline has been interrupted
+     */
+    @SuppressWarnings("unchecked")
+    void run(final Consumer<Consumer<T>> reader, final BiConsumer<T, Consumer<R>> transformer,
+            final Consumer<R> emitter)
+    {
+        final BlockingQueue<Object> workQueue = new ArrayBlockingQueue<>(workQueueCapacity);
+        final BlockingQueue<Object> resultQueue = new ArrayBlockingQueue<>(resultQueueCapacity);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        final AtomicInteger threadCounter = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(2, r ->
+        {
+            final Thread thread = new Thread(r, name + " " + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try
+        {
+            executor.execute(() -> runStage(() -> reader.accept(item -> put(workQueue, item)), workQueue, failure));
+            executor.execute(() -> runStage(() ->
+            {
+                Object next;
+                while ((next = take(workQueue)) != END)
+                {
+                    transformer.accept((T) next, result -> put(resultQueue, result));
+                }
+            }, resultQueue, failure));
+
+            Object next;
+            while ((next = take(resultQueue)) != END)
+            {
+                emitter.accept((R) next);
+            }
+        }
+        finally
+        {
+            //Stops the other stages if the emitter failed while they are blocked on a full queue
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+
+        final Throwable stageFailure = failure.get();
+        if (stageFailure != null)
+        {
+            throw new IllegalStateException(name + " failed", stageFailure);
+        }
+    }
+
+    /**
+     * A stage might be busy in code that does not respond to interrupts (e.g. Sonargraph grouping the issues of a module). It is waited
+     * for, so that no stage is still running when the pipeline returns.
+     */
+    private static void awaitTermination(final ExecutorService executor)
+    {
+        boolean isInterrupted = false;
+        while (!executor.isTerminated())
+        {
+            try
+            {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            catch (final InterruptedException e)
+            {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void runStage(final Runnable stage, final BlockingQueue<Object> output,
+            final AtomicReference<Throwable> failure)
+    {
+        try
+        {
+            stage.run();
+        }
+        catch (final Throwable t)
+        {
+            failure.compareAndSet(null, t);
+        }
+        finally
+        {
+            try
+            {
+                output.put(END);
+            }
+            catch (final InterruptedException e)
+            {
+                //The pipeline is shut down, nobody is waiting for the end marker.
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void put(final BlockingQueue<Object> queue, final Object item)
+    {
+        try
+        {
+            queue.put(item);
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a free slot", e);
+        }
+    }
+
+    private static Object take(final BlockingQueue<Object> queue)
+    {
+        try
+        {
+            return queue.take();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the next item", e);
+        }
+    }
+}
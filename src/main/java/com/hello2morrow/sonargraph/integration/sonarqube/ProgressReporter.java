@@ -0,0 +1,138 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Logs the progress of module processing at most once per interval, so that a long running analysis can be told apart from a stuck
+ * one. It is notified from the pipeline stages, no additional thread is needed.
+ */
+final class ProgressReporter
+{
+    private static final Logger LOGGER = Loggers.get(ProgressReporter.class);
+    static final long DEFAULT_INTERVAL_MILLIS = 10_000;
+    private static final long BYTES_PER_MB = 1024 * 1024;
+
+    private final int totalModules;
+    private final long intervalNanos;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+    private final AtomicLong nextReportNanos;
+    private final AtomicInteger finishedModules = new AtomicInteger();
+    private final AtomicLong emittedIssues = new AtomicLong();
+
+    ProgressReporter(final int totalModules)
+    {
+        this(totalModules, DEFAULT_INTERVAL_MILLIS, System::nanoTime);
+    }
+
+    /** Test support */
+    ProgressReporter(final int totalModules, final long intervalMillis, final LongSupplier nanoClock)
+    {
+        this.totalModules = totalModules;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+        this.nextReportNanos = new AtomicLong(startNanos + intervalNanos);
+    }
+
+    /**
+     * Also to be called for modules that are skipped, so that the progress reaches the total.
+     */
+    void moduleFinished()
+    {
+        finishedModules.incrementAndGet();
+        reportIfDue();
+    }
+
+    void issueEmitted()
+    {
+        emittedIssues.incrementAndGet();
+        reportIfDue();
+    }
+
+    int getFinishedModules()
+    {
+        return finishedModules.get();
+    }
+
+    long getEmittedIssues()
+    {
+        return emittedIssues.get();
+    }
+
+    void finish()
+    {
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(nanoClock.getAsLong() - startNanos);
+        LOGGER.info("{}: Processed {} module(s) and {} issue(s) in {}",
+                SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, finishedModules.get(), emittedIssues.get(),
+                formatDuration(elapsedMillis));
+    }
+
+    private void reportIfDue()
+    {
+        final long now = nanoClock.getAsLong();
+        final long nextReport = nextReportNanos.get();
+        //Only one of the stages reports, the others continue without waiting.
+        if (now >= nextReport && nextReportNanos.compareAndSet(nextReport, now + intervalNanos))
+        {
+            LOGGER.info("{}: {}", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, createMessage(now));
+        }
+    }
+
+    String createMessage(final long nowNanos)
+    {
+        final long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(nowNanos - startNanos));
+        final int finished = finishedModules.get();
+        final long issues = emittedIssues.get();
+
+        final StringBuilder message = new StringBuilder();
+        message.append(finished).append("/").append(totalModules).append(" module(s) processed, ");
+        message.append(issues).append(" issue(s) processed (").append(issues * 1000 / elapsedMillis).append("/s), ETA ");
+        if (finished > 0 && finished <= totalModules)
+        {
+            message.append(formatDuration(elapsedMillis * (totalModules - finished) / finished));
+        }
+        else
+        {
+            message.append("unknown");
+        }
+
+        final Runtime runtime = Runtime.getRuntime();
+        final long usedMb = (runtime.totalMemory() - runtime.freeMemory()) / BYTES_PER_MB;
+        message.append(", heap ").append(usedMb).append("/").append(runtime.maxMemory() / BYTES_PER_MB).append(" MB");
+        return message.toString();
+    }
+
+    static String formatDuration(final long millis)
+    {
+        final long seconds = TimeUnit.MILLISECONDS.toSeconds(millis);
+        if (seconds < 60)
+        {
+            return seconds + "s";
+        }
+        return String.format("%dm %02ds", Long.valueOf(seconds / 60), Long.valueOf(seconds % 60));
+    }
+}
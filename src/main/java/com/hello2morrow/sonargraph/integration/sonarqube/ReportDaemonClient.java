@@ -0,0 +1,293 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.sonar.api.config.Configuration;
+
+/**
+ * Queries the {@link SonargraphReportDaemon} running on the same host. Every query opens a new connection, the caller falls back to
+ * loading the XML report files itself if the daemon is not available.
+ */
+final class ReportDaemonClient
+{
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    //Loading large reports on the first request takes a while
+    private static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.MINUTES.toMillis(10);
+
+    static final class SystemMetric
+    {
+        private final String name;
+        private final boolean isFloat;
+        private final double value;
+
+        SystemMetric(final String name, final boolean isFloat, final double value)
+        {
+            this.name = name;
+            this.isFloat = isFloat;
+            this.value = value;
+        }
+
+        String getName()
+        {
+            return name;
+        }
+
+        boolean isFloat()
+        {
+            return isFloat;
+        }
+
+        double getValue()
+        {
+            return value;
+        }
+    }
+
+    /**
+     * The system-level information of the reports.
+     */
+    static final class SystemInfo
+    {
+        private final Map<String, String> moduleLanguages = new LinkedHashMap<>();
+        private final List<SystemMetric> metrics = new ArrayList<>();
+        private final List<IssueIndex.Entry> issues = new ArrayList<>();
+        private final List<List<String>> setupProblems = new ArrayList<>();
+
+        /**
+         * @return Module names mapped to their Sonargraph language
+         */
+        Map<String, String> getModuleLanguages()
+        {
+            return Collections.unmodifiableMap(moduleLanguages);
+        }
+
+        List<SystemMetric> getMetrics()
+        {
+            return Collections.unmodifiableList(metrics);
+        }
+
+        /**
+         * @return The issues to be created on the project, keyed by the rule key to check
+         */
+        List<IssueIndex.Entry> getIssues()
+        {
+            return Collections.unmodifiableList(issues);
+        }
+
+        /**
+         * @return The ignored system setup problems, each one with its affected elements
+         */
+        List<List<String>> getSetupProblems()
+        {
+            return Collections.unmodifiableList(setupProblems);
+        }
+    }
+
+    private final int port;
+    private final List<File> reportFiles;
+    private final File systemBaseDirectory;
+    private final Map<String, String[]> settings = new LinkedHashMap<>();
+
+    ReportDaemonClient(final int port, final List<File> reportFiles, final File systemBaseDirectory,
+            final Configuration config)
+    {
+        this.port = port;
+        this.reportFiles = reportFiles;
+        this.systemBaseDirectory = systemBaseDirectory;
+        for (final String nextKey : IssueSelection.KEYS)
+        {
+            settings.put(nextKey, config.getStringArray(nextKey));
+        }
+    }
+
+    /**
+     * @return The client or null, if no daemon port is configured
+     */
+    static ReportDaemonClient create(final Configuration config, final List<File> reportFiles,
+            final File systemBaseDirectory)
+    {
+        final int port = config.getInt(SonargraphBase.DAEMON_PORT_KEY).orElse(0);
+        return port > 0 ? new ReportDaemonClient(port, reportFiles, systemBaseDirectory, config) : null;
+    }
+
+    int getPort()
+    {
+        return port;
+    }
+
+    SystemInfo querySystem() throws IOException
+    {
+        final SystemInfo result = new SystemInfo();
+        query(reader ->
+        {
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty())
+            {
+                final String[] parts = split(line);
+                switch (parts[0])
+                {
+                case SonargraphReportDaemon.MODULE:
+                    result.moduleLanguages.put(parts[1], parts[2]);
+                    break;
+                case SonargraphReportDaemon.METRIC:
+                    result.metrics.add(new SystemMetric(parts[1], Boolean.parseBoolean(parts[2]),
+                            parseDouble(parts[3], line)));
+                    break;
+                case SonargraphReportDaemon.ISSUE:
+                    result.issues.add(new IssueIndex.Entry(parts[1], 0, 0, parts[2]));
+                    break;
+                case SonargraphReportDaemon.SETUP:
+                    final List<String> setupProblem = new ArrayList<>(parts.length - 1);
+                    for (int i = 1; i < parts.length; i++)
+                    {
+                        setupProblem.add(parts[i]);
+                    }
+                    result.setupProblems.add(setupProblem);
+                    break;
+                default:
+                    throw new IOException("Unsupported response line: " + line);
+                }
+            }
+            return null;
+        }, SonargraphReportDaemon.QUERY_SYSTEM);
+        return result;
+    }
+
+    /**
+     * @return The issues of the module keyed by absolute paths, the paths of directories end with
+     *         {@value SonargraphReportDaemon#DIRECTORY_SUFFIX}
+     */
+    IssueIndex queryModule(final String moduleName) throws IOException
+    {
+        return query(reader -> IssueIndex.read(reader, "of module '" + moduleName + "' from report daemon"),
+                SonargraphReportDaemon.QUERY_MODULE, moduleName);
+    }
+
+    @FunctionalInterface
+    private interface ResponseReader<T>
+    {
+        T read(BufferedReader reader) throws IOException;
+    }
+
+    private <T> T query(final ResponseReader<T> responseReader, final String... query) throws IOException
+    {
+        try (Socket socket = new Socket())
+        {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+
+            final Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            writer.write(SonargraphReportDaemon.HEADER);
+            writer.write('\n');
+            for (final File nextReportFile : reportFiles)
+            {
+                writeLine(writer, SonargraphReportDaemon.REPORT, nextReportFile.getAbsolutePath());
+            }
+            if (systemBaseDirectory != null)
+            {
+                writeLine(writer, SonargraphReportDaemon.BASE_DIR, systemBaseDirectory.getAbsolutePath());
+            }
+            for (final Map.Entry<String, String[]> nextSetting : settings.entrySet())
+            {
+                for (final String nextValue : nextSetting.getValue())
+                {
+                    writeLine(writer, SonargraphReportDaemon.SETTING, nextSetting.getKey(), nextValue);
+                }
+            }
+            final String[] queryLine = new String[query.length + 1];
+            queryLine[0] = SonargraphReportDaemon.QUERY;
+            System.arraycopy(query, 0, queryLine, 1, query.length);
+            writeLine(writer, queryLine);
+            writer.write('\n');
+            writer.flush();
+
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            if (!SonargraphReportDaemon.HEADER.equals(reader.readLine()))
+            {
+                throw new IOException("Unsupported response format");
+            }
+            final String status = reader.readLine();
+            if (status == null)
+            {
+                throw new IOException("Report daemon did not answer");
+            }
+            if (!status.equals(SonargraphReportDaemon.OK))
+            {
+                throw new IOException("Report daemon failed: " + (status.startsWith(SonargraphReportDaemon.ERROR)
+                        ? IssueIndex.unescape(status.substring(SonargraphReportDaemon.ERROR.length()).trim())
+                        : status));
+            }
+            return responseReader.read(reader);
+        }
+    }
+
+    private static void writeLine(final Writer writer, final String... parts) throws IOException
+    {
+        for (int i = 0; i < parts.length; i++)
+        {
+            if (i > 0)
+            {
+                writer.write(SonargraphReportDaemon.SEPARATOR);
+            }
+            writer.write(IssueIndex.escape(parts[i]));
+        }
+        writer.write('\n');
+    }
+
+    private static String[] split(final String line)
+    {
+        final String[] parts = line.split(String.valueOf(SonargraphReportDaemon.SEPARATOR), -1);
+        for (int i = 0; i < parts.length; i++)
+        {
+            parts[i] = IssueIndex.unescape(parts[i]);
+        }
+        return parts;
+    }
+
+    private static double parseDouble(final String value, final String line) throws IOException
+    {
+        try
+        {
+            return Double.parseDouble(value);
+        }
+        catch (final NumberFormatException e)
+        {
+            throw new IOException("Invalid response line: " + line, e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.hello2morrow.sonargraph.integration.access.controller.IInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IResolution;
+import com.hello2morrow.sonargraph.integration.access.model.ResolutionType;
+
+/**
+ * Maps issues to their resolutions (fixes, todos, refactorings). The index is created once per report, since only few issues have a
+ * resolution. The information about the resolution that is appended to the issue description is formatted once per resolution.
+ */
+final class ResolutionIndex
+{
+    static final class Resolution
+    {
+        private final String label;
+        private final String details;
+
+        private Resolution(final IResolution resolution)
+        {
+            final ResolutionType type = resolution.getType();
+            switch (type)
+            {
+            case FIX:
+                label = SonargraphBase.toLowerCase(type.toString(), false) + ": ";
+                break;
+            case REFACTORING:
+                //$FALL-THROUGH$
+            case TODO:
+                label = "";
+                break;
+            case IGNORE:
+                //$FALL-THROUGH$
+            case NONE:
+                //$FALL-THROUGH$
+            default:
+                assert false : "Unhandled resolution type: " + type;
+                label = null;
+                break;
+            }
+
+            final StringBuilder result = new StringBuilder();
+            result.append(" assignee='").append(resolution.getAssignee()).append("'");
+            result.append(" priority='").append(SonargraphBase.toLowerCase(resolution.getPriority().toString(), false))
+                    .append("'");
+            result.append(" description='").append(resolution.getDescription()).append("'");
+            result.append(" created='").append(resolution.getDate()).append("'");
+            details = result.toString();
+        }
+
+        void appendTo(final StringBuilder description, final IIssue issue)
+        {
+            if (label != null)
+            {
+                description.append("[").append(label).append(issue.getPresentationName()).append("]");
+            }
+            description.append(details);
+        }
+    }
+
+    private final Map<IIssue, Resolution> issueToResolution;
+
+    private ResolutionIndex(final Map<IIssue, Resolution> issueToResolution)
+    {
+        this.issueToResolution = issueToResolution;
+    }
+
+    static ResolutionIndex create(final IInfoProcessor infoProcessor)
+    {
+        final List<IResolution> resolutions = infoProcessor.getResolutions(r -> true);
+        if (resolutions.isEmpty())
+        {
+            return new ResolutionIndex(Collections.emptyMap());
+        }
+
+        final Map<IIssue, Resolution> issueToResolution = new IdentityHashMap<>();
+        for (final IResolution nextResolution : resolutions)
+        {
+            final Resolution resolution = new Resolution(nextResolution);
+            for (final IIssue nextIssue : nextResolution.getIssues())
+            {
+                issueToResolution.put(nextIssue, resolution);
+            }
+        }
+        return new ResolutionIndex(issueToResolution);
+    }
+
+    /**
+     * @return The resolution of the issue or null, if there is none.
+     */
+    Resolution getResolution(final IIssue issue)
+    {
+        return issueToResolution.get(issue);
+    }
+
+    int size()
+    {
+        return issueToResolution.size();
+    }
+}
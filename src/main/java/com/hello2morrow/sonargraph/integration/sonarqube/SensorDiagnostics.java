@@ -0,0 +1,153 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Collects problems encountered while processing issues and modules instead of logging each one of them. A broken module mapping would
+ * otherwise produce a log entry per issue. Occurrences are counted per reason and a few examples are kept, the summary is logged once
+ * at the end of the analysis. Each occurrence is logged in full detail if debug logging is enabled (e.g. 'sonar.verbose=true').
+ */
+final class SensorDiagnostics
+{
+    enum Reason
+    {
+        MODULE_LANGUAGE_NOT_ACTIVE("Module ignored, language not active for project"),
+        MODULE_LANGUAGE_NOT_SUPPORTED("Module ignored, language not supported"),
+        NO_RULES_FOR_MODULE_LANGUAGE("Module ignored, no rules activated for language"),
+        SOURCE_FILE_NOT_FOUND("Source file not found"),
+        DIRECTORY_NOT_FOUND("Directory not found"),
+        ISSUE_CREATION_FAILED("Failed to create issue"),
+        LINE_RANGE_SHORTENED("Line range exceeded end of file and has been shortened"),
+        LINE_RANGE_OMITTED("Line range started after end of file and has been omitted");
+
+        private final String presentationName;
+
+        private Reason(final String presentationName)
+        {
+            this.presentationName = presentationName;
+        }
+
+        String getPresentationName()
+        {
+            return presentationName;
+        }
+    }
+
+    private static final Logger LOGGER = Loggers.get(SensorDiagnostics.class);
+    static final int MAX_SAMPLES_PER_REASON = 3;
+
+    private final Map<Reason, Integer> counts = new EnumMap<>(Reason.class);
+    private final Map<Reason, List<String>> samples = new EnumMap<>(Reason.class);
+
+    /**
+     * @param detail Only evaluated if the detail is kept as sample or debug logging is enabled
+     */
+    synchronized void add(final Reason reason, final Supplier<String> detail)
+    {
+        add(reason, detail, null);
+    }
+
+    synchronized void add(final Reason reason, final Supplier<String> detail, final Throwable throwable)
+    {
+        counts.merge(reason, Integer.valueOf(1), Integer::sum);
+
+        final boolean isDebugEnabled = LOGGER.isDebugEnabled();
+        final List<String> reasonSamples = samples.computeIfAbsent(reason, r -> new ArrayList<>(MAX_SAMPLES_PER_REASON));
+        if (!isDebugEnabled && reasonSamples.size() >= MAX_SAMPLES_PER_REASON)
+        {
+            return;
+        }
+
+        final String nextDetail = throwable != null ? detail.get() + " (" + throwable + ")" : detail.get();
+        if (reasonSamples.size() < MAX_SAMPLES_PER_REASON)
+        {
+            reasonSamples.add(nextDetail);
+        }
+        if (isDebugEnabled)
+        {
+            if (throwable != null)
+            {
+                LOGGER.debug(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": " + reason.getPresentationName() + ": "
+                        + nextDetail, throwable);
+            }
+            else
+            {
+                LOGGER.debug("{}: {}: {}", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                        reason.getPresentationName(), nextDetail);
+            }
+        }
+    }
+
+    /**
+     * Adds occurrences that have been counted elsewhere, without details.
+     */
+    synchronized void add(final Reason reason, final int count)
+    {
+        if (count > 0)
+        {
+            counts.merge(reason, Integer.valueOf(count), Integer::sum);
+        }
+    }
+
+    synchronized int getCount(final Reason reason)
+    {
+        final Integer count = counts.get(reason);
+        return count != null ? count.intValue() : 0;
+    }
+
+    synchronized List<String> getSamples(final Reason reason)
+    {
+        final List<String> reasonSamples = samples.get(reason);
+        return reasonSamples != null ? Collections.unmodifiableList(reasonSamples) : Collections.emptyList();
+    }
+
+    synchronized boolean isEmpty()
+    {
+        return counts.isEmpty();
+    }
+
+    synchronized void logSummary()
+    {
+        if (counts.isEmpty())
+        {
+            return;
+        }
+
+        final StringBuilder summary = new StringBuilder();
+        for (final Map.Entry<Reason, Integer> nextEntry : counts.entrySet())
+        {
+            summary.append(String.format("%n  %8d  %s", nextEntry.getValue(), nextEntry.getKey().getPresentationName()));
+            for (final String nextSample : getSamples(nextEntry.getKey()))
+            {
+                summary.append(String.format("%n            - %s", nextSample));
+            }
+        }
+        LOGGER.warn("{}: Problems encountered during analysis (enable debug logging for full details):{}",
+                SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, summary);
+    }
+}
@@ -24,6 +24,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.StringJoiner;
 import java.util.TreeMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -33,8 +34,10 @@ import org.slf4j.LoggerFactory;
 import org.sonar.api.measures.Metric;
 
 import com.hello2morrow.sonargraph.integration.access.foundation.Utility;
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
 import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
 import com.hello2morrow.sonargraph.integration.access.model.IModule;
+import com.hello2morrow.sonargraph.integration.access.model.INamedElement;
 import com.hello2morrow.sonargraph.integration.access.model.IRootDirectory;
 import com.hello2morrow.sonargraph.integration.access.model.ISoftwareSystem;
 import com.hello2morrow.sonargraph.integration.access.model.Severity;
@@ -51,10 +54,26 @@ final class SonargraphBase
     static final String[] SUPPORTED_LANGUAGES = new String[] { SonargraphBase.JAVA, SonargraphBase.CSHARP, SonargraphBase.CPLUSPLUS };
 
     static final String METRIC_ID_PREFIX = "sg_i.";//There is a max length of 64 characters for metric keys
+    static final String ANALYSIS_PARTIAL_METRIC_KEY = METRIC_ID_PREFIX + "ANALYSIS_PARTIAL";
 
     static final String CONFIG_PREFIX = "sonar.sonargraph.integration";
     static final String SONARGRAPH_BASE_DIR_KEY = CONFIG_PREFIX + ":" + "system.basedir";
     static final String XML_REPORT_FILE_PATH_KEY = CONFIG_PREFIX + ":" + "report.path";
+    static final String ISSUE_CATEGORIES_INCLUDE_KEY = CONFIG_PREFIX + ":" + "issue.categories.include";
+    static final String ISSUE_CATEGORIES_EXCLUDE_KEY = CONFIG_PREFIX + ":" + "issue.categories.exclude";
+    static final String ISSUE_SEVERITIES_INCLUDE_KEY = CONFIG_PREFIX + ":" + "issue.severities.include";
+    static final String ISSUE_SEVERITIES_EXCLUDE_KEY = CONFIG_PREFIX + ":" + "issue.severities.exclude";
+    static final String ISSUE_PROVIDERS_INCLUDE_KEY = CONFIG_PREFIX + ":" + "issue.providers.include";
+    static final String ISSUE_PROVIDERS_EXCLUDE_KEY = CONFIG_PREFIX + ":" + "issue.providers.exclude";
+    static final String MODULES_INCLUDE_KEY = CONFIG_PREFIX + ":" + "modules.include";
+    static final String MODULES_EXCLUDE_KEY = CONFIG_PREFIX + ":" + "modules.exclude";
+    static final String TIME_BUDGET_KEY = CONFIG_PREFIX + ":" + "time.budget";
+    static final String ISSUE_INDEX_PATH_KEY = CONFIG_PREFIX + ":" + "issue.index.path";
+    static final String CACHE_DIR_KEY = CONFIG_PREFIX + ":" + "cache.dir";
+    static final String DAEMON_PORT_KEY = CONFIG_PREFIX + ":" + "daemon.port";
+    static final String CUSTOM_RULES_RETENTION_KEY = CONFIG_PREFIX + ":" + "custom.rules.retention";
+    static final String VIRTUAL_THREADS_KEY = CONFIG_PREFIX + ":" + "virtual.threads";
+    static final String IO_CONCURRENCY_KEY = CONFIG_PREFIX + ":" + "io.concurrency";
     static final String XML_REPORT_FILE_PATH_DEFAULT = "sonargraph/sonargraph-sonarqube-report.xml";
 
     static final String SCRIPT_ISSUE_CATEGORY = "ScriptBased";
@@ -68,6 +87,7 @@ final class SonargraphBase
     static final String PLUGIN_ISSUE_PRESENTATION_NAME = "Plugin Issue";
 
     static final String QUALITY_GATE_ISSUE_CATEGORY = "QualityGate";
+    static final String CYCLE_GROUP_ISSUE_CATEGORY = "CycleGroup";
 
     //See regex for validating rule tags in org.sonar.api.server.rule.RuleTagFormat
     private static final Pattern INVALID_TAG_CHARACTERS_PATTERN = Pattern.compile("[^a-z0-9\\+#\\-\\.]");
@@ -254,11 +274,58 @@ final class SonargraphBase
                         || issueType.getSupportedSeverities().contains(Severity.WARNING));
     }
 
+    /**
+     * Creates a key identifying an issue independent of the XML report it has been loaded from.
+     */
+    static String createIssueIdentityKey(final IIssue issue)
+    {
+        final StringJoiner key = new StringJoiner("|");
+        key.add(issue.getIssueType().getName());
+        key.add(issue.getSeverity().getStandardName());
+        key.add(issue.getPresentationName());
+        key.add(issue.getDescription());
+        key.add(Integer.toString(issue.getLine()));
+        for (final INamedElement nextAffected : issue.getAffectedNamedElements())
+        {
+            key.add(nextAffected.getFqName());
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return The index of the first character of the given path that has a special meaning in a glob pattern, -1 if there is none.
+     */
+    static int indexOfGlobCharacter(final String path)
+    {
+        for (int i = 0; i < path.length(); i++)
+        {
+            switch (path.charAt(i))
+            {
+            case '*':
+                //$FALL-THROUGH$
+            case '?':
+                //$FALL-THROUGH$
+            case '[':
+                //$FALL-THROUGH$
+            case '{':
+                return i;
+            default:
+                break;
+            }
+        }
+        return -1;
+    }
+
     static boolean isScriptIssue(final IIssueType issueType)
     {
         return SCRIPT_ISSUE_CATEGORY.equals(issueType.getCategory().getName());
     }
 
+    static boolean isCycleGroupIssue(final IIssueType issueType)
+    {
+        return CYCLE_GROUP_ISSUE_CATEGORY.equals(issueType.getCategory().getName());
+    }
+
     static boolean isPluginIssue(final IIssueType issueType)
     {
         return PLUGIN_ISSUE_CATEGORY.equals(issueType.getCategory().getName());
@@ -0,0 +1,131 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events for the phases of the sensor, so that they can be correlated with GC and I/O in the same recording. When
+ * recording is off the events are neither populated nor committed. Usage pattern for duration events:
+ *
+ * <pre>
+ * final ModuleProcessingEvent event = new ModuleProcessingEvent();
+ * event.begin();
+ * ...
+ * if (event.shouldCommit())
+ * {
+ *     event.moduleName = ...;
+ *     event.commit();
+ * }
+ * </pre>
+ */
+final class SonargraphEvents
+{
+    private static final String CATEGORY = SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME;
+    private static final String NAME_PREFIX = "com.hello2morrow.sonargraph.integration.";
+
+    private SonargraphEvents()
+    {
+        super();
+    }
+
+    @Name(NAME_PREFIX + "ReportLoad")
+    @Label("Report Load")
+    @Description("Loading of a Sonargraph XML report file")
+    @Category(CATEGORY)
+    static final class ReportLoadEvent extends Event
+    {
+        @Label("Report File")
+        String reportFile;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name(NAME_PREFIX + "LanguageDetermination")
+    @Label("Language Determination")
+    @Description("Determination of the language to be processed from the modules of the Sonargraph system")
+    @Category(CATEGORY)
+    static final class LanguageDeterminationEvent extends Event
+    {
+        @Label("Language")
+        String language;
+
+        @Label("Languages")
+        int numberOfLanguages;
+    }
+
+    @Name(NAME_PREFIX + "SystemProcessing")
+    @Label("System Processing")
+    @Description("Processing of the system-level issues of a Sonargraph system")
+    @Category(CATEGORY)
+    static final class SystemProcessingEvent extends Event
+    {
+        @Label("System")
+        String systemName;
+
+        @Label("Issues")
+        int issueCount;
+    }
+
+    @Name(NAME_PREFIX + "ModuleProcessing")
+    @Label("Module Processing")
+    @Description("Preparation of the SonarQube issues of a Sonargraph module")
+    @Category(CATEGORY)
+    static final class ModuleProcessingEvent extends Event
+    {
+        @Label("Module")
+        String moduleName;
+
+        @Label("Issues")
+        int issueCount;
+    }
+
+    @Name(NAME_PREFIX + "PathResolutionMiss")
+    @Label("Path Resolution Miss")
+    @Description("A source file or directory of the Sonargraph report that is not part of the SonarQube file system")
+    @Category(CATEGORY)
+    static final class PathResolutionMissEvent extends Event
+    {
+        @Label("Path")
+        String path;
+
+        @Label("Directory")
+        boolean directory;
+
+        @Label("Issues")
+        int issueCount;
+    }
+
+    @Name(NAME_PREFIX + "CustomRulePersistence")
+    @Label("Custom Rule Persistence")
+    @Description("Saving of the custom rules file")
+    @Category(CATEGORY)
+    static final class CustomRulePersistenceEvent extends Event
+    {
+        @Label("File")
+        String file;
+
+        @Label("Success")
+        boolean success;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.sonar.api.SonarProduct;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.sensor.Sensor;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Lightweight file-level sensor for SonarLint. It reports the Sonargraph issues of the analyzed files from the issue index written by
+ * {@link SonargraphSensor} during a normal scan, without loading the XML report. In SonarQube scans it does nothing, since the issues are
+ * created by {@link SonargraphSensor} there.
+ */
+public final class SonargraphIssueIndexSensor implements Sensor
+{
+    private static final Logger LOGGER = Loggers.get(SonargraphIssueIndexSensor.class);
+
+    public SonargraphIssueIndexSensor()
+    {
+        super();
+    }
+
+    @Override
+    public void describe(final SensorDescriptor descriptor)
+    {
+        descriptor.name(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + " Issue Index")
+                .onlyWhenConfiguration(c -> c.hasKey(SonargraphBase.ISSUE_INDEX_PATH_KEY)).processesFilesIndependently();
+    }
+
+    @Override
+    public void execute(final SensorContext sensorContext)
+    {
+        if (sensorContext.runtime().getProduct() != SonarProduct.SONARLINT)
+        {
+            return;
+        }
+
+        final String indexPath = sensorContext.config().get(SonargraphBase.ISSUE_INDEX_PATH_KEY).orElse("");
+        final FileSystem fileSystem = sensorContext.fileSystem();
+        final File indexFile = fileSystem.resolvePath(indexPath);
+        if (indexPath.isEmpty() || !indexFile.canRead())
+        {
+            LOGGER.debug("{}: Issue index '{}' not available", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                    indexFile);
+            return;
+        }
+
+        final IssueIndex issueIndex;
+        try
+        {
+            issueIndex = IssueIndex.load(indexFile);
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to read issue index '"
+                    + indexFile.getAbsolutePath() + "'", e);
+            return;
+        }
+
+        final LineRangeValidator lineRangeValidator = new LineRangeValidator();
+        int createdIssues = 0;
+        for (final InputFile nextInputFile : fileSystem.inputFiles(fileSystem.predicates().all()))
+        {
+            final List<IssueIndex.Entry> entries = issueIndex.get(IssueIndex.createKey(fileSystem.baseDir(),
+                    nextInputFile));
+            for (final IssueIndex.Entry nextEntry : entries)
+            {
+                final ActiveRule rule = sensorContext.activeRules().find(RuleKey.parse(nextEntry.getRuleKey()));
+                if (rule == null)
+                {
+                    continue;
+                }
+
+                PendingIssue.create(nextEntry, rule, nextInputFile,
+                        path -> fileSystem.inputFile(fileSystem.predicates().hasRelativePath(path)))
+                        .save(sensorContext, lineRangeValidator);
+                createdIssues++;
+            }
+        }
+        LOGGER.debug("{}: Created {} issue(s) from issue index", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                createdIssues);
+    }
+}
@@ -81,6 +81,7 @@ public final class SonargraphMetrics implements Metrics
                 }
             }
 
+            result.put(SonargraphBase.ANALYSIS_PARTIAL_METRIC_KEY, createAnalysisPartialMetric());
             metrics = new ArrayList<>(result.values());
             if (omittedCustomMetricCounter == 0)
             {
@@ -98,4 +99,19 @@ public final class SonargraphMetrics implements Metrics
 
         return Collections.unmodifiableList(metrics);
     }
+
+    /**
+     * Flags an analysis that stopped before the XML report files have been processed completely (1) or not (0).
+     */
+    static Metric<Serializable> createAnalysisPartialMetric()
+    {
+        final Metric.Builder builder = new Metric.Builder(SonargraphBase.ANALYSIS_PARTIAL_METRIC_KEY,
+                "Partial Analysis", Metric.ValueType.INT)
+                        .setDescription("1 if the analysis stopped early because its time budget was exceeded")
+                        .setDomain(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME);
+        SonargraphBase.setBestValue(0.0, builder);
+        SonargraphBase.setWorstValue(1.0, builder);
+        SonargraphBase.setMetricDirection(0.0, 1.0, builder);
+        return builder.create();
+    }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ package com.hello2morrow.sonargraph.integration.sonarqube;
 import org.sonar.api.Plugin;
 import org.sonar.api.Properties;
 import org.sonar.api.Property;
+import org.sonar.api.PropertyType;
 
 @Properties({
         @Property(key = SonargraphBase.XML_REPORT_FILE_PATH_KEY, name = "XML report file path", project = true, module = false, global = false, description = ""
@@ -27,7 +28,50 @@ import org.sonar.api.Property;
                 + " Per default the XML report file is expected under each module (project and sub-modules) at the relative path '"
                 + SonargraphBase.XML_REPORT_FILE_PATH_DEFAULT + "'."
                 + " It is also possible to use an absolute path, in that case you need to provide the XML report file only at 1 location."
-                + " In both cases make sure that the xml report file is there before running the SonarQube analysis scan.") })
+                + " In both cases make sure that the xml report file is there before running the SonarQube analysis scan."
+                + " Several XML report files of the same system (e.g. one per module group) can be provided as comma-separated list"
+                + " or as glob pattern like 'target/sonargraph/*.xml'. They are loaded in parallel and their results are merged."),
+        @Property(key = SonargraphBase.ISSUE_CATEGORIES_INCLUDE_KEY, name = "Included issue categories", project = true, module = false, global = false, multiValues = true, description = ""
+                + "Comma-separated list of issue categories (e.g. 'ArchitectureViolation') to be processed. Empty means all categories."),
+        @Property(key = SonargraphBase.ISSUE_CATEGORIES_EXCLUDE_KEY, name = "Excluded issue categories", project = true, module = false, global = false, multiValues = true, description = ""
+                + "Comma-separated list of issue categories (e.g. 'ThresholdViolation, DuplicateCode') to be skipped."),
+        @Property(key = SonargraphBase.ISSUE_SEVERITIES_INCLUDE_KEY, name = "Included issue severities", project = true, module = false, global = false, multiValues = true, description = ""
+                + "Comma-separated list of issue severities (ERROR, WARNING, INFO, NONE) to be processed. Empty means all severities."),
+        @Property(key = SonargraphBase.ISSUE_SEVERITIES_EXCLUDE_KEY, name = "Excluded issue severities", project = true, module = false, global = false, multiValues = true, description = ""
+                + "Comma-separated list of issue severities (ERROR, WARNING, INFO, NONE) to be skipped."),
+        @Property(key = SonargraphBase.ISSUE_PROVIDERS_INCLUDE_KEY, name = "Included issue providers", project = true, module = false, global = false, multiValues = true, description = ""
+                + "Comma-separated list of issue providers (e.g. 'Core', script or plugin names) to be processed. Empty means all providers."),
+        @Property(key = SonargraphBase.ISSUE_PROVIDERS_EXCLUDE_KEY, name = "Excluded issue providers", project = true, module = false, global = false, multiValues = true, description = ""
+                + "Comma-separated list of issue providers (e.g. script or plugin names) to be skipped."),
+        @Property(key = SonargraphBase.MODULES_INCLUDE_KEY, name = "Included modules", project = true, module = false, global = false, multiValues = true, description = ""
+                + "Comma-separated list of Sonargraph module names to be processed, '*' and '?' can be used as wildcards. Empty means all modules."),
+        @Property(key = SonargraphBase.MODULES_EXCLUDE_KEY, name = "Excluded modules", project = true, module = false, global = false, multiValues = true, description = ""
+                + "Comma-separated list of Sonargraph module names to be skipped, '*' and '?' can be used as wildcards."),
+        @Property(key = SonargraphBase.TIME_BUDGET_KEY, name = "Time budget", project = true, module = false, global = false, type = PropertyType.LONG, defaultValue = "0", description = ""
+                + "Maximum time in seconds for processing the XML report files, 0 means no limit. If the time budget is exceeded,"
+                + " the issues and metrics processed so far are saved and the analysis is flagged as partial."),
+        @Property(key = SonargraphBase.ISSUE_INDEX_PATH_KEY, name = "Issue index path", project = true, module = false, global = false, description = ""
+                + "Path of a compact per-file index of the Sonargraph issues. If set, the index is written during the SonarQube analysis."
+                + " SonarLint then reports the issues of the edited files from this index, without reading the XML report file."),
+        @Property(key = SonargraphBase.CACHE_DIR_KEY, name = "Cache directory", project = true, module = false, global = false, description = ""
+                + "Directory where the issues created from an XML report file are cached. If set, an analysis of the same report"
+                + " (e.g. of another branch or pull request) reuses the cached issues of unchanged files instead of recomputing them."),
+        @Property(key = SonargraphBase.DAEMON_PORT_KEY, name = "Report daemon port", project = true, module = false, global = false, type = PropertyType.INTEGER, defaultValue = "0", description = ""
+                + "Port of the Sonargraph report daemon on the same host, 0 means no daemon is used. The daemon keeps the XML report files loaded"
+                + " for concurrent analyses (e.g. of the sub-projects of a monorepo). It only loads XML report files within the report directories it has been"
+                + " started with. If it is not available, the XML report files are loaded by the analysis."),
+        @Property(key = SonargraphBase.CUSTOM_RULES_RETENTION_KEY, name = "Custom rules retention", project = true, module = false, global = false, type = PropertyType.INTEGER, defaultValue = "0", description = ""
+                + "Number of analyses a custom rule for a script or plugin issue type is kept in <user-home>/.sonargraphintegration without"
+                + " being seen, 0 means custom rules are never dropped. Analyses are counted per project, a custom rule is only dropped if no"
+                + " project has seen it in its last analyses. Only complete analyses processing the XML report files without report daemon,"
+                + " without issues replayed from the cache and without issue selection are counted."),
+        @Property(key = SonargraphBase.VIRTUAL_THREADS_KEY, name = "Virtual threads", project = true, module = false, global = false, type = PropertyType.BOOLEAN, defaultValue = "false", description = ""
+                + "Runs blocking I/O (reading XML report files) on virtual threads if the scanner"
+                + " runs on Java 21 or later. Otherwise a pool of platform threads is used."),
+        @Property(key = SonargraphBase.IO_CONCURRENCY_KEY, name = "I/O concurrency", project = true, module = false, global = false, type = PropertyType.INTEGER, defaultValue = "0", description = ""
+                + "Maximum number of blocking I/O operations running at the same time, also the size of the platform thread pool."
+                + " 0 means " + BlockingExecutor.DEFAULT_VIRTUAL_CONCURRENCY_LIMIT + " with virtual threads and "
+                + BlockingExecutor.DEFAULT_PLATFORM_CONCURRENCY_LIMIT + " with platform threads.") })
 public final class SonargraphPlugin implements Plugin
 {
     public SonargraphPlugin()
@@ -41,6 +85,6 @@ public final class SonargraphPlugin implements Plugin
         context.addExtensions(SonargraphRules.class, SonargraphMetrics.class, StandardSonargraphProfileJava.class,
                 StrictSonargraphProfileJava.class, StandardSonargraphProfileCSharp.class,
                 StrictSonargraphProfileCSharp.class, StandardSonargraphProfileCPlusPlus.class,
-                StrictSonargraphProfileCPlusPlus.class, SonargraphSensor.class);
+                StrictSonargraphProfileCPlusPlus.class, SonargraphSensor.class, SonargraphIssueIndexSensor.class);
     }
 }
\ No newline at end of file
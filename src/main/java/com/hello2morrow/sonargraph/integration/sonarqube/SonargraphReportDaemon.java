@@ -0,0 +1,672 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import com.hello2morrow.sonargraph.integration.access.controller.IModuleInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
+import com.hello2morrow.sonargraph.integration.access.controller.ISystemInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.foundation.Utility;
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IMetricId;
+import com.hello2morrow.sonargraph.integration.access.model.IMetricLevel;
+import com.hello2morrow.sonargraph.integration.access.model.IMetricValue;
+import com.hello2morrow.sonargraph.integration.access.model.IModule;
+import com.hello2morrow.sonargraph.integration.access.model.INamedElement;
+import com.hello2morrow.sonargraph.integration.access.model.ISoftwareSystem;
+import com.hello2morrow.sonargraph.integration.access.model.ISourceFile;
+
+/**
+ * Resident process that loads Sonargraph XML reports once and keeps them in memory for the SonarQube analyses running on the same host,
+ * e.g. the analyses of the sub-projects of a monorepo sharing one report. {@link SonargraphSensor} queries it with
+ * {@link ReportDaemonClient} if the port is configured with property {@value SonargraphBase#DAEMON_PORT_KEY} and loads the reports
+ * itself if the daemon is not available. It listens on the loopback interface only and is started with
+ *
+ * <pre>
+ * java -cp &lt;plugin jar&gt;:&lt;sonargraph-integration-access jar&gt;:&lt;sonar-plugin-api jar&gt; \
+ *     com.hello2morrow.sonargraph.integration.sonarqube.SonargraphReportDaemon &lt;port&gt; &lt;report directory&gt;...
+ * </pre>
+ *
+ * Any local process can connect to the daemon, which reads the requested files with the privileges of the daemon's user. Only XML report
+ * files within the given report directories (after resolving symbolic links) are therefore loaded, requests for other files are rejected.
+ * The daemon should run as a user that has no more privileges than the analyses using it.
+ * <p>
+ * Reports are loaded on the first request for them and reloaded if one of their files has been modified. Requests for reports that are
+ * already loaded are answered while other reports are being loaded. Each answer is created once per issue selection and kept as long as its
+ * reports, the answers for different modules are created concurrently. The Sonargraph model is not
+ * serializable, so the daemon answers with the information the sensor needs to create the SonarQube issues and measures: system-level
+ * metrics, system-level issues and the issues of one module at a time in the format of the {@link IssueIndex}, keyed by absolute paths.
+ * <p>
+ * One request per connection, each line of the request is a tab-separated key and value, the request ends with an empty line:
+ *
+ * <pre>
+ * #Sonargraph report daemon 1
+ * report\t&lt;absolute path of XML report file&gt;          (repeated)
+ * baseDir\t&lt;system base directory&gt;                    (optional)
+ * setting\t&lt;issue selection property&gt;\t&lt;value&gt;         (repeated)
+ * query\tsystem | query\tmodule\t&lt;module name&gt;
+ * </pre>
+ *
+ * The response starts with the header followed by 'ok' or 'error\t&lt;message&gt;'. The system response consists of the lines
+ * 'module\t&lt;name&gt;\t&lt;language&gt;', 'metric\t&lt;name&gt;\t&lt;is float&gt;\t&lt;value&gt;', 'issue\t&lt;rule key&gt;\t&lt;message&gt;' and
+ * 'setup\t&lt;issue&gt;[\t&lt;affected element&gt;]*' for the ignored system setup problems. The module response is an issue index, the paths of
+ * directories end with '/'.
+ */
+public final class SonargraphReportDaemon implements Closeable
+{
+    private static final Logger LOGGER = Loggers.get(SonargraphReportDaemon.class);
+
+    static final String HEADER = "#Sonargraph report daemon 1";
+    static final String REPORT = "report";
+    static final String BASE_DIR = "baseDir";
+    static final String SETTING = "setting";
+    static final String QUERY = "query";
+    static final String QUERY_SYSTEM = "system";
+    static final String QUERY_MODULE = "module";
+    static final String OK = "ok";
+    static final String ERROR = "error";
+    static final String MODULE = "module";
+    static final String METRIC = "metric";
+    static final String ISSUE = "issue";
+    static final String SETUP = "setup";
+    static final String DIRECTORY_SUFFIX = "/";
+    static final char SEPARATOR = '\t';
+
+    /** Each set of loaded reports holds a complete Sonargraph model, so only a few of them are kept */
+    private static final int MAX_LOADED_REPORTS = 4;
+    /** The client sends the complete request right after connecting, a connection not doing so must not block a worker thread */
+    private static final int REQUEST_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * The reports requested together, with the information derived from them once.
+     */
+    private static final class LoadedReports
+    {
+        private final Map<File, Long> lastModified;
+        private final List<ISonargraphSystemController> controllers;
+        private final List<ISystemInfoProcessor> systemInfoProcessors = new ArrayList<>();
+        private final List<IssueDescriptions> issueDescriptions = new ArrayList<>();
+        private final StringPool stringPool = new StringPool();
+        //Modules contained in several reports are taken from the first one
+        private final Map<String, Integer> moduleToReport = new LinkedHashMap<>();
+        /** Serialized answers by query and issue selection, kept as long as the reports */
+        private final Map<String, CompletableFuture<String>> answers = new ConcurrentHashMap<>();
+
+        LoadedReports(final Map<File, Long> lastModified, final List<ISonargraphSystemController> controllers)
+        {
+            this.lastModified = lastModified;
+            this.controllers = controllers;
+
+            for (int i = 0; i < controllers.size(); i++)
+            {
+                final ISystemInfoProcessor systemInfoProcessor = controllers.get(i).createSystemInfoProcessor();
+                systemInfoProcessors.add(systemInfoProcessor);
+                issueDescriptions.add(new IssueDescriptions(ResolutionIndex.create(systemInfoProcessor)));
+                for (final String nextModule : systemInfoProcessor.getModules().keySet())
+                {
+                    moduleToReport.putIfAbsent(nextModule, Integer.valueOf(i));
+                }
+            }
+        }
+
+        /**
+         * Only the first request for an answer creates it, concurrent requests for the same answer wait for it. Answers to different
+         * queries (e.g. different modules) are created concurrently, the Sonargraph model is only read after loading.
+         */
+        String getAnswer(final String key, final AnswerCreator creator) throws IOException
+        {
+            final CompletableFuture<String> answer = new CompletableFuture<>();
+            final CompletableFuture<String> existing = answers.putIfAbsent(key, answer);
+            if (existing == null)
+            {
+                try
+                {
+                    answer.complete(creator.create());
+                }
+                catch (final IOException | RuntimeException e)
+                {
+                    answers.remove(key, answer);
+                    answer.completeExceptionally(e);
+                }
+            }
+
+            try
+            {
+                return (existing != null ? existing : answer).join();
+            }
+            catch (final CompletionException e)
+            {
+                throw new IOException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        boolean isCurrent()
+        {
+            for (final Entry<File, Long> nextEntry : lastModified.entrySet())
+            {
+                if (nextEntry.getKey().lastModified() != nextEntry.getValue().longValue())
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @FunctionalInterface
+    private interface AnswerCreator
+    {
+        String create() throws IOException;
+    }
+
+    private final ServerSocket serverSocket;
+    private final List<Path> reportDirectories = new ArrayList<>();
+    private final ExecutorService executor;
+    private final BlockingExecutor reportLoading = new BlockingExecutor("Sonargraph report daemon loading", false,
+            Runtime.getRuntime().availableProcessors());
+    /** Reports being loaded or loaded, the lock is only held to look them up, not while loading */
+    private final Map<String, CompletableFuture<LoadedReports>> loadedReports = new LinkedHashMap<>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, CompletableFuture<LoadedReports>> eldest)
+        {
+            return size() > MAX_LOADED_REPORTS;
+        }
+    };
+
+    /**
+     * @param port Port on the loopback interface, 0 to use any free port
+     * @param reportDirectories The directories containing the XML report files the daemon loads, including their sub directories
+     */
+    SonargraphReportDaemon(final int port, final List<File> reportDirectories) throws IOException
+    {
+        if (reportDirectories.isEmpty())
+        {
+            throw new IllegalArgumentException("No report directories");
+        }
+        for (final File nextDirectory : reportDirectories)
+        {
+            this.reportDirectories.add(nextDirectory.toPath().toRealPath());
+        }
+        serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        final AtomicInteger threadCounter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r ->
+        {
+            final Thread thread = new Thread(r, "Sonargraph report daemon " + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections on a background thread until the daemon is closed.
+     */
+    void start()
+    {
+        final Thread acceptor = new Thread(this::accept, "Sonargraph report daemon acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void accept()
+    {
+        LOGGER.info("{}: Report daemon listening on port {}, loading reports in {}",
+                SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, getPort(), reportDirectories);
+        while (!serverSocket.isClosed())
+        {
+            try
+            {
+                final Socket socket = serverSocket.accept();
+                executor.execute(() -> handle(socket));
+            }
+            catch (final SocketException e)
+            {
+                //Closed
+                break;
+            }
+            catch (final IOException e)
+            {
+                LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to accept connection", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        serverSocket.close();
+        executor.shutdownNow();
+        reportLoading.close();
+    }
+
+    private void handle(final Socket socket)
+    {
+        try (Socket s = socket;
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                Writer writer = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8)))
+        {
+            s.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+            writer.write(HEADER);
+            writer.write('\n');
+            try
+            {
+                handle(reader, writer);
+            }
+            catch (final IOException | RuntimeException e)
+            {
+                LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to handle request", e);
+                writer.write(ERROR);
+                writer.write(SEPARATOR);
+                writer.write(IssueIndex.escape(String.valueOf(e.getMessage())));
+                writer.write('\n');
+            }
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn("{}: Failed to answer request: {}", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                    e.getMessage());
+        }
+    }
+
+    private void handle(final BufferedReader reader, final Writer writer) throws IOException
+    {
+        if (!HEADER.equals(reader.readLine()))
+        {
+            throw new IOException("Unsupported request format");
+        }
+
+        final List<File> reportFiles = new ArrayList<>();
+        File systemBaseDirectory = null;
+        final Map<String, List<String>> settings = new HashMap<>();
+        String[] query = null;
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty())
+        {
+            final String[] parts = line.split(String.valueOf(SEPARATOR), -1);
+            switch (parts[0])
+            {
+            case REPORT:
+                reportFiles.add(getReportFile(IssueIndex.unescape(parts[1])));
+                break;
+            case BASE_DIR:
+                systemBaseDirectory = new File(IssueIndex.unescape(parts[1]));
+                break;
+            case SETTING:
+                settings.computeIfAbsent(parts[1], k -> new ArrayList<>()).add(IssueIndex.unescape(parts[2]));
+                break;
+            case QUERY:
+                query = parts;
+                break;
+            default:
+                throw new IOException("Unsupported request line: " + line);
+            }
+        }
+        if (query == null || reportFiles.isEmpty())
+        {
+            throw new IOException("Incomplete request");
+        }
+
+        final LoadedReports reports = getLoadedReports(reportFiles, systemBaseDirectory);
+        if (reports.controllers.isEmpty())
+        {
+            throw new IOException("Failed to load XML report files " + reportFiles);
+        }
+
+        final IssueSelection issueSelection = IssueSelection
+                .create(key -> settings.getOrDefault(key, Collections.emptyList()).toArray(new String[0]));
+        final String answerKey = String.join(String.valueOf(SEPARATOR), query) + SEPARATOR + new TreeMap<>(settings);
+        final String answer;
+        if (QUERY_SYSTEM.equals(query[1]))
+        {
+            answer = reports.getAnswer(answerKey, () ->
+            {
+                final StringWriter result = new StringWriter();
+                writeSystem(reports, issueSelection, result);
+                return result.toString();
+            });
+        }
+        else if (QUERY_MODULE.equals(query[1]) && query.length == 3)
+        {
+            final String moduleName = IssueIndex.unescape(query[2]);
+            answer = reports.getAnswer(answerKey, () ->
+            {
+                final StringWriter result = new StringWriter();
+                createModuleIssues(reports, moduleName, new ModuleIssuePartition.IssueFilter(issueSelection))
+                        .write(result);
+                return result.toString();
+            });
+        }
+        else
+        {
+            throw new IOException("Unsupported query: " + String.join(" ", query));
+        }
+        writer.write(OK);
+        writer.write('\n');
+        writer.write(answer);
+    }
+
+    /**
+     * @throws IOException if the file is not within one of the report directories
+     */
+    private File getReportFile(final String path) throws IOException
+    {
+        final Path reportFile;
+        try
+        {
+            reportFile = Paths.get(path).toRealPath();
+        }
+        catch (final IOException | InvalidPathException e)
+        {
+            throw new IOException("XML report file '" + path + "' not found", e);
+        }
+        for (final Path nextDirectory : reportDirectories)
+        {
+            if (reportFile.startsWith(nextDirectory))
+            {
+                return reportFile.toFile();
+            }
+        }
+        throw new IOException("XML report file '" + path + "' is not within the report directories of the daemon");
+    }
+
+    /**
+     * Only the first request for reports loads them, concurrent requests for the same reports wait for it.
+     */
+    private LoadedReports getLoadedReports(final List<File> reportFiles, final File systemBaseDirectory)
+            throws IOException
+    {
+        final String key = (systemBaseDirectory != null ? systemBaseDirectory.getAbsolutePath() : "") + reportFiles;
+        final CompletableFuture<LoadedReports> reports;
+        final boolean isLoadNeeded;
+        synchronized (loadedReports)
+        {
+            final CompletableFuture<LoadedReports> existing = loadedReports.get(key);
+            isLoadNeeded = existing == null || (existing.isDone() && !isCurrent(existing));
+            reports = isLoadNeeded ? new CompletableFuture<>() : existing;
+            if (isLoadNeeded)
+            {
+                loadedReports.put(key, reports);
+            }
+        }
+
+        if (isLoadNeeded)
+        {
+            try
+            {
+                reports.complete(load(reportFiles, systemBaseDirectory));
+            }
+            catch (final RuntimeException e)
+            {
+                synchronized (loadedReports)
+                {
+                    loadedReports.remove(key, reports);
+                }
+                reports.completeExceptionally(e);
+            }
+        }
+
+        try
+        {
+            return reports.join();
+        }
+        catch (final CompletionException e)
+        {
+            throw new IOException("Failed to load XML report files " + reportFiles, e.getCause());
+        }
+    }
+
+    private static boolean isCurrent(final CompletableFuture<LoadedReports> reports)
+    {
+        return !reports.isCompletedExceptionally() && reports.join().isCurrent();
+    }
+
+    private LoadedReports load(final List<File> reportFiles, final File systemBaseDirectory)
+    {
+        //Recorded before loading, so that a modification during loading causes another reload
+        final Map<File, Long> lastModified = new LinkedHashMap<>();
+        for (final File nextReportFile : reportFiles)
+        {
+            lastModified.put(nextReportFile, Long.valueOf(nextReportFile.lastModified()));
+        }
+        LOGGER.info("{}: Loading XML report files {}", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, reportFiles);
+        return new LoadedReports(lastModified,
+                new SonargraphReportLoader(systemBaseDirectory, reportLoading).load(reportFiles));
+    }
+
+    private static void writeSystem(final LoadedReports reports, final IssueSelection issueSelection,
+            final Writer writer) throws IOException
+    {
+        final Set<String> modules = new HashSet<>();
+        final Set<String> metrics = new HashSet<>();
+        final Set<String> issues = new HashSet<>();
+        for (int i = 0; i < reports.controllers.size(); i++)
+        {
+            final ISoftwareSystem softwareSystem = reports.controllers.get(i).getSoftwareSystem();
+            final ISystemInfoProcessor systemInfoProcessor = reports.systemInfoProcessors.get(i);
+            for (final IModule nextModule : softwareSystem.getModules().values())
+            {
+                if (modules.add(nextModule.getName()))
+                {
+                    writeLine(writer, MODULE, nextModule.getName(), nextModule.getLanguage());
+                }
+            }
+
+            final Optional<IMetricLevel> systemLevelOpt = systemInfoProcessor.getMetricLevel(IMetricLevel.SYSTEM);
+            if (systemLevelOpt.isPresent())
+            {
+                for (final IMetricId nextMetricId : systemInfoProcessor.getMetricIdsForLevel(systemLevelOpt.get()))
+                {
+                    final Optional<IMetricValue> metricValueOpt = systemInfoProcessor
+                            .getMetricValueForElement(nextMetricId, systemLevelOpt.get(), softwareSystem.getFqName());
+                    if (metricValueOpt.isPresent() && metrics.add(nextMetricId.getName()))
+                    {
+                        writeLine(writer, METRIC, nextMetricId.getName(), Boolean.toString(nextMetricId.isFloat()),
+                                metricValueOpt.get().getValue().toString());
+                    }
+                }
+            }
+
+            final IssueDescriptions issueDescriptions = reports.issueDescriptions.get(i);
+            final SystemIssueClassifier classifier = new SystemIssueClassifier(softwareSystem, issueSelection);
+            for (final IIssue nextIssue : systemInfoProcessor.getIssues(issue -> true))
+            {
+                final SystemIssueClassifier.Classification classification = classifier.classify(nextIssue);
+                if (classification == SystemIssueClassifier.Classification.SKIP
+                        || !issues.add(SonargraphBase.createIssueIdentityKey(nextIssue)))
+                {
+                    continue;
+                }
+                if (classification == SystemIssueClassifier.Classification.EMIT)
+                {
+                    writeLine(writer, ISSUE,
+                            SonargraphBase.createRuleKeyToCheck(nextIssue.getIssueType(), nextIssue.getSeverity()),
+                            issueDescriptions.create(nextIssue));
+                    continue;
+                }
+
+                final List<String> setupProblem = new ArrayList<>();
+                setupProblem.add(SETUP);
+                setupProblem.add(nextIssue.getPresentationName());
+                for (final INamedElement nextAffected : nextIssue.getAffectedNamedElements())
+                {
+                    setupProblem.add(nextAffected.getName() + " [" + nextAffected.getPresentationKind() + "]");
+                }
+                writeLine(writer, setupProblem.toArray(new String[0]));
+            }
+        }
+    }
+
+    private static void writeLine(final Writer writer, final String... parts) throws IOException
+    {
+        for (int i = 0; i < parts.length; i++)
+        {
+            if (i > 0)
+            {
+                writer.write(SEPARATOR);
+            }
+            writer.write(IssueIndex.escape(parts[i]));
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Creates the same issues as {@link SonargraphSensor} for the module, but with absolute paths instead of input files. As it is not
+     * known which files are part of the SonarQube project, all other occurrences of duplicate code blocks are secondary locations.
+     */
+    private static IssueIndex createModuleIssues(final LoadedReports reports, final String moduleName,
+            final ModuleIssuePartition.IssueFilter issueFilter) throws IOException
+    {
+        final Integer reportIndex = reports.moduleToReport.get(moduleName);
+        if (reportIndex == null)
+        {
+            throw new IOException("Unknown module '" + moduleName + "'");
+        }
+
+        final int i = reportIndex.intValue();
+        final ISonargraphSystemController controller = reports.controllers.get(i);
+        final IModuleInfoProcessor moduleInfoProcessor = controller
+                .createModuleInfoProcessor(reports.systemInfoProcessors.get(i).getModules().get(moduleName));
+        final ModuleIssuePartition partition = ModuleIssuePartition.create(moduleInfoProcessor, issueFilter,
+                reports.issueDescriptions.get(i), reports.stringPool);
+        final String baseDirectory = moduleInfoProcessor.getBaseDirectory();
+        final Map<ISourceFile, String> paths = new HashMap<>();
+        final Function<ISourceFile, String> locator = sourceFile -> paths.computeIfAbsent(sourceFile,
+                f -> getAbsolutePath(baseDirectory, f));
+        final ModuleIssuePartition.IssueFactory<String, IssueIndex.Entry> issueFactory = new ModuleIssuePartition.IssueFactory<>()
+        {
+            @Override
+            public IssueIndex.Entry createIssue(final int position, final String file, final int startLine,
+                    final int endLine, final String message)
+            {
+                return new IssueIndex.Entry(partition.getRuleKey(position), startLine, endLine, message);
+            }
+
+            @Override
+            public void addSecondaryLocation(final IssueIndex.Entry issue, final String file, final int startLine,
+                    final int endLine, final String message)
+            {
+                issue.addSecondaryLocation(new IssueIndex.Location(file, startLine, endLine, message));
+            }
+        };
+
+        final IssueIndex result = new IssueIndex();
+        for (int fileId = 0; fileId < partition.getNumberOfSourceFiles(); fileId++)
+        {
+            final String path = locator.apply(partition.getSourceFile(fileId));
+            for (int position = partition.getStart(fileId); position < partition.getEnd(fileId); position++)
+            {
+                result.add(path, null, partition.createSourceFileIssue(position, path, locator, issueFactory));
+            }
+        }
+
+        for (int directoryIndex = 0; directoryIndex < partition.getNumberOfDirectories(); directoryIndex++)
+        {
+            final String path = Paths.get(baseDirectory, partition.getDirectory(directoryIndex)).toAbsolutePath()
+                    .normalize().toString();
+            final int fileId = partition.getDirectoryFileId(directoryIndex);
+            for (int position = partition.getStart(fileId); position < partition.getEnd(fileId); position++)
+            {
+                result.add(Utility.convertPathToUniversalForm(path) + DIRECTORY_SUFFIX, null,
+                        new IssueIndex.Entry(partition.getRuleKey(position), 0, 0, partition.getMessage(position, "")));
+            }
+        }
+        return result;
+    }
+
+    private static String getAbsolutePath(final String baseDirectory, final ISourceFile sourceFile)
+    {
+        return Paths.get(baseDirectory, sourceFile.getRelativeRootDirectory(), sourceFile.getRelativePath())
+                .toAbsolutePath().normalize().toString();
+    }
+
+    public static void main(final String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println(
+                    "Usage: " + SonargraphReportDaemon.class.getName() + " <port> <report directory> [<report directory>...]");
+            System.exit(1);
+        }
+
+        final List<File> reportDirectories = new ArrayList<>();
+        for (int i = 1; i < args.length; i++)
+        {
+            reportDirectories.add(new File(args[i]));
+        }
+        final SonargraphReportDaemon daemon = new SonargraphReportDaemon(Integer.parseInt(args[0]), reportDirectories);
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+        {
+            try
+            {
+                daemon.close();
+            }
+            catch (final IOException e)
+            {
+                //Exiting anyway
+            }
+        }));
+        daemon.accept();
+    }
+}
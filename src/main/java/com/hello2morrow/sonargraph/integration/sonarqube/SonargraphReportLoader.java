@@ -0,0 +1,140 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ControllerFactory;
+import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
+import com.hello2morrow.sonargraph.integration.access.foundation.Result;
+
+/**
+ * Loads one or several Sonargraph XML reports, each one into its own controller. Several reports (e.g. one per module group) are loaded
+ * concurrently on the executor for blocking tasks. The returned controllers are in the order of the given report files, so that merging
+ * their content is deterministic.
+ */
+final class SonargraphReportLoader
+{
+    private static final Logger LOGGER = Loggers.get(SonargraphReportLoader.class);
+
+    private final File systemBaseDirectory;
+    private final BlockingExecutor executor;
+
+    SonargraphReportLoader(final File systemBaseDirectory, final BlockingExecutor executor)
+    {
+        this.systemBaseDirectory = systemBaseDirectory;
+        this.executor = executor;
+    }
+
+    List<ISonargraphSystemController> load(final List<File> reportFiles)
+    {
+        if (reportFiles.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+
+        if (reportFiles.size() == 1)
+        {
+            final ISonargraphSystemController sgController = load(reportFiles.get(0));
+            return sgController != null ? Collections.singletonList(sgController) : Collections.emptyList();
+        }
+
+        LOGGER.info("{}: Loading {} XML report files using up to {} {}thread(s)",
+                SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, reportFiles.size(),
+                Math.min(reportFiles.size(), executor.getConcurrencyLimit()), executor.isVirtual() ? "virtual " : "");
+
+        final List<Future<ISonargraphSystemController>> loading = new ArrayList<>(reportFiles.size());
+        try
+        {
+            for (final File nextReportFile : reportFiles)
+            {
+                loading.add(executor.submit(() -> load(nextReportFile)));
+            }
+
+            final List<ISonargraphSystemController> result = new ArrayList<>(reportFiles.size());
+            for (int i = 0; i < loading.size(); i++)
+            {
+                try
+                {
+                    final ISonargraphSystemController nextController = loading.get(i).get();
+                    if (nextController != null)
+                    {
+                        result.add(nextController);
+                    }
+                }
+                catch (final ExecutionException e)
+                {
+                    LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to load XML report file '"
+                            + reportFiles.get(i).getAbsolutePath() + "'", e.getCause());
+                }
+            }
+            return result;
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            LOGGER.error("{}: Loading of XML report files has been interrupted",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME);
+            return Collections.emptyList();
+        }
+        finally
+        {
+            //Stops loading of the remaining report files if waiting has been interrupted
+            loading.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private ISonargraphSystemController load(final File reportFile)
+    {
+        final SonargraphEvents.ReportLoadEvent event = new SonargraphEvents.ReportLoadEvent();
+        event.begin();
+        final ISonargraphSystemController sgController = ControllerFactory.createController();
+        final Result loadReport;
+        if (systemBaseDirectory == null)
+        {
+            loadReport = sgController.loadSystemReport(reportFile);
+        }
+        else
+        {
+            loadReport = sgController.loadSystemReport(reportFile, systemBaseDirectory);
+        }
+
+        if (event.shouldCommit())
+        {
+            event.reportFile = reportFile.getAbsolutePath();
+            event.success = loadReport.isSuccess();
+            event.commit();
+        }
+
+        if (loadReport.isSuccess())
+        {
+            return sgController;
+        }
+
+        LOGGER.error("{}: {}", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, loadReport.toString());
+        return null;
+    }
+}
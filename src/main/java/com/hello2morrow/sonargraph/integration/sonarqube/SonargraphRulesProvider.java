@@ -34,7 +34,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.rule.Severity;
 
-import com.hello2morrow.sonargraph.integration.access.model.IIssue;
 import com.hello2morrow.sonargraph.integration.access.model.IIssueCategory;
 import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
 
@@ -99,6 +98,8 @@ class SonargraphRulesProvider extends AbstractDataProvider
     private static final int NUMBER_OF_VALUE_PARTS = 5;
 
     private SortedProperties customRules;
+    private CustomRuleIndex customRuleIndex = new CustomRuleIndex();
+    private String analyzedProject = "";
 
     SonargraphRulesProvider()
     {
@@ -171,12 +172,57 @@ class SonargraphRulesProvider extends AbstractDataProvider
         ruleProperties.put(key, propertiesValue.toString());
     }
 
-    void addCustomRuleForIssue(final IIssue issue)
+    void addCustomRuleForIssue(final IIssueType type,
+            final com.hello2morrow.sonargraph.integration.access.model.Severity severity)
     {
-        final IIssueType type = issue.getIssueType();
         final String presentationName = type.getPresentationName() + " (" + type.getProvider().getPresentationName()
                 + ")";
-        addRule(type.getName(), type.getPresentationName(), presentationName, issue.getSeverity(), type, customRules);
+        addRule(type.getName(), type.getPresentationName(), presentationName, severity, type, customRules);
+
+        final String key = SonargraphBase.createRuleKeyToCheck(type, severity);
+        final String value = customRules.getProperty(key);
+        if (value != null)
+        {
+            customRuleIndex.put(analyzedProject, key, value);
+        }
+    }
+
+    /**
+     * @param projectKey The project the custom rules are seen in by the analysis in progress
+     */
+    void setAnalyzedProject(final String projectKey)
+    {
+        analyzedProject = projectKey;
+    }
+
+    /**
+     * Records that an issue of the custom rule has been found in the analysis in progress, no-op for other rules.
+     */
+    void markCustomRuleSeen(final String key)
+    {
+        customRuleIndex.markSeen(analyzedProject, key);
+    }
+
+    /**
+     * Completes the analysis of the analyzed project and drops the custom rules that have not been seen in the last analyses of any
+     * project.
+     *
+     * @param retention Number of analyses a custom rule is kept without being seen, 0 to keep all custom rules
+     * @return The number of dropped custom rules
+     */
+    int completeAnalysis(final int retention)
+    {
+        final int dropped = customRuleIndex.completeAnalysis(analyzedProject, retention);
+        if (dropped > 0)
+        {
+            customRuleIndex.copyTo(customRules);
+        }
+        return dropped;
+    }
+
+    boolean hasCustomRules()
+    {
+        return customRuleIndex.size() > 0;
     }
 
     private String createDescription(final String issuePresentationName, final String issueCategoryPresentationName)
@@ -193,9 +239,32 @@ class SonargraphRulesProvider extends AbstractDataProvider
         }
     }
 
+    /**
+     * Saves the custom rules properties file and the custom rules index next to it.
+     *
+     * @return The custom rules properties file
+     */
     File saveCustomRuleProperties(final String comment) throws IOException
     {
-        return saveProperties(customRules, new File(getFilePath()), comment);
+        final File propertiesFile = saveProperties(customRules, new File(getFilePath()), comment);
+        customRuleIndex.write(getCustomRuleIndexFile());
+        return propertiesFile;
+    }
+
+    /**
+     * Saves only the custom rules index, e.g. to record the analyses the custom rules have been seen in.
+     */
+    File saveCustomRuleIndex() throws IOException
+    {
+        final File indexFile = getCustomRuleIndexFile();
+        indexFile.getParentFile().mkdirs();
+        customRuleIndex.write(indexFile);
+        return indexFile;
+    }
+
+    private File getCustomRuleIndexFile()
+    {
+        return new File(getDirectory(), CustomRuleIndex.FILE_NAME);
     }
 
     List<RuleDto> loadCustomRules()
@@ -216,12 +285,38 @@ class SonargraphRulesProvider extends AbstractDataProvider
         return result;
     }
 
+    /**
+     * The custom rules index is preferred, unless the properties file has been modified after it (e.g. manually).
+     */
     private Properties loadCustomRulesProperties() throws IOException
     {
         customRules = new SortedProperties();
+        customRuleIndex = new CustomRuleIndex();
 
         final String filePath = getFilePath();
         final File customPropertiesFile = new File(filePath);
+        final File indexFile = getCustomRuleIndexFile();
+        if (indexFile.exists())
+        {
+            try
+            {
+                customRuleIndex = CustomRuleIndex.read(indexFile);
+            }
+            catch (final IOException e)
+            {
+                LOGGER.warn("{}: Ignoring custom rules index '{}': {}", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                        indexFile.getAbsolutePath(), e.getMessage());
+            }
+            if (customRuleIndex.size() > 0
+                    && (!customPropertiesFile.exists() || indexFile.lastModified() >= customPropertiesFile.lastModified()))
+            {
+                customRuleIndex.copyTo(customRules);
+                LOGGER.info("{}: Loaded custom rules index '{}'", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                        indexFile.getAbsolutePath());
+                return customRules;
+            }
+        }
+
         if (!customPropertiesFile.exists())
         {
             LOGGER.info("{}: No custom rules file found at '{}'", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
@@ -234,6 +329,7 @@ class SonargraphRulesProvider extends AbstractDataProvider
             LOGGER.info("{}: Loaded custom rules file '{}'", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
                     filePath);
         }
+        customRuleIndex = customRuleIndex.update(customRules);
         return customRules;
     }
 
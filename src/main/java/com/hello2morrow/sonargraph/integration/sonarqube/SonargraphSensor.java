@@ -20,22 +20,32 @@ package com.hello2morrow.sonargraph.integration.sonarqube;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.sonar.api.SonarProduct;
 import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputDir;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.measure.Metric;
@@ -43,49 +53,49 @@ import org.sonar.api.batch.measure.MetricFinder;
 import org.sonar.api.batch.rule.ActiveRule;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
-import org.sonar.api.batch.sensor.issue.NewIssue;
-import org.sonar.api.batch.sensor.issue.NewIssueLocation;
 import org.sonar.api.batch.sensor.measure.NewMeasure;
 import org.sonar.api.config.Configuration;
+import org.sonar.api.rule.RuleKey;
 import org.sonar.api.scanner.sensor.ProjectSensor;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
-import com.hello2morrow.sonargraph.integration.access.controller.ControllerFactory;
-import com.hello2morrow.sonargraph.integration.access.controller.IInfoProcessor;
 import com.hello2morrow.sonargraph.integration.access.controller.IModuleInfoProcessor;
 import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
 import com.hello2morrow.sonargraph.integration.access.controller.ISystemInfoProcessor;
-import com.hello2morrow.sonargraph.integration.access.foundation.Result;
 import com.hello2morrow.sonargraph.integration.access.foundation.Utility;
-import com.hello2morrow.sonargraph.integration.access.model.IDuplicateCodeBlockIssue;
-import com.hello2morrow.sonargraph.integration.access.model.IDuplicateCodeBlockOccurrence;
 import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
 import com.hello2morrow.sonargraph.integration.access.model.IMetricId;
 import com.hello2morrow.sonargraph.integration.access.model.IMetricLevel;
 import com.hello2morrow.sonargraph.integration.access.model.IMetricValue;
 import com.hello2morrow.sonargraph.integration.access.model.IModule;
 import com.hello2morrow.sonargraph.integration.access.model.INamedElement;
-import com.hello2morrow.sonargraph.integration.access.model.IResolution;
 import com.hello2morrow.sonargraph.integration.access.model.ISoftwareSystem;
 import com.hello2morrow.sonargraph.integration.access.model.ISourceFile;
-import com.hello2morrow.sonargraph.integration.access.model.ResolutionType;
+import com.hello2morrow.sonargraph.integration.access.model.Severity;
 
 public final class SonargraphSensor implements ProjectSensor
 {
     private static final Logger LOGGER = Loggers.get(SonargraphSensor.class);
-    private static final int ZERO_LINE_OFFSET = 0;
+    private static final int MODULE_QUEUE_CAPACITY = 2;
+    private static final int ISSUE_QUEUE_CAPACITY = 1024;
+    //Modules with more issues on source files are processed by several threads
+    private static final int SPLIT_LEAF_ISSUES = 1024;
+    private static final int SPLIT_WINDOW_ISSUES = 32 * 1024;
 
     static final class ActiveRulesAndMetrics
     {
         private final Map<String, Map<String, ActiveRule>> languageToActiveRules;
         private final Map<String, Metric<Serializable>> metrics;
+        private final Set<String> scannerMetricKeys;
 
         ActiveRulesAndMetrics(final Map<String, Map<String, ActiveRule>> languageToActiveRules,
-                final Map<String, Metric<Serializable>> metrics)
+                final Map<String, Metric<Serializable>> metrics, final Set<String> scannerMetricKeys)
         {
             this.languageToActiveRules = languageToActiveRules;
             this.metrics = metrics;
+            this.scannerMetricKeys = scannerMetricKeys;
         }
 
         Map<String, ActiveRule> getActiveRules(final String language)
@@ -108,6 +118,138 @@ public final class SonargraphSensor implements ProjectSensor
         {
             return Collections.unmodifiableSet(languageToActiveRules.keySet());
         }
+
+        /**
+         * Measures can only be saved for metrics that have been available at scanner start. Custom metrics known to the server might be
+         * missing on the scanner side.
+         */
+        boolean isAvailableOnScanner(final String metricKey)
+        {
+            return scannerMetricKeys.contains(metricKey);
+        }
+    }
+
+    /**
+     * The issue related information of one XML report.
+     */
+    private static final class ReportIssues
+    {
+        private final ISonargraphSystemController controller;
+        private final ISystemInfoProcessor systemInfoProcessor;
+        private final IssueDescriptions issueDescriptions;
+        private final StringPool stringPool;
+
+        ReportIssues(final ISonargraphSystemController controller, final ISystemInfoProcessor systemInfoProcessor,
+                final IssueDescriptions issueDescriptions, final StringPool stringPool)
+        {
+            this.controller = controller;
+            this.systemInfoProcessor = systemInfoProcessor;
+            this.issueDescriptions = issueDescriptions;
+            this.stringPool = stringPool;
+        }
+
+        ISonargraphSystemController getController()
+        {
+            return controller;
+        }
+
+        ISystemInfoProcessor getSystemInfoProcessor()
+        {
+            return systemInfoProcessor;
+        }
+
+        IssueDescriptions getIssueDescriptions()
+        {
+            return issueDescriptions;
+        }
+
+        StringPool getStringPool()
+        {
+            return stringPool;
+        }
+    }
+
+    /**
+     * A module whose issues have been grouped by Sonargraph and that is ready to be transformed into SonarQube issues.
+     */
+    private static final class ModuleWork
+    {
+        private final String moduleName;
+        private final IModuleInfoProcessor moduleInfoProcessor;
+        private final ModuleIssuePartition partition;
+
+        ModuleWork(final String moduleName, final IModuleInfoProcessor moduleInfoProcessor,
+                final ModuleIssuePartition partition)
+        {
+            this.moduleName = moduleName;
+            this.moduleInfoProcessor = moduleInfoProcessor;
+            this.partition = partition;
+        }
+
+        String getModuleName()
+        {
+            return moduleName;
+        }
+
+        IModuleInfoProcessor getModuleInfoProcessor()
+        {
+            return moduleInfoProcessor;
+        }
+
+        ModuleIssuePartition getPartition()
+        {
+            return partition;
+        }
+    }
+
+    /**
+     * Creates the pending issues of a module with the active rules of the partition's rule keys.
+     */
+    private static final class PendingIssueFactory implements ModuleIssuePartition.IssueFactory<InputFile, PendingIssue>
+    {
+        private final ModuleIssuePartition partition;
+        /** The active rule for each rule key index of the partition, null if no rule is active for the key */
+        private final ActiveRule[] rules;
+
+        PendingIssueFactory(final ModuleIssuePartition partition, final Map<String, ActiveRule> keyToRule)
+        {
+            this.partition = partition;
+            final List<String> ruleKeys = partition.getRuleKeys();
+            rules = new ActiveRule[ruleKeys.size()];
+            for (int i = 0; i < rules.length; i++)
+            {
+                final String nextRuleKey = ruleKeys.get(i);
+                rules[i] = nextRuleKey != null ? keyToRule.get(nextRuleKey) : null;
+            }
+        }
+
+        /**
+         * @return The active rule of the issue at the position, null if there is none
+         */
+        ActiveRule getRule(final int position)
+        {
+            return rules[partition.getRuleKeyIndex(position)];
+        }
+
+        @Override
+        public PendingIssue createIssue(final int position, final InputFile file, final int startLine,
+                final int endLine, final String message)
+        {
+            return new PendingIssue(getRule(position), file, startLine, endLine, message);
+        }
+
+        @Override
+        public void addSecondaryLocation(final PendingIssue issue, final InputFile file, final int startLine,
+                final int endLine, final String message)
+        {
+            issue.addSecondaryLocation(file, startLine, endLine, message);
+        }
+    }
+
+    enum ReportSection
+    {
+        METRICS,
+        ISSUES
     }
 
     private static class ModulesLanguageCounter
@@ -132,6 +274,32 @@ public final class SonargraphSensor implements ProjectSensor
         }
     }
 
+    /**
+     * Keeps track of the elements that have already been processed, so that system-level issues, system-level metrics and modules
+     * contained in several XML report files of the same system are only processed once.
+     */
+    private static final class ProcessedElements
+    {
+        private final Set<String> systemIssues = new HashSet<>();
+        private final Set<String> systemMetrics = new HashSet<>();
+        private final Set<String> modules = new HashSet<>();
+
+        boolean addSystemIssue(final IIssue issue)
+        {
+            return systemIssues.add(SonargraphBase.createIssueIdentityKey(issue));
+        }
+
+        boolean addSystemMetric(final String metricKey)
+        {
+            return systemMetrics.add(metricKey);
+        }
+
+        boolean addModule(final String moduleName)
+        {
+            return modules.add(moduleName);
+        }
+    }
+
     private final FileSystem sqFileSystem;
     private final MetricFinder sqMetricFinder;
     private final SonargraphMetrics sgMetrics;
@@ -142,6 +310,7 @@ public final class SonargraphSensor implements ProjectSensor
 
     //[IK] In contrast to metrics, rules are dynamically provided to the client, so there cannot be a situation that the scanner needs updating.
     private boolean isUpdateOfServerCustomRulesNeeded = false;
+    private int customRulesRetention = 0;
 
     public SonargraphSensor(final FileSystem fileSystem, final MetricFinder metricFinder,
             final SonargraphMetrics sgMetrics)
@@ -167,46 +336,99 @@ public final class SonargraphSensor implements ProjectSensor
     @Override
     public void execute(final SensorContext sensorContext)
     {
+        if (sensorContext.runtime().getProduct() == SonarProduct.SONARLINT)
+        {
+            //Issues are reported from the issue index by SonargraphIssueIndexSensor
+            return;
+        }
+
         isUpdateOfServerCustomMetricsNeeded = false;
         isUpdateOfScannerCustomMetricsNeeded = false;
         isUpdateOfServerCustomRulesNeeded = false;
+        customRulesRetention = sensorContext.config().getInt(SonargraphBase.CUSTOM_RULES_RETENTION_KEY).orElse(0);
+
+        final TimeBudget timeBudget = TimeBudget.create(sensorContext);
+        if (timeBudget.isLimited())
+        {
+            LOGGER.info("{}: Time budget is {}s", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                    timeBudget.getBudgetSeconds());
+        }
 
         sgRulesProvider.loadStandardRules();
         sgRulesProvider.loadCustomRules();
 
         final String projectKey = sensorContext.config().get("sonar.projectKey").orElse("<unknown>");
+        sgRulesProvider.setAnalyzedProject(projectKey);
         LOGGER.info("{}: Processing SonarQube project '{}'", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
                 projectKey);
 
-        final ISonargraphSystemController sgController = ControllerFactory.createController();
-        final File reportFile = getReportFile(sensorContext.config());
-        Result loadReport;
-        if (reportFile != null)
+        try (BlockingExecutor executor = BlockingExecutor.create(sensorContext.config()))
         {
-            final File systemBaseDir = getSystemBaseDirectory(sensorContext.config());
-            if (systemBaseDir == null)
-            {
-                loadReport = sgController.loadSystemReport(reportFile);
-            }
-            else
-            {
-                LOGGER.info("{}: Adjusting baseDirectory of Sonargraph system to '{}'",
-                        SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, systemBaseDir);
-                loadReport = sgController.loadSystemReport(reportFile, systemBaseDir);
-            }
-            if (loadReport.isSuccess())
-            {
-                process(sensorContext, sgController);
-            }
-            else
+            final List<File> reportFiles = getReportFiles(sensorContext.config());
+            if (!reportFiles.isEmpty())
             {
-                LOGGER.error("{}: {}", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, loadReport.toString());
+                final File systemBaseDir = getSystemBaseDirectory(sensorContext.config());
+                if (systemBaseDir != null)
+                {
+                    LOGGER.info("{}: Adjusting baseDirectory of Sonargraph system to '{}'",
+                            SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, systemBaseDir);
+                }
+
+                final ActiveRulesAndMetrics rulesAndMetrics = createActiveRulesAndMetrics(sensorContext);
+                final Set<ReportSection> reportSections = determineReportSections(rulesAndMetrics);
+                final ReportDaemonClient daemonClient = ReportDaemonClient.create(sensorContext.config(),
+                        reportFiles, systemBaseDir);
+                if (!reportSections.isEmpty() && (daemonClient == null || !processWithDaemon(sensorContext,
+                        daemonClient, rulesAndMetrics, reportSections, timeBudget)))
+                {
+                    final List<ISonargraphSystemController> sgControllers = new SonargraphReportLoader(systemBaseDir,
+                            executor).load(reportFiles);
+                    if (!sgControllers.isEmpty())
+                    {
+                        process(sensorContext, reportFiles, sgControllers, rulesAndMetrics, reportSections,
+                                timeBudget);
+                    }
+                }
+                LOGGER.info("{}: Finished processing SonarQube project '{}'",
+                        SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, projectKey);
             }
-            LOGGER.info("{}: Finished processing SonarQube project '{}'",
-                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, projectKey);
         }
     }
 
+    /**
+     * Determines the parts of the report that need to be processed. Issues are only needed if Sonargraph rules are active, metrics only if
+     * Sonargraph metrics are defined.
+     */
+    static Set<ReportSection> determineReportSections(final ActiveRulesAndMetrics rulesAndMetrics)
+    {
+        final Set<ReportSection> reportSections = EnumSet.noneOf(ReportSection.class);
+        if (!rulesAndMetrics.getMetrics().isEmpty())
+        {
+            reportSections.add(ReportSection.METRICS);
+        }
+        if (!rulesAndMetrics.getLanguages().isEmpty())
+        {
+            reportSections.add(ReportSection.ISSUES);
+        }
+
+        if (reportSections.isEmpty())
+        {
+            LOGGER.warn("{}: Neither Sonargraph rules are active nor Sonargraph metrics are defined, XML report is not processed",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME);
+        }
+        else if (!reportSections.contains(ReportSection.ISSUES))
+        {
+            LOGGER.info("{}: No Sonargraph rules are active, only metrics are processed",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME);
+        }
+        else if (!reportSections.contains(ReportSection.METRICS))
+        {
+            LOGGER.info("{}: No Sonargraph metrics are defined, only issues are processed",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME);
+        }
+        return reportSections;
+    }
+
     private File resolveReadableFile(String path)
     {
         if (path == null || path.isEmpty())
@@ -225,25 +447,87 @@ public final class SonargraphSensor implements ProjectSensor
         return null;
     }
 
-    private File getReportFile(final Configuration config)
+    /**
+     * Resolves all readable files matching the given glob pattern, e.g. 'target/sonargraph/*.xml'. The part of the pattern up to the last
+     * separator before the first wildcard is resolved as directory, the remainder is matched against the paths relative to it.
+     */
+    private List<File> resolveReadableFiles(final String pattern)
     {
-        File report = null;
-        String path = null;
-        final Optional<String> configuredRelativeReportPathOpt = config.get(SonargraphBase.XML_REPORT_FILE_PATH_KEY);
-        if (configuredRelativeReportPathOpt.isPresent())
+        final String universalPattern = Utility.convertPathToUniversalForm(pattern);
+        final int firstWildcard = SonargraphBase.indexOfGlobCharacter(universalPattern);
+        final int lastSeparator = universalPattern.lastIndexOf('/', firstWildcard);
+        final String baseDirPath = lastSeparator < 0 ? "." : universalPattern.substring(0, Math.max(lastSeparator, 1));
+        final String relativePattern = universalPattern.substring(lastSeparator + 1);
+
+        final File baseDir = sqFileSystem.resolvePath(baseDirPath);
+        if (baseDir == null || !baseDir.isDirectory())
+        {
+            LOGGER.warn("{}: Directory '{}' of XML report file pattern '{}' not found",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, baseDirPath, pattern);
+            return Collections.emptyList();
+        }
+
+        final Path basePath = baseDir.toPath();
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relativePattern);
+        try (Stream<Path> paths = Files.walk(basePath))
+        {
+            final List<File> result = paths.filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(basePath.relativize(p))).sorted().map(Path::toFile)
+                    .filter(File::canRead).collect(Collectors.toList());
+            for (final File next : result)
+            {
+                LOGGER.info("{}: Using XML report file '{}'", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                        next.getAbsolutePath());
+            }
+            return result;
+        }
+        catch (final IOException e)
+        {
+            LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to resolve XML report files for '"
+                    + pattern + "'", e);
+            return Collections.emptyList();
+        }
+    }
+
+    private List<File> getReportFiles(final Configuration config)
+    {
+        final Set<File> reports = new LinkedHashSet<>();
+        for (final String nextConfiguredPath : config.getStringArray(SonargraphBase.XML_REPORT_FILE_PATH_KEY))
         {
-            final String configuredRelativeReportPath = configuredRelativeReportPathOpt.get();
-            if (!configuredRelativeReportPath.isEmpty())
+            final String path = nextConfiguredPath.trim();
+            if (path.isEmpty())
+            {
+                continue;
+            }
+
+            if (SonargraphBase.indexOfGlobCharacter(path) >= 0)
+            {
+                reports.addAll(resolveReadableFiles(path));
+            }
+            else
             {
-                path = configuredRelativeReportPath;
-                report = resolveReadableFile(path);
+                final File report = resolveReadableFile(path);
                 if (report != null)
                 {
-                    return report;
+                    reports.add(report);
                 }
             }
         }
 
+        if (!reports.isEmpty())
+        {
+            return new ArrayList<>(reports);
+        }
+
+        final File report = getDefaultReportFile(config);
+        return report != null ? Collections.singletonList(report) : Collections.emptyList();
+    }
+
+    private File getDefaultReportFile(final Configuration config)
+    {
+        File report = null;
+        String path = null;
+
         final Optional<String> scannerApp = config.get("sonar.scanner.app");
         if (scannerApp.isPresent())
         {
@@ -262,80 +546,523 @@ public final class SonargraphSensor implements ProjectSensor
         report = resolveReadableFile(path);
         if (report != null)
         {
-            return report;
+            return report;
+        }
+
+        // Try Gradle default target directory
+        path = "build/" + SonargraphBase.XML_REPORT_FILE_PATH_DEFAULT;
+        report = resolveReadableFile(path);
+        if (report != null)
+        {
+            return report;
+        }
+        LOGGER.error("{}: XML report file not found", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME);
+        return null;
+    }
+
+    static String getPathForScannerApp(final Configuration configuration, final String scannerApp)
+    {
+        if (scannerApp.equals("ScannerMaven"))
+        {
+            final Optional<String> buildDir = configuration.get("sonar.projectBuildDir");
+            if (buildDir.isPresent())
+            {
+                return new File(buildDir.get(), SonargraphBase.XML_REPORT_FILE_PATH_DEFAULT).getAbsolutePath();
+            }
+        }
+        else if (scannerApp.equals("ScannerGradle"))
+        {
+            final Optional<String> workingDirectory = configuration.get("sonar.working.directory");
+            if (workingDirectory.isPresent())
+            {
+                final File buildDir = new File(workingDirectory.get()).getParentFile();
+                return new File(buildDir, SonargraphBase.XML_REPORT_FILE_PATH_DEFAULT).getAbsolutePath();
+            }
+        }
+
+        return null;
+    }
+
+    private File getSystemBaseDirectory(final Configuration config)
+    {
+        final Optional<String> basePathOpt = config.get(SonargraphBase.SONARGRAPH_BASE_DIR_KEY);
+        if (!basePathOpt.isPresent())
+        {
+            return null;
+        }
+
+        final String path = basePathOpt.get();
+        final File baseDir = sqFileSystem.resolvePath(path);
+        if (baseDir.exists())
+        {
+            return baseDir;
+        }
+
+        return null;
+    }
+
+    private void process(final SensorContext sensorContext, final List<File> reportFiles,
+            final List<ISonargraphSystemController> sgControllers, final ActiveRulesAndMetrics rulesAndMetrics,
+            final Set<ReportSection> reportSections, final TimeBudget timeBudget)
+    {
+        final boolean processIssues = reportSections.contains(ReportSection.ISSUES);
+        final String language = processIssues ? determineLanguage(getModuleLanguages(sgControllers), rulesAndMetrics)
+                : null;
+        if (processIssues && language == null)
+        {
+            return;
+        }
+
+        //Several reports of the same system share system-level issues and metrics as well as modules, they are processed only once.
+        final ProcessedElements processedElements = new ProcessedElements();
+        final IssueSelection issueSelection = IssueSelection.create(sensorContext.config());
+        final ModuleIssuePartition.IssueFilter issueFilter = new ModuleIssuePartition.IssueFilter(issueSelection);
+        final LineRangeValidator lineRangeValidator = new LineRangeValidator();
+        final SensorDiagnostics diagnostics = new SensorDiagnostics();
+        final StringPool stringPool = new StringPool();
+        final File issueIndexFile = getIssueIndexFile(sensorContext.config());
+        final AnalysisCache analysisCache = processIssues ? AnalysisCache.create(sensorContext.config(), sqFileSystem)
+                : null;
+        final String cacheDigest = analysisCache != null
+                ? computeCacheDigest(sensorContext.config(), reportFiles, language, rulesAndMetrics)
+                : null;
+        //Collects the saved file issues for the issue index and the cache
+        final IssueIndex issueIndex = processIssues && (issueIndexFile != null || cacheDigest != null)
+                ? new IssueIndex()
+                : null;
+        final List<ReportIssues> reportIssues = new ArrayList<>(sgControllers.size());
+        final MetricValueStore metricValues = new MetricValueStore();
+        for (final ISonargraphSystemController nextController : sgControllers)
+        {
+            if (timeBudget.isExhausted())
+            {
+                break;
+            }
+            final ISoftwareSystem softwareSystem = nextController.getSoftwareSystem();
+            final ISystemInfoProcessor systemInfoProcessor = nextController.createSystemInfoProcessor();
+            if (reportSections.contains(ReportSection.METRICS))
+            {
+                processSystemMetrics(metricValues, metricValues.getComponentId(sensorContext.project()),
+                        softwareSystem, systemInfoProcessor, rulesAndMetrics, processedElements);
+            }
+            if (processIssues)
+            {
+                final IssueDescriptions issueDescriptions = new IssueDescriptions(ResolutionIndex.create(systemInfoProcessor));
+                processSystem(sensorContext, softwareSystem, systemInfoProcessor, issueDescriptions,
+                        rulesAndMetrics, language, processedElements, issueSelection, lineRangeValidator, diagnostics,
+                        timeBudget);
+                reportIssues.add(new ReportIssues(nextController, systemInfoProcessor, issueDescriptions, stringPool));
+            }
+        }
+        metricValues.save(sensorContext);
+        boolean hasReplayedIssues = false;
+        if (processIssues && !timeBudget.isExhausted())
+        {
+            final Set<String> replayedFiles = cacheDigest != null
+                    ? replayCachedIssues(sensorContext, analysisCache.load(cacheDigest), lineRangeValidator,
+                            diagnostics, timeBudget, issueIndex)
+                    : Collections.emptySet();
+            hasReplayedIssues = !replayedFiles.isEmpty();
+            processModules(sensorContext, reportIssues, rulesAndMetrics, language, processedElements, issueSelection,
+                    issueFilter, lineRangeValidator, diagnostics, timeBudget, issueIndex, replayedFiles);
+        }
+        diagnostics.add(SensorDiagnostics.Reason.LINE_RANGE_SHORTENED, lineRangeValidator.getClampedRanges());
+        diagnostics.add(SensorDiagnostics.Reason.LINE_RANGE_OMITTED, lineRangeValidator.getDroppedRanges());
+        diagnostics.logSummary();
+
+        final boolean isPartial = timeBudget.isExhausted();
+        if (isPartial)
+        {
+            LOGGER.warn("{}: {}, the analysis is partial. Only the issues and metrics processed so far have been saved.",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, timeBudget.getExhaustedReason());
+        }
+        saveAnalysisPartialMeasure(sensorContext, rulesAndMetrics, isPartial);
+        if (issueIndexFile != null && issueIndex != null)
+        {
+            writeIssueIndex(issueIndex, issueIndexFile, isPartial);
+        }
+        if (cacheDigest != null && !isPartial)
+        {
+            analysisCache.store(cacheDigest, issueIndex);
+        }
+        //The custom rules of replayed issues and of issues that are not selected are not marked as seen
+        updateRules(!isPartial, !isPartial && !hasReplayedIssues && issueSelection.isSelectingAll());
+    }
+
+    private String computeCacheDigest(final Configuration config, final List<File> reportFiles, final String language,
+            final ActiveRulesAndMetrics rulesAndMetrics)
+    {
+        final Map<String, ActiveRule> keyToRule = rulesAndMetrics.getActiveRules(language);
+        final File baseDirectory = sqFileSystem.baseDir();
+        final List<String> projectFiles = new ArrayList<>();
+        for (final InputFile nextInputFile : sqFileSystem.inputFiles(sqFileSystem.predicates().all()))
+        {
+            projectFiles.add(IssueIndex.createKey(baseDirectory, nextInputFile));
+        }
+        try
+        {
+            return AnalysisCache.computeDigest(reportFiles, language,
+                    keyToRule != null ? keyToRule.keySet() : Collections.emptySet(), projectFiles, config);
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to compute cache digest", e);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the issues and measures from the answers of the report daemon instead of loading the XML report files. Custom rules and
+     * metrics are only detected when processing the XML report files in-process, as the daemon does not provide Sonargraph's issue and
+     * metric types.
+     *
+     * @return false if the daemon is not available and the XML report files need to be processed in-process
+     */
+    private boolean processWithDaemon(final SensorContext sensorContext, final ReportDaemonClient daemonClient,
+            final ActiveRulesAndMetrics rulesAndMetrics, final Set<ReportSection> reportSections,
+            final TimeBudget timeBudget)
+    {
+        final ReportDaemonClient.SystemInfo systemInfo;
+        try
+        {
+            systemInfo = daemonClient.querySystem();
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn("{}: Report daemon on port {} is not available, loading XML report files: {}",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, daemonClient.getPort(), e.getMessage());
+            return false;
+        }
+        LOGGER.info("{}: Using report daemon on port {}", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                daemonClient.getPort());
+
+        final boolean processIssues = reportSections.contains(ReportSection.ISSUES);
+        final String language = processIssues
+                ? determineLanguage(systemInfo.getModuleLanguages().values(), rulesAndMetrics)
+                : null;
+        if (processIssues && language == null)
+        {
+            return true;
+        }
+
+        if (reportSections.contains(ReportSection.METRICS))
+        {
+            saveSystemMetrics(sensorContext, systemInfo.getMetrics(), rulesAndMetrics);
+        }
+
+        final LineRangeValidator lineRangeValidator = new LineRangeValidator();
+        final SensorDiagnostics diagnostics = new SensorDiagnostics();
+        final File issueIndexFile = getIssueIndexFile(sensorContext.config());
+        final IssueIndex issueIndex = processIssues && issueIndexFile != null ? new IssueIndex() : null;
+        boolean isIncomplete = false;
+        if (processIssues)
+        {
+            try
+            {
+                processIssuesWithDaemon(sensorContext, daemonClient, systemInfo, rulesAndMetrics, language,
+                        lineRangeValidator, diagnostics, timeBudget, issueIndex);
+            }
+            catch (final IOException e)
+            {
+                LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to query report daemon", e);
+                isIncomplete = true;
+            }
+        }
+        diagnostics.add(SensorDiagnostics.Reason.LINE_RANGE_SHORTENED, lineRangeValidator.getClampedRanges());
+        diagnostics.add(SensorDiagnostics.Reason.LINE_RANGE_OMITTED, lineRangeValidator.getDroppedRanges());
+        diagnostics.logSummary();
+
+        final boolean isPartial = isIncomplete || timeBudget.isExhausted();
+        if (isPartial)
+        {
+            LOGGER.warn("{}: {}, the analysis is partial. Only the issues and metrics processed so far have been saved.",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                    isIncomplete ? "Report daemon failed" : timeBudget.getExhaustedReason());
+        }
+        saveAnalysisPartialMeasure(sensorContext, rulesAndMetrics, isPartial);
+        if (issueIndex != null)
+        {
+            writeIssueIndex(issueIndex, issueIndexFile, isPartial);
+        }
+        //The custom rules of the issues are not marked as seen, as the daemon does not provide their issue types
+        updateRules(!isPartial, false);
+        return true;
+    }
+
+    private static void saveSystemMetrics(final SensorContext sensorContext,
+            final List<ReportDaemonClient.SystemMetric> metrics, final ActiveRulesAndMetrics rulesAndMetrics)
+    {
+        final MetricValueStore metricValues = new MetricValueStore();
+        final int projectId = metricValues.getComponentId(sensorContext.project());
+        final List<String> missing = new ArrayList<>();
+        for (final ReportDaemonClient.SystemMetric nextMetric : metrics)
+        {
+            final String metricKey = SonargraphBase.createMetricKeyFromStandardName(nextMetric.getName());
+            final Metric<Serializable> metric = rulesAndMetrics.getMetrics().get(metricKey);
+            if (metric == null || !rulesAndMetrics.isAvailableOnScanner(metricKey))
+            {
+                missing.add(nextMetric.getName());
+                continue;
+            }
+            metricValues.put(metric, projectId, nextMetric.isFloat(), nextMetric.getValue());
+        }
+        metricValues.save(sensorContext);
+
+        if (!missing.isEmpty())
+        {
+            LOGGER.warn("{}: {} metric(s) are not available, custom metrics are only added when processing the XML report files"
+                    + " without report daemon: {}", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, missing.size(),
+                    String.join(", ", missing));
+        }
+    }
+
+    private void processIssuesWithDaemon(final SensorContext sensorContext, final ReportDaemonClient daemonClient,
+            final ReportDaemonClient.SystemInfo systemInfo, final ActiveRulesAndMetrics rulesAndMetrics,
+            final String language, final LineRangeValidator lineRangeValidator, final SensorDiagnostics diagnostics,
+            final TimeBudget timeBudget, final IssueIndex issueIndex) throws IOException
+    {
+        final Map<String, ActiveRule> keyToRule = rulesAndMetrics.getActiveRules(language);
+        if (keyToRule == null || keyToRule.isEmpty())
+        {
+            diagnostics.add(SensorDiagnostics.Reason.NO_RULES_FOR_MODULE_LANGUAGE, () -> "Language '" + language + "'");
+            return;
+        }
+
+        for (final IssueIndex.Entry nextIssue : systemInfo.getIssues())
+        {
+            final ActiveRule nextRule = keyToRule.get(nextIssue.getRuleKey());
+            if (nextRule != null)
+            {
+                emit(sensorContext, new PendingIssue(nextRule, sensorContext.project(), nextIssue.getMessage()),
+                        lineRangeValidator, diagnostics, null);
+            }
+        }
+        if (!systemInfo.getSetupProblems().isEmpty())
+        {
+            LOGGER.warn("{}: Found {} system setup related error/warning issue(s)",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, systemInfo.getSetupProblems().size());
+            int i = 1;
+            for (final List<String> nextSetupProblem : systemInfo.getSetupProblems())
+            {
+                LOGGER.warn("[{}] {}", i, nextSetupProblem.get(0));
+                nextSetupProblem.stream().skip(1).forEach(affected -> LOGGER.warn(" - {}", affected));
+                i++;
+            }
+        }
+
+        final IssueSelection issueSelection = IssueSelection.create(sensorContext.config());
+        final Function<String, InputFile> fileLookup = path -> sqFileSystem
+                .inputFile(sqFileSystem.predicates().hasAbsolutePath(path));
+        for (final Entry<String, String> nextModule : systemInfo.getModuleLanguages().entrySet())
+        {
+            if (timeBudget.isExhausted())
+            {
+                return;
+            }
+            final String moduleName = nextModule.getKey();
+            if (!issueSelection.isSelected(moduleName))
+            {
+                LOGGER.debug("{}: Module '{}' is not selected", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                        moduleName);
+                continue;
+            }
+            final String sqModuleLanguage = SonargraphBase.convertLanguage(nextModule.getValue());
+            if (sqModuleLanguage == null)
+            {
+                diagnostics.add(SensorDiagnostics.Reason.MODULE_LANGUAGE_NOT_SUPPORTED,
+                        () -> "Module '" + moduleName + "' [" + nextModule.getValue() + "]");
+                continue;
+            }
+            if (!sqModuleLanguage.equals(language))
+            {
+                diagnostics.add(SensorDiagnostics.Reason.MODULE_LANGUAGE_NOT_ACTIVE,
+                        () -> "Module '" + moduleName + "' [" + nextModule.getValue() + "]");
+                continue;
+            }
+
+            final IssueIndex moduleIssues = daemonClient.queryModule(moduleName);
+            for (final String nextPath : moduleIssues.getPaths())
+            {
+                if (timeBudget.isExhausted())
+                {
+                    return;
+                }
+                if (nextPath.endsWith(SonargraphReportDaemon.DIRECTORY_SUFFIX))
+                {
+                    addDaemonIssuesToDirectory(sensorContext, keyToRule, lineRangeValidator, diagnostics,
+                            nextPath.substring(0, nextPath.length() - SonargraphReportDaemon.DIRECTORY_SUFFIX.length()),
+                            moduleIssues.get(nextPath));
+                }
+                else
+                {
+                    addDaemonIssuesToSourceFile(sensorContext, keyToRule, fileLookup, lineRangeValidator, diagnostics,
+                            nextPath, moduleIssues.get(nextPath), issueIndex);
+                }
+            }
+        }
+    }
+
+    private void addDaemonIssuesToSourceFile(final SensorContext sensorContext, final Map<String, ActiveRule> keyToRule,
+            final Function<String, InputFile> fileLookup, final LineRangeValidator lineRangeValidator,
+            final SensorDiagnostics diagnostics, final String path, final List<IssueIndex.Entry> entries,
+            final IssueIndex issueIndex)
+    {
+        final InputFile inputFile = fileLookup.apply(path);
+        if (inputFile == null)
+        {
+            commitPathResolutionMiss(path, false, entries.size());
+            diagnostics.add(SensorDiagnostics.Reason.SOURCE_FILE_NOT_FOUND,
+                    () -> "'" + path + "', " + entries.size() + " issue(s)");
+            return;
+        }
+
+        for (final IssueIndex.Entry nextEntry : entries)
+        {
+            final ActiveRule nextRule = keyToRule.get(nextEntry.getRuleKey());
+            if (nextRule != null)
+            {
+                emit(sensorContext, PendingIssue.create(nextEntry, nextRule, inputFile, fileLookup), lineRangeValidator,
+                        diagnostics, issueIndex);
+            }
+        }
+    }
+
+    private void addDaemonIssuesToDirectory(final SensorContext sensorContext, final Map<String, ActiveRule> keyToRule,
+            final LineRangeValidator lineRangeValidator, final SensorDiagnostics diagnostics, final String directoryPath,
+            final List<IssueIndex.Entry> entries)
+    {
+        final InputDir inputDir = sqFileSystem.inputDir(new File(directoryPath));
+        if (inputDir == null)
+        {
+            commitPathResolutionMiss(directoryPath, true, entries.size());
+            diagnostics.add(SensorDiagnostics.Reason.DIRECTORY_NOT_FOUND,
+                    () -> "'" + directoryPath + "', " + entries.size() + " issue(s)");
+            return;
         }
 
-        // Try Gradle default target directory
-        path = "build/" + SonargraphBase.XML_REPORT_FILE_PATH_DEFAULT;
-        report = resolveReadableFile(path);
-        if (report != null)
+        for (final IssueIndex.Entry nextEntry : entries)
         {
-            return report;
+            final ActiveRule nextRule = keyToRule.get(nextEntry.getRuleKey());
+            if (nextRule != null)
+            {
+                emit(sensorContext, new PendingIssue(nextRule, inputDir, nextEntry.getMessage()),
+                        lineRangeValidator, diagnostics, null);
+            }
         }
-        LOGGER.error("{}: XML report file not found", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME);
-        return null;
     }
 
-    static String getPathForScannerApp(final Configuration configuration, final String scannerApp)
+    /**
+     * Saves the cached issues of files that are unchanged since they have been cached.
+     *
+     * @return The paths of the replayed files, their issues must not be created from the report again
+     */
+    private Set<String> replayCachedIssues(final SensorContext sensorContext, final IssueIndex cachedIssues,
+            final LineRangeValidator lineRangeValidator, final SensorDiagnostics diagnostics,
+            final TimeBudget timeBudget, final IssueIndex issueIndex)
     {
-        if (scannerApp.equals("ScannerMaven"))
+        if (cachedIssues == null)
         {
-            final Optional<String> buildDir = configuration.get("sonar.projectBuildDir");
-            if (buildDir.isPresent())
-            {
-                return new File(buildDir.get(), SonargraphBase.XML_REPORT_FILE_PATH_DEFAULT).getAbsolutePath();
-            }
+            return Collections.emptySet();
         }
-        else if (scannerApp.equals("ScannerGradle"))
+
+        final Function<String, InputFile> fileLookup = path -> sqFileSystem
+                .inputFile(sqFileSystem.predicates().hasRelativePath(path));
+        final Set<String> replayedFiles = new HashSet<>();
+        int replayedIssues = 0;
+        for (final String nextPath : cachedIssues.getPaths())
         {
-            final Optional<String> workingDirectory = configuration.get("sonar.working.directory");
-            if (workingDirectory.isPresent())
+            if (timeBudget.isExhausted())
             {
-                final File buildDir = new File(workingDirectory.get()).getParentFile();
-                return new File(buildDir, SonargraphBase.XML_REPORT_FILE_PATH_DEFAULT).getAbsolutePath();
+                break;
+            }
+
+            final InputFile inputFile = fileLookup.apply(nextPath);
+            final String cachedHash = cachedIssues.getHash(nextPath);
+            if (inputFile == null || cachedHash == null || !cachedHash.equals(inputFile.md5Hash()))
+            {
+                continue;
+            }
+
+            for (final IssueIndex.Entry nextEntry : cachedIssues.get(nextPath))
+            {
+                final ActiveRule rule = sensorContext.activeRules().find(RuleKey.parse(nextEntry.getRuleKey()));
+                if (rule != null)
+                {
+                    emit(sensorContext, PendingIssue.create(nextEntry, rule, inputFile, fileLookup), lineRangeValidator,
+                            diagnostics, issueIndex);
+                    replayedIssues++;
+                }
             }
+            replayedFiles.add(nextPath);
         }
 
-        return null;
+        LOGGER.info("{}: Replayed {} issue(s) of {} unchanged file(s) from cache",
+                SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, replayedIssues, replayedFiles.size());
+        return replayedFiles;
     }
 
-    private File getSystemBaseDirectory(final Configuration config)
+    private File getIssueIndexFile(final Configuration config)
     {
-        final Optional<String> basePathOpt = config.get(SonargraphBase.SONARGRAPH_BASE_DIR_KEY);
-        if (!basePathOpt.isPresent())
+        final String path = config.get(SonargraphBase.ISSUE_INDEX_PATH_KEY).orElse("").trim();
+        return path.isEmpty() ? null : sqFileSystem.resolvePath(path);
+    }
+
+    private static void writeIssueIndex(final IssueIndex issueIndex, final File issueIndexFile, final boolean isPartial)
+    {
+        if (isPartial)
         {
-            return null;
+            LOGGER.warn("{}: Skipping update of issue index '{}' for partial analysis",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, issueIndexFile.getAbsolutePath());
+            return;
         }
 
-        final String path = basePathOpt.get();
-        final File baseDir = sqFileSystem.resolvePath(path);
-        if (baseDir.exists())
+        try
         {
-            return baseDir;
+            issueIndex.write(issueIndexFile);
+            LOGGER.info("{}: Wrote issue index with {} issue(s) of {} file(s) to '{}'",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, issueIndex.size(),
+                    issueIndex.getNumberOfFiles(), issueIndexFile.getAbsolutePath());
+        }
+        catch (final IOException e)
+        {
+            LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to write issue index '"
+                    + issueIndexFile.getAbsolutePath() + "'", e);
         }
-
-        return null;
     }
 
-    private void process(final SensorContext sensorContext, final ISonargraphSystemController sgController)
+    @SuppressWarnings("unchecked")
+    private static void saveAnalysisPartialMeasure(final SensorContext sensorContext,
+            final ActiveRulesAndMetrics rulesAndMetrics, final boolean isPartial)
     {
-        final ISoftwareSystem softwareSystem = sgController.getSoftwareSystem();
-
-        final ActiveRulesAndMetrics rulesAndMetrics = createActiveRulesAndMetrics(sensorContext);
-        final ISystemInfoProcessor systemInfoProcessor = sgController.createSystemInfoProcessor();
-
-        final String language = determineLanguage(softwareSystem, rulesAndMetrics);
-        if (language == null)
+        final Metric<? extends Serializable> metric = rulesAndMetrics.getMetrics()
+                .get(SonargraphBase.ANALYSIS_PARTIAL_METRIC_KEY);
+        if (metric == null)
         {
+            LOGGER.debug("{}: Metric '{}' is not known to the server", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                    SonargraphBase.ANALYSIS_PARTIAL_METRIC_KEY);
             return;
         }
 
-        processSystem(sensorContext, softwareSystem, systemInfoProcessor, rulesAndMetrics, language);
-        processModules(sensorContext, sgController, rulesAndMetrics, systemInfoProcessor, language);
-        updateRules();
+        final NewMeasure<Integer> sqMeasure = sensorContext.<Integer> newMeasure();
+        sqMeasure.forMetric((Metric<Integer>) metric);
+        sqMeasure.on(sensorContext.project());
+        sqMeasure.withValue(Integer.valueOf(isPartial ? 1 : 0));
+        sqMeasure.save();
     }
 
-    private void updateRules()
+    /**
+     * @param isCustomRulesUpdateAllowed false for a partial analysis, as the custom rules found so far are incomplete
+     * @param isCustomRulesRetentionApplicable true if all custom rules found have been marked as seen, only then the analysis is
+     *            counted for the retention of the custom rules and custom rules not seen for a while are dropped
+     */
+    private void updateRules(final boolean isCustomRulesUpdateAllowed,
+            final boolean isCustomRulesRetentionApplicable)
+    {
+        saveCustomMetrics();
+        saveCustomRules(isCustomRulesUpdateAllowed, isCustomRulesRetentionApplicable);
+    }
+
+    private void saveCustomMetrics()
     {
         if (isUpdateOfServerCustomMetricsNeeded || isUpdateOfScannerCustomMetricsNeeded)
         {
@@ -367,13 +1094,32 @@ public final class SonargraphSensor implements ProjectSensor
                         e);
             }
         }
+    }
+
+    private void saveCustomRules(final boolean isCustomRulesUpdateAllowed,
+            final boolean isCustomRulesRetentionApplicable)
+    {
+        if (isCustomRulesRetentionApplicable && sgRulesProvider.completeAnalysis(customRulesRetention) > 0)
+        {
+            //Custom rules not seen for a while have been dropped.
+            isUpdateOfServerCustomRulesNeeded = true;
+        }
 
-        if (isUpdateOfServerCustomRulesNeeded)
+        if (isUpdateOfServerCustomRulesNeeded && !isCustomRulesUpdateAllowed)
+        {
+            LOGGER.info("{}: Skipping update of custom rules for partial analysis",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME);
+        }
+        else if (isUpdateOfServerCustomRulesNeeded)
         {
             //New custom rules have been introduced.
+            final SonargraphEvents.CustomRulePersistenceEvent event = new SonargraphEvents.CustomRulePersistenceEvent();
+            event.begin();
             try
             {
                 final File customRulesFile = sgRulesProvider.saveCustomRuleProperties("Custom Sonargraph Rules");
+                event.file = customRulesFile.getAbsolutePath();
+                event.success = true;
                 LOGGER.warn(
                         "{}: Custom rules have been updated, file {} needs to be copied to the directory <user-home>/.{} of the SonarQube server."
                                 + " After a restart of the server the additional rules can be activated in the quality profile"
@@ -386,51 +1132,191 @@ public final class SonargraphSensor implements ProjectSensor
                 LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to save custom ruels file.",
                         e);
             }
+            finally
+            {
+                event.commit();
+            }
+        }
+        else if (isCustomRulesRetentionApplicable && sgRulesProvider.hasCustomRules())
+        {
+            //Only the analyses the custom rules have been seen in have changed.
+            try
+            {
+                sgRulesProvider.saveCustomRuleIndex();
+            }
+            catch (final IOException e)
+            {
+                LOGGER.warn("{}: Unable to save custom rules index: {}", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                        e.getMessage());
+            }
         }
     }
 
-    private void processModules(final SensorContext sensorContext, final ISonargraphSystemController sgController,
-            final ActiveRulesAndMetrics rulesAndMetrics, final ISystemInfoProcessor systemInfoProcessor,
-            final String language)
+    /**
+     * Modules are processed in a pipeline: Sonargraph's grouping of the module issues (reader), the preparation of the SonarQube issues
+     * (transformer) and saving them (emitter) overlap. The bounded queues in between keep only a few modules and issues in memory.
+     */
+    private void processModules(final SensorContext sensorContext, final List<ReportIssues> reportIssues,
+            final ActiveRulesAndMetrics rulesAndMetrics, final String language,
+            final ProcessedElements processedElements, final IssueSelection issueSelection,
+            final ModuleIssuePartition.IssueFilter issueFilter, final LineRangeValidator lineRangeValidator,
+            final SensorDiagnostics diagnostics, final TimeBudget timeBudget, final IssueIndex issueIndex,
+            final Set<String> replayedFiles)
     {
-        for (final Entry<String, IModule> nextEntry : systemInfoProcessor.getModules().entrySet())
+        final Map<String, ActiveRule> keyToRule = rulesAndMetrics.getActiveRules(language);
+        if (keyToRule == null || keyToRule.isEmpty())
         {
-            final IModule module = nextEntry.getValue();
-            final IModuleInfoProcessor moduleInfoProcessor = sgController.createModuleInfoProcessor(module);
+            diagnostics.add(SensorDiagnostics.Reason.NO_RULES_FOR_MODULE_LANGUAGE, () -> "Language '" + language + "'");
+            return;
+        }
+
+        final Set<String> moduleKeys = new HashSet<>();
+        for (final ReportIssues nextReportIssues : reportIssues)
+        {
+            moduleKeys.addAll(nextReportIssues.getSystemInfoProcessor().getModules().keySet());
+        }
+        final ProgressReporter progress = new ProgressReporter(moduleKeys.size());
+        final File baseDirectory = sqFileSystem.baseDir();
+        final Predicate<InputFile> isReplayed = replayedFiles.isEmpty() ? inputFile -> false
+                : inputFile -> replayedFiles.contains(IssueIndex.createKey(baseDirectory, inputFile));
+
+        final ProcessingPipeline<ModuleWork, PendingIssue> pipeline = new ProcessingPipeline<>(
+                SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + " module processing", MODULE_QUEUE_CAPACITY,
+                ISSUE_QUEUE_CAPACITY);
+        final ModuleIssueSplitter splitter = new ModuleIssueSplitter(Runtime.getRuntime().availableProcessors(),
+                SPLIT_LEAF_ISSUES, SPLIT_WINDOW_ISSUES);
+        try
+        {
+            pipeline.run(
+                    sink -> readModules(reportIssues, language, processedElements, issueSelection, issueFilter,
+                            diagnostics, progress, timeBudget, sink),
+                    (moduleWork, sink) ->
+                    {
+                        processModule(moduleWork, keyToRule, diagnostics, timeBudget, isReplayed, splitter, sink);
+                        progress.moduleFinished();
+                    }, pendingIssue ->
+                    {
+                        //Remaining issues are drained without saving them, so that the other stages can finish.
+                        if (!timeBudget.isExhausted())
+                        {
+                            emit(sensorContext, pendingIssue, lineRangeValidator, diagnostics, issueIndex);
+                            progress.issueEmitted();
+                        }
+                    });
+        }
+        finally
+        {
+            splitter.shutdown();
+        }
+        progress.finish();
+    }
 
-            final String sqModuleLanguage = SonargraphBase.convertLanguage(module.getLanguage());
-            if (sqModuleLanguage != null)
+    private static void readModules(final List<ReportIssues> reportIssues, final String language,
+            final ProcessedElements processedElements, final IssueSelection issueSelection,
+            final ModuleIssuePartition.IssueFilter issueFilter, final SensorDiagnostics diagnostics,
+            final ProgressReporter progress, final TimeBudget timeBudget, final Consumer<ModuleWork> sink)
+    {
+        for (final ReportIssues nextReportIssues : reportIssues)
+        {
+            for (final Entry<String, IModule> nextEntry : nextReportIssues.getSystemInfoProcessor().getModules()
+                    .entrySet())
             {
-                if (sqModuleLanguage.equals(language))
+                if (timeBudget.isExhausted())
                 {
-                    processModule(sensorContext, moduleInfoProcessor, rulesAndMetrics, language);
+                    return;
                 }
-                else
+                if (!processedElements.addModule(nextEntry.getKey()))
+                {
+                    LOGGER.debug("{}: Module '{}' has already been processed from another XML report file",
+                            SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, nextEntry.getKey());
+                    continue;
+                }
+
+                final IModule module = nextEntry.getValue();
+                if (!issueSelection.isSelected(module.getName()))
+                {
+                    LOGGER.debug("{}: Module '{}' is not selected", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                            module.getName());
+                    progress.moduleFinished();
+                    continue;
+                }
+
+                final String sqModuleLanguage = SonargraphBase.convertLanguage(module.getLanguage());
+                if (sqModuleLanguage == null)
+                {
+                    diagnostics.add(SensorDiagnostics.Reason.MODULE_LANGUAGE_NOT_SUPPORTED,
+                            () -> "Module '" + module.getName() + "' [" + module.getLanguage() + "]");
+                    progress.moduleFinished();
+                    continue;
+                }
+                if (!sqModuleLanguage.equals(language))
                 {
-                    LOGGER.warn("{}: Ignoring module '{}', since language '{}' is not active for project",
-                            SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, module.getName(), module.getLanguage());
+                    diagnostics.add(SensorDiagnostics.Reason.MODULE_LANGUAGE_NOT_ACTIVE,
+                            () -> "Module '" + module.getName() + "' [" + module.getLanguage() + "]");
+                    progress.moduleFinished();
+                    continue;
                 }
+
+                final IModuleInfoProcessor moduleInfoProcessor = nextReportIssues.getController()
+                        .createModuleInfoProcessor(module);
+                sink.accept(new ModuleWork(module.getName(), moduleInfoProcessor,
+                        ModuleIssuePartition.create(moduleInfoProcessor, issueFilter,
+                                nextReportIssues.getIssueDescriptions(), nextReportIssues.getStringPool())));
             }
-            else
+        }
+    }
+
+    /**
+     * @param issueIndex Index the saved issue is added to, null if no index is written
+     */
+    private void emit(final SensorContext sensorContext, final PendingIssue pendingIssue,
+            final LineRangeValidator lineRangeValidator, final SensorDiagnostics diagnostics, final IssueIndex issueIndex)
+    {
+        if (!pendingIssue.hasRule())
+        {
+            createCustomRuleForIssue(pendingIssue.getIssueType(), pendingIssue.getSeverity());
+            return;
+        }
+
+        try
+        {
+            pendingIssue.save(sensorContext, lineRangeValidator);
+            sgRulesProvider.markCustomRuleSeen(pendingIssue.getRuleKey());
+            if (issueIndex != null)
             {
-                LOGGER.warn(
-                        "{}: Ignoring module '{}', since language '{}' is not supported by Sonargraph SonarQube Plugin",
-                        SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, module.getName(), module.getLanguage());
+                pendingIssue.addTo(issueIndex, sqFileSystem.baseDir());
             }
         }
+        catch (final Exception e)
+        {
+            diagnostics.add(SensorDiagnostics.Reason.ISSUE_CREATION_FAILED, pendingIssue::toString, e);
+        }
     }
 
-    private String determineLanguage(final ISoftwareSystem softwareSystem, final ActiveRulesAndMetrics rulesAndMetrics)
+    /**
+     * @param moduleLanguages The Sonargraph language of each module
+     */
+    private String determineLanguage(final Collection<String> moduleLanguages,
+            final ActiveRulesAndMetrics rulesAndMetrics)
     {
-        final List<ModulesLanguageCounter> languagesOfModules = determineLanguagesOfSystem(softwareSystem);
+        final SonargraphEvents.LanguageDeterminationEvent event = new SonargraphEvents.LanguageDeterminationEvent();
+        event.begin();
+        final List<ModulesLanguageCounter> languagesOfModules = countLanguages(moduleLanguages);
+        final String language = languagesOfModules.isEmpty() ? null
+                : getMostUsedActiveLanguage(languagesOfModules, rulesAndMetrics);
+        if (event.shouldCommit())
+        {
+            event.language = language;
+            event.numberOfLanguages = languagesOfModules.size();
+            event.commit();
+        }
+
         if (languagesOfModules.isEmpty())
         {
             LOGGER.error("{}: No languages could be determined from the modules of the Sonargraph system.",
                     SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME);
             return null;
         }
-
-        final String language = getMostUsedActiveLanguage(languagesOfModules, rulesAndMetrics);
         if (language == null)
         {
             LOGGER.error("{}: No rules are active that match the languages of the Sonargraph system: {}",
@@ -448,12 +1334,12 @@ public final class SonargraphSensor implements ProjectSensor
     }
 
     private void processSystem(final SensorContext sensorContext, final ISoftwareSystem softwareSystem,
-            final ISystemInfoProcessor systemInfoProcessor, final ActiveRulesAndMetrics rulesAndMetrics,
-            final String language)
+            final ISystemInfoProcessor systemInfoProcessor, final IssueDescriptions issueDescriptions,
+            final ActiveRulesAndMetrics rulesAndMetrics, final String language,
+            final ProcessedElements processedElements, final IssueSelection issueSelection,
+            final LineRangeValidator lineRangeValidator, final SensorDiagnostics diagnostics,
+            final TimeBudget timeBudget)
     {
-
-        processSystemMetrics(sensorContext, sensorContext.project(), softwareSystem, systemInfoProcessor,
-                rulesAndMetrics);
         final Map<String, ActiveRule> keyToRule = rulesAndMetrics.getActiveRules(language);
         if (keyToRule == null || keyToRule.isEmpty())
         {
@@ -461,28 +1347,54 @@ public final class SonargraphSensor implements ProjectSensor
             return;
         }
 
-        final List<IIssue> systemIssues = systemInfoProcessor.getIssues(issue -> !issue.isIgnored()
-                && (issue.getIssueType().getCategory().getName().equals(SonargraphBase.QUALITY_GATE_ISSUE_CATEGORY))
-                || (!SonargraphBase.ignoreIssueType(issue.getIssueType())
-                        && issue.getAffectedNamedElements().contains(softwareSystem)));
+        final SonargraphEvents.SystemProcessingEvent event = new SonargraphEvents.SystemProcessingEvent();
+        event.begin();
 
-        for (final IIssue nextIssue : systemIssues)
+        //Single pass over all issues, category checks are done once per issue type.
+        int issueCount = 0;
+        final SystemIssueClassifier classifier = new SystemIssueClassifier(softwareSystem, issueSelection);
+        final List<IIssue> ignoredErrorOrWarningIssues = new ArrayList<>();
+        for (final IIssue nextIssue : systemInfoProcessor.getIssues(issue -> true))
         {
-            final ActiveRule nextRule = keyToRule
-                    .get(SonargraphBase.createRuleKeyToCheck(nextIssue.getIssueType(), nextIssue.getSeverity()));
-            if (nextRule != null)
+            if (timeBudget.isExhausted())
             {
-                createSqIssue(sensorContext, sensorContext.project(), nextRule,
-                        createIssueDescription(systemInfoProcessor, nextIssue), null);
+                break;
             }
-            else
+            switch (classifier.classify(nextIssue))
             {
-                createCustomRuleForIssue(nextIssue);
+            case EMIT:
+                if (processedElements.addSystemIssue(nextIssue))
+                {
+                    final ActiveRule nextRule = keyToRule.get(
+                            SonargraphBase.createRuleKeyToCheck(nextIssue.getIssueType(), nextIssue.getSeverity()));
+                    //System issues are reported on the project, they are not part of the per-file issue index.
+                    emit(sensorContext, nextRule != null
+                            ? new PendingIssue(nextRule, sensorContext.project(), issueDescriptions.create(nextIssue))
+                            : PendingIssue.withoutRule(nextIssue.getIssueType(), nextIssue.getSeverity()),
+                            lineRangeValidator, diagnostics, null);
+                    issueCount++;
+                }
+                break;
+            case IGNORED_SETUP_PROBLEM:
+                if (processedElements.addSystemIssue(nextIssue))
+                {
+                    ignoredErrorOrWarningIssues.add(nextIssue);
+                }
+                break;
+            case SKIP:
+                //$FALL-THROUGH$
+            default:
+                break;
             }
         }
 
-        final List<IIssue> ignoredErrorOrWarningIssues = systemInfoProcessor
-                .getIssues(issue -> SonargraphBase.isIgnoredErrorOrWarningIssue(issue.getIssueType()));
+        if (event.shouldCommit())
+        {
+            event.systemName = softwareSystem.getName();
+            event.issueCount = issueCount;
+            event.commit();
+        }
+
         if (!ignoredErrorOrWarningIssues.isEmpty())
         {
             LOGGER.warn("{}: Found {} system setup related error/warning issue(s)",
@@ -514,12 +1426,27 @@ public final class SonargraphSensor implements ProjectSensor
         return null;
     }
 
-    private List<ModulesLanguageCounter> determineLanguagesOfSystem(final ISoftwareSystem softwareSystem)
+    /**
+     * @return The Sonargraph language of each module, modules contained in several XML report files are considered once
+     */
+    private static List<String> getModuleLanguages(final List<ISonargraphSystemController> sgControllers)
+    {
+        final Map<String, IModule> modules = new HashMap<>();
+        for (final ISonargraphSystemController nextController : sgControllers)
+        {
+            for (final Map.Entry<String, IModule> next : nextController.getSoftwareSystem().getModules().entrySet())
+            {
+                modules.putIfAbsent(next.getKey(), next.getValue());
+            }
+        }
+        return modules.values().stream().map(IModule::getLanguage).collect(Collectors.toList());
+    }
+
+    private List<ModulesLanguageCounter> countLanguages(final Collection<String> moduleLanguages)
     {
         final Map<String, Integer> languagesToModuleCount = new HashMap<>();
-        for (final Map.Entry<String, IModule> next : softwareSystem.getModules().entrySet())
+        for (final String language : moduleLanguages)
         {
-            final String language = next.getValue().getLanguage();
             final Integer count = languagesToModuleCount.computeIfAbsent(language, k -> Integer.valueOf(0));
             languagesToModuleCount.put(language, count + 1);
         }
@@ -541,238 +1468,165 @@ public final class SonargraphSensor implements ProjectSensor
         return sorted;
     }
 
-    private void createCustomRuleForIssue(final IIssue issue)
+    private void createCustomRuleForIssue(final IIssueType issueType, final Severity severity)
     {
-        if (issue.getIssueType().getProvider() != null)
+        if (issueType.getProvider() != null)
         {
             isUpdateOfServerCustomRulesNeeded = true;
-            sgRulesProvider.addCustomRuleForIssue(issue);
+            sgRulesProvider.addCustomRuleForIssue(issueType, severity);
         }
     }
 
-    private void processModule(final SensorContext sensorContext, final IModuleInfoProcessor moduleInfoProcessor,
-            final ActiveRulesAndMetrics rulesAndMetrics, final String language)
+    private void processModule(final ModuleWork moduleWork, final Map<String, ActiveRule> keyToRule,
+            final SensorDiagnostics diagnostics, final TimeBudget timeBudget, final Predicate<InputFile> isReplayed,
+            final ModuleIssueSplitter splitter, final Consumer<PendingIssue> sink)
     {
-        final Map<String, ActiveRule> keyToRule = rulesAndMetrics.getActiveRules(language);
-        if (keyToRule == null || keyToRule.isEmpty())
-        {
-            LOGGER.warn("No rules activated for language {}", language);
-            return;
-        }
-
-        final Map<ISourceFile, List<IIssue>> sourceFileIssueMap = moduleInfoProcessor
-                .getIssuesForSourceFiles(i -> !i.isIgnored() && !SonargraphBase.ignoreIssueType(i.getIssueType()));
-        for (final Entry<ISourceFile, List<IIssue>> issuesPerSourceFile : sourceFileIssueMap.entrySet())
-        {
-            addIssuesToSourceFile(sensorContext, moduleInfoProcessor, keyToRule, moduleInfoProcessor.getBaseDirectory(),
-                    issuesPerSourceFile.getKey(), issuesPerSourceFile.getValue());
-        }
-
-        final Map<String, List<IIssue>> directoryIssueMap = moduleInfoProcessor
-                .getIssuesForDirectories(i -> !i.isIgnored() && !SonargraphBase.ignoreIssueType(i.getIssueType()));
-        for (final Entry<String, List<IIssue>> issuesPerDirectory : directoryIssueMap.entrySet())
+        final SonargraphEvents.ModuleProcessingEvent event = new SonargraphEvents.ModuleProcessingEvent();
+        event.begin();
+        addModuleIssues(moduleWork, keyToRule, diagnostics, timeBudget, isReplayed, splitter, sink);
+        if (event.shouldCommit())
         {
-            addIssuesToDirectory(sensorContext, moduleInfoProcessor, keyToRule, moduleInfoProcessor.getBaseDirectory(),
-                    issuesPerDirectory.getKey(), issuesPerDirectory.getValue());
+            event.moduleName = moduleWork.getModuleName();
+            event.issueCount = moduleWork.getPartition().getNumberOfIssues();
+            event.commit();
         }
     }
 
-    private String createIssueDescription(final IInfoProcessor infoProcessor, final IIssue issue, final String detail)
+    /**
+     * The source files of large modules are processed concurrently by the splitter, the issues are passed to the sink in the same order
+     * as if they were processed sequentially.
+     */
+    private void addModuleIssues(final ModuleWork moduleWork, final Map<String, ActiveRule> keyToRule,
+            final SensorDiagnostics diagnostics, final TimeBudget timeBudget, final Predicate<InputFile> isReplayed,
+            final ModuleIssueSplitter splitter, final Consumer<PendingIssue> sink)
     {
-        final StringBuilder result = new StringBuilder();
+        final IModuleInfoProcessor moduleInfoProcessor = moduleWork.getModuleInfoProcessor();
+        final ModuleIssuePartition partition = moduleWork.getPartition();
 
-        final IResolution resolution = infoProcessor.getResolution(issue);
-        if (resolution != null)
+        final InputFileLocator inputFileLocator = new InputFileLocator(sqFileSystem,
+                moduleInfoProcessor.getBaseDirectory());
+        final PendingIssueFactory issueFactory = new PendingIssueFactory(partition, keyToRule);
+        if (splitter.isSplit(partition))
         {
-            final ResolutionType type = resolution.getType();
-            switch (type)
-            {
-            case FIX:
-                result.append("[").append(SonargraphBase.toLowerCase(type.toString(), false)).append(": ")
-                        .append(issue.getPresentationName()).append("]");
-                break;
-            case REFACTORING:
-                //$FALL-THROUGH$
-            case TODO:
-                result.append("[").append(issue.getPresentationName()).append("]");
-                break;
-            case IGNORE:
-                //$FALL-THROUGH$
-            case NONE:
-                //$FALL-THROUGH$
-            default:
-                assert false : "Unhandled resolution type: " + type;
-                break;
-            }
-
-            result.append(" assignee='").append(resolution.getAssignee()).append("'");
-            result.append(" priority='").append(SonargraphBase.toLowerCase(resolution.getPriority().toString(), false))
-                    .append("'");
-            result.append(" description='").append(resolution.getDescription()).append("'");
-            result.append(" created='").append(resolution.getDate()).append("'");
+            splitter.run(partition,
+                    (fileId, fileSink) -> addIssuesToSourceFile(issueFactory, inputFileLocator, diagnostics, isReplayed,
+                            partition, fileId, fileSink),
+                    timeBudget::isExhausted, sink);
         }
         else
         {
-            result.append("[").append(issue.getPresentationName()).append("]");
+            for (int fileId = 0; fileId < partition.getNumberOfSourceFiles(); fileId++)
+            {
+                if (timeBudget.isExhausted())
+                {
+                    return;
+                }
+                addIssuesToSourceFile(issueFactory, inputFileLocator, diagnostics, isReplayed, partition, fileId,
+                        sink);
+            }
         }
 
-        result.append(" ").append(issue.getDescription());
-        if (!detail.isEmpty())
+        for (int i = 0; i < partition.getNumberOfDirectories(); i++)
         {
-            result.append(" ").append(detail);
+            if (timeBudget.isExhausted())
+            {
+                return;
+            }
+            addIssuesToDirectory(issueFactory, diagnostics, moduleInfoProcessor.getBaseDirectory(), partition, i,
+                    sink);
         }
-        result.append(" [").append(issue.getIssueProvider().getPresentationName()).append("]");
-
-        return result.toString();
     }
 
-    private String createIssueDescription(final IModuleInfoProcessor moduleInfoProcessor,
-            final IDuplicateCodeBlockIssue duplicateCodeBlockIssue, final IDuplicateCodeBlockOccurrence occurrence,
-            final List<IDuplicateCodeBlockOccurrence> others)
+    private static void addIssuesToSourceFile(final PendingIssueFactory issueFactory,
+            final InputFileLocator inputFileLocator,
+            final SensorDiagnostics diagnostics, final Predicate<InputFile> isReplayed,
+            final ModuleIssuePartition partition, final int fileId, final Consumer<PendingIssue> sink)
     {
-        final StringBuilder detail = new StringBuilder();
-        detail.append("Line(s) ").append(occurrence.getStartLine()).append("-")
-                .append(occurrence.getStartLine() + occurrence.getBlockSize() - 1).append(" duplicate of ");
-
-        for (final IDuplicateCodeBlockOccurrence next : others)
+        final ISourceFile sourceFile = partition.getSourceFile(fileId);
+        final int start = partition.getStart(fileId);
+        final int end = partition.getEnd(fileId);
+        final InputFile inputPath = inputFileLocator.locate(sourceFile);
+        if (inputPath == null)
         {
-            detail.append(next.getSourceFile().getRelativePath() != null ? next.getSourceFile().getRelativePath()
-                    : next.getSourceFile().getPresentationName());
-            detail.append(" line(s) ").append(next.getStartLine());
-            detail.append("-").append(next.getStartLine() + next.getBlockSize() - 1);
+            commitPathResolutionMiss(inputFileLocator.getAbsolutePath(sourceFile), false, end - start);
+            diagnostics.add(SensorDiagnostics.Reason.SOURCE_FILE_NOT_FOUND, () -> "'" + sourceFile.getFqName()
+                    + "' at '" + inputFileLocator.getAbsolutePath(sourceFile) + "', " + (end - start) + " issue(s)");
+            return;
+        }
+        if (isReplayed.test(inputPath))
+        {
+            return;
         }
 
-        return createIssueDescription(moduleInfoProcessor, duplicateCodeBlockIssue, detail.toString());
-    }
-
-    private String createIssueDescription(final IInfoProcessor infoProcessor, final IIssue issue)
-    {
-        return createIssueDescription(infoProcessor, issue, "");
-    }
-
-    private void createSourceFileIssues(final SensorContext sensorContext,
-            final IModuleInfoProcessor moduleInfoProcessor, final ISourceFile sourceFile, final InputFile inputFile,
-            final IIssue issue, final ActiveRule rule)
-    {
-        if (issue instanceof IDuplicateCodeBlockIssue)
+        for (int i = start; i < end; i++)
         {
-            final IDuplicateCodeBlockIssue nextDuplicateCodeBlockIssue = (IDuplicateCodeBlockIssue) issue;
-            final List<IDuplicateCodeBlockOccurrence> nextOccurrences = nextDuplicateCodeBlockIssue.getOccurrences();
+            if (issueFactory.getRule(i) == null)
+            {
+                sink.accept(PendingIssue.withoutRule(partition.getIssueType(i), partition.getSeverity(i)));
+                continue;
+            }
 
-            for (final IDuplicateCodeBlockOccurrence nextOccurrence : nextOccurrences)
+            final PendingIssue pendingIssue;
+            try
             {
-                final ISourceFile nextSourceFileOfOccurence = nextOccurrence.getSourceFile();
-                final Optional<ISourceFile> nextOriginalLocationOpt = nextSourceFileOfOccurence.getOriginalLocation();
-                if (nextSourceFileOfOccurence.equals(sourceFile)
-                        || (nextOriginalLocationOpt.isPresent() && nextOriginalLocationOpt.get().equals(sourceFile)))
-                {
-                    final List<IDuplicateCodeBlockOccurrence> others = new ArrayList<>(nextOccurrences);
-                    others.remove(nextOccurrence);
-                    final String issueDescription = createIssueDescription(moduleInfoProcessor,
-                            nextDuplicateCodeBlockIssue, nextOccurrence, others);
-                    createSqIssue(sensorContext, inputFile, rule, issueDescription,
-                            location -> location.at(inputFile.newRange(nextOccurrence.getStartLine(), ZERO_LINE_OFFSET, nextOccurrence.getStartLine() + nextOccurrence.getBlockSize(),
-                                    ZERO_LINE_OFFSET)));
-                }
+                pendingIssue = partition.createSourceFileIssue(i, inputPath, inputFileLocator::locate, issueFactory);
             }
-        }
-        else
-        {
-            final String issueDescription = createIssueDescription(moduleInfoProcessor, issue);
-            createSqIssue(sensorContext, inputFile, rule, issueDescription, location ->
+            catch (final Exception e)
             {
-                final int line = issue.getLine();
-                final int lineToUse = line <= 0 ? 1 : line;
-                location.at(inputFile.newRange(lineToUse, ZERO_LINE_OFFSET, lineToUse+1, ZERO_LINE_OFFSET));
-            });
+                final int position = i;
+                diagnostics.add(SensorDiagnostics.Reason.ISSUE_CREATION_FAILED, () -> partition.describe(position),
+                        e);
+                continue;
+            }
+            sink.accept(pendingIssue);
         }
     }
 
-    private void addIssuesToSourceFile(final SensorContext sensorContext,
-            final IModuleInfoProcessor moduleInfoProcessor, final Map<String, ActiveRule> keyToRule,
-            final String baseDir, final ISourceFile sourceFile, final List<IIssue> issues)
+    private void addIssuesToDirectory(final PendingIssueFactory issueFactory, final SensorDiagnostics diagnostics,
+            final String baseDir, final ModuleIssuePartition partition, final int directoryIndex,
+            final Consumer<PendingIssue> sink)
     {
-        final String rootDirectoryRelPath = sourceFile.getRelativeRootDirectory();
-        final String sourceRelPath = sourceFile.getRelativePath();
-        final String sourceFileLocation = Paths.get(baseDir, rootDirectoryRelPath, sourceRelPath).toAbsolutePath()
+        final int fileId = partition.getDirectoryFileId(directoryIndex);
+        final int start = partition.getStart(fileId);
+        final int end = partition.getEnd(fileId);
+        final String directoryPath = Paths.get(baseDir, partition.getDirectory(directoryIndex)).toAbsolutePath()
                 .normalize().toString();
+        final InputDir inputDir = sqFileSystem.inputDir(new File(Utility.convertPathToUniversalForm(directoryPath)));
+        if (inputDir == null)
+        {
+            commitPathResolutionMiss(directoryPath, true, end - start);
+            diagnostics.add(SensorDiagnostics.Reason.DIRECTORY_NOT_FOUND,
+                    () -> "'" + directoryPath + "', " + (end - start) + " issue(s)");
+            return;
+        }
 
-        final InputFile inputPath = sqFileSystem.inputFile(
-                sqFileSystem.predicates().hasAbsolutePath(sourceFileLocation));
-        if (inputPath != null)
+        for (int i = start; i < end; i++)
         {
-            for (final IIssue issue : issues)
+            final ActiveRule nextRule = issueFactory.getRule(i);
+            if (nextRule == null)
             {
-                final String ruleKey = SonargraphBase.createRuleKeyToCheck(issue.getIssueType(), issue.getSeverity());
-                final ActiveRule nextRule = keyToRule.get(ruleKey);
-                if (nextRule != null)
-                {
-                    try
-                    {
-                        createSourceFileIssues(sensorContext, moduleInfoProcessor, sourceFile, inputPath, issue,
-                                nextRule);
-                    }
-                    catch (final Exception e)
-                    {
-                        LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to create issue '"
-                                + issue + "'. ", e);
-                    }
-                }
-                else
-                {
-                    createCustomRuleForIssue(issue);
-                }
+                sink.accept(PendingIssue.withoutRule(partition.getIssueType(i), partition.getSeverity(i)));
+                continue;
             }
-        }
-        else
-        {
-            LOGGER.error("{}: Failed to locate '{}' at '{}'", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
-                    sourceFile.getFqName(), sourceFileLocation);
+            sink.accept(new PendingIssue(nextRule, inputDir, partition.getMessage(i, "")));
         }
     }
 
-    private void addIssuesToDirectory(final SensorContext sensorContext, final IModuleInfoProcessor moduleInfoProcessor,
-            final Map<String, ActiveRule> keyToRule, final String baseDir, final String relDirectory,
-            final List<IIssue> issues)
+    private static void commitPathResolutionMiss(final String path, final boolean isDirectory, final int issueCount)
     {
-        final String directoryPath = Paths.get(baseDir, relDirectory).toAbsolutePath().normalize().toString();
-        final InputDir inputDir = sqFileSystem.inputDir(new File(Utility.convertPathToUniversalForm(directoryPath)));
-
-        if (inputDir != null)
-        {
-            for (final IIssue issue : issues)
-            {
-                final String ruleKey = SonargraphBase.createRuleKeyToCheck(issue.getIssueType(), issue.getSeverity());
-                final ActiveRule nextRule = keyToRule.get(ruleKey);
-                if (nextRule != null)
-                {
-                    try
-                    {
-                        createSqIssue(sensorContext, inputDir, nextRule,
-                                createIssueDescription(moduleInfoProcessor, issue), null);
-                    }
-                    catch (final Exception e)
-                    {
-                        LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to create issue '"
-                                + issue + "'. ", e);
-                    }
-                }
-                else
-                {
-                    createCustomRuleForIssue(issue);
-                }
-            }
-        }
-        else
+        final SonargraphEvents.PathResolutionMissEvent event = new SonargraphEvents.PathResolutionMissEvent();
+        if (event.isEnabled())
         {
-            LOGGER.error("{}: Failed to locate directory resource: '{}'\nBaseDir: {}\nrelDirectory:'{}'",
-                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, directoryPath, baseDir, relDirectory);
+            event.path = path;
+            event.directory = isDirectory;
+            event.issueCount = issueCount;
+            event.commit();
         }
     }
 
-    private void processSystemMetrics(final SensorContext sensorContext, final InputComponent inputComponent,
+    private void processSystemMetrics(final MetricValueStore metricValues, final int componentId,
             final ISoftwareSystem softwareSystem, final ISystemInfoProcessor systemInfoProcessor,
-            final ActiveRulesAndMetrics rulesAndMetrics)
+            final ActiveRulesAndMetrics rulesAndMetrics, final ProcessedElements processedElements)
     {
         final Optional<IMetricLevel> systemLevelOpt = systemInfoProcessor.getMetricLevel(IMetricLevel.SYSTEM);
         if (!systemLevelOpt.isPresent())
@@ -783,23 +1637,26 @@ public final class SonargraphSensor implements ProjectSensor
         }
 
         final IMetricLevel systemLevel = systemLevelOpt.get();
-        final SonargraphMetricsProvider customMetricsProvider = sgMetrics.getMetricsProvider();
+        final List<IMetricId> missingOnServer = new ArrayList<>();
+        final List<IMetricId> missingOnScanner = new ArrayList<>();
 
         for (final IMetricId nextMetricId : systemInfoProcessor.getMetricIdsForLevel(systemLevel))
         {
             final String metricKey = SonargraphBase.createMetricKeyFromStandardName(nextMetricId.getName());
-            final Metric<Serializable> metric = rulesAndMetrics.getMetrics().get(metricKey);
+            if (!processedElements.addSystemMetric(metricKey))
+            {
+                continue;
+            }
 
+            final Metric<Serializable> metric = rulesAndMetrics.getMetrics().get(metricKey);
             if (metric == null)
             {
-                customMetricsProvider.addCustomMetric(nextMetricId);
-                LOGGER.warn("{}: Custom metric added '{}'.", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
-                        nextMetricId.getName());
-                isUpdateOfServerCustomMetricsNeeded = true;
-                /**
-                 * Custom metric has now been added and needs to be persisted and loaded at SonarQube server startup. Only then, measures can be
-                 * saved. There is nothing left that can be done here and now.
-                 */
+                missingOnServer.add(nextMetricId);
+                continue;
+            }
+            if (!rulesAndMetrics.isAvailableOnScanner(metricKey))
+            {
+                missingOnScanner.add(nextMetricId);
                 continue;
             }
 
@@ -807,25 +1664,13 @@ public final class SonargraphSensor implements ProjectSensor
                     systemLevel, softwareSystem.getFqName());
             if (metricValueOpt.isPresent())
             {
-                try
+                if (nextMetricId.isFloat())
                 {
-                    /**
-                     * Throws UnsupportedOperationException, if custom metric is present on server side, but was not available at scanner start on
-                     * scanner side.
-                     */
-                    createSqMeasure(sensorContext, inputComponent, metric, metricValueOpt.get());
+                    metricValues.putDouble(metric, componentId, metricValueOpt.get().getValue().doubleValue());
                 }
-                catch (final UnsupportedOperationException e)
+                else
                 {
-                    customMetricsProvider.addCustomMetric(nextMetricId);
-                    LOGGER.warn("{}: Custom metric already existed on server but not on scanner side '{}'. ",
-                            SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, nextMetricId.getName());
-                    isUpdateOfScannerCustomMetricsNeeded = true;
-
-                    /**
-                     * Custom metric has now been added and needs to be persisted and loaded at SonarScanner startup. Only then, measures can be
-                     * saved. There is nothing left that can be done here and now.
-                     */
+                    metricValues.putInt(metric, componentId, metricValueOpt.get().getValue().intValue());
                 }
             }
             else
@@ -834,25 +1679,40 @@ public final class SonargraphSensor implements ProjectSensor
                         metricKey);
             }
         }
+
+        /**
+         * Custom metrics added here need to be persisted and loaded at SonarQube server startup (missing on server) or at SonarScanner startup
+         * (missing on scanner). Only then, measures can be saved. There is nothing left that can be done here and now.
+         */
+        if (!missingOnServer.isEmpty())
+        {
+            addCustomMetrics(missingOnServer);
+            LOGGER.warn("{}: {} custom metric(s) added: {}", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME,
+                    missingOnServer.size(), getMetricNames(missingOnServer));
+            isUpdateOfServerCustomMetricsNeeded = true;
+        }
+        if (!missingOnScanner.isEmpty())
+        {
+            addCustomMetrics(missingOnScanner);
+            LOGGER.warn("{}: {} custom metric(s) already existed on server but not on scanner side: {}",
+                    SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, missingOnScanner.size(),
+                    getMetricNames(missingOnScanner));
+            isUpdateOfScannerCustomMetricsNeeded = true;
+        }
     }
 
-    private void createSqIssue(final SensorContext sensorContext, final InputComponent inputComponent,
-            final ActiveRule rule, final String msg, final Consumer<NewIssueLocation> consumer)
+    private void addCustomMetrics(final List<IMetricId> metricIds)
     {
-        final NewIssue sonarqubeIssue = sensorContext.newIssue();
-        sonarqubeIssue.forRule(rule.ruleKey());
-
-        final NewIssueLocation sqIssueLoc = sonarqubeIssue.newLocation();
-        sqIssueLoc.on(inputComponent);
-        sqIssueLoc.message(msg);
-        sonarqubeIssue.at(sqIssueLoc);
-
-        if (consumer != null)
+        final SonargraphMetricsProvider customMetricsProvider = sgMetrics.getMetricsProvider();
+        for (final IMetricId nextMetricId : metricIds)
         {
-            consumer.accept(sqIssueLoc);
+            customMetricsProvider.addCustomMetric(nextMetricId);
         }
+    }
 
-        sonarqubeIssue.save();
+    private static String getMetricNames(final List<IMetricId> metricIds)
+    {
+        return metricIds.stream().map(IMetricId::getName).collect(Collectors.joining(", "));
     }
 
     private ActiveRulesAndMetrics createActiveRulesAndMetrics(final SensorContext sensorContext)
@@ -884,28 +1744,12 @@ public final class SonargraphSensor implements ProjectSensor
                 .collect(Collectors.toMap(Metric::key, m -> m));
         LOGGER.info("{}: {} metric(s) defined", SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME, metrics.size());
 
-        return new ActiveRulesAndMetrics(languageToActiveRules, metrics);
-    }
-
-    @SuppressWarnings("unchecked")
-    private void createSqMeasure(final SensorContext sensorContext, final InputComponent inputComponent,
-            final Metric<? extends Serializable> metric, final IMetricValue metricValue)
-    {
-        if (metricValue.getId().isFloat())
+        final Set<String> scannerMetricKeys = new HashSet<>();
+        for (final org.sonar.api.measures.Metric<?> nextMetric : sgMetrics.getMetrics())
         {
-            final NewMeasure<Double> sqMeasure = sensorContext.<Double> newMeasure();
-            sqMeasure.forMetric((Metric<Double>) metric);
-            sqMeasure.on(inputComponent);
-            sqMeasure.withValue(Double.valueOf(metricValue.getValue().doubleValue()));
-            sqMeasure.save();
-        }
-        else
-        {
-            final NewMeasure<Integer> sqMeasure = sensorContext.<Integer> newMeasure();
-            sqMeasure.forMetric((Metric<Integer>) metric);
-            sqMeasure.on(inputComponent);
-            sqMeasure.withValue(Integer.valueOf(metricValue.getValue().intValue()));
-            sqMeasure.save();
+            scannerMetricKeys.add(nextMetric.getKey());
         }
+
+        return new ActiveRulesAndMetrics(languageToActiveRules, metrics, scannerMetricKeys);
     }
 }
\ No newline at end of file
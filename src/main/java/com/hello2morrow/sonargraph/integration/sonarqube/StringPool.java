@@ -0,0 +1,49 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares equal strings that are retained, e.g. the message fragments of the module issue partitions of an analysis and the paths and
+ * messages of an issue index. The pool can be used concurrently.
+ */
+final class StringPool
+{
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+
+    /**
+     * @return The shared instance equal to the given value
+     */
+    String share(final String value)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+
+        final String existing = strings.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    int size()
+    {
+        return strings.size();
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
+import com.hello2morrow.sonargraph.integration.access.model.ISoftwareSystem;
+
+/**
+ * Sorts the issues of a Sonargraph system into the ones to be created on the SonarQube project, the ignored system setup problems that
+ * are only logged and the ones to be skipped (including the ones not selected by the user). The category related checks are done only once
+ * per issue type.
+ */
+final class SystemIssueClassifier
+{
+    enum Classification
+    {
+        EMIT,
+        IGNORED_SETUP_PROBLEM,
+        SKIP
+    }
+
+    private static final class IssueTypeInfo
+    {
+        private final boolean isQualityGate;
+        private final boolean isIgnored;
+        private final boolean isIgnoredErrorOrWarning;
+
+        IssueTypeInfo(final IIssueType issueType)
+        {
+            isQualityGate = SonargraphBase.QUALITY_GATE_ISSUE_CATEGORY.equals(issueType.getCategory().getName());
+            isIgnored = SonargraphBase.ignoreIssueType(issueType);
+            isIgnoredErrorOrWarning = SonargraphBase.isIgnoredErrorOrWarningIssue(issueType);
+        }
+    }
+
+    private final ISoftwareSystem softwareSystem;
+    private final IssueSelection issueSelection;
+    private final Map<IIssueType, IssueTypeInfo> issueTypeInfos = new HashMap<>();
+
+    SystemIssueClassifier(final ISoftwareSystem softwareSystem, final IssueSelection issueSelection)
+    {
+        this.softwareSystem = softwareSystem;
+        this.issueSelection = issueSelection;
+    }
+
+    Classification classify(final IIssue issue)
+    {
+        final IssueTypeInfo issueTypeInfo = issueTypeInfos.computeIfAbsent(issue.getIssueType(), IssueTypeInfo::new);
+        if (issueTypeInfo.isIgnoredErrorOrWarning)
+        {
+            return Classification.IGNORED_SETUP_PROBLEM;
+        }
+        if (!issueSelection.isSelected(issue))
+        {
+            return Classification.SKIP;
+        }
+        if (issueTypeInfo.isQualityGate && !issue.isIgnored())
+        {
+            return Classification.EMIT;
+        }
+        if (!issueTypeInfo.isIgnored && issue.getAffectedNamedElements().contains(softwareSystem))
+        {
+            return Classification.EMIT;
+        }
+        return Classification.SKIP;
+    }
+}
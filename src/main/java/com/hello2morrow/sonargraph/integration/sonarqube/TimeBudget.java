@@ -0,0 +1,90 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+import org.sonar.api.batch.sensor.SensorContext;
+
+/**
+ * Bounds the time the sensor may run. The loops of the sensor check {@link #isExhausted()} at their checkpoints and stop when the budget
+ * is used up or the analysis has been cancelled. Once exhausted, the budget stays exhausted.
+ */
+final class TimeBudget
+{
+    private final long budgetSeconds;
+    private final long deadlineNanos;
+    private final LongSupplier nanoClock;
+    private final BooleanSupplier isCancelled;
+    private volatile String exhaustedReason;
+
+    /** Test support */
+    TimeBudget(final long budgetSeconds, final LongSupplier nanoClock, final BooleanSupplier isCancelled)
+    {
+        this.budgetSeconds = budgetSeconds;
+        this.nanoClock = nanoClock;
+        this.isCancelled = isCancelled;
+        this.deadlineNanos = nanoClock.getAsLong() + TimeUnit.SECONDS.toNanos(budgetSeconds);
+    }
+
+    /**
+     * @return The budget configured for the analysis, a value &lt;= 0 means no time limit
+     */
+    static TimeBudget create(final SensorContext sensorContext)
+    {
+        final long budgetSeconds = sensorContext.config().getLong(SonargraphBase.TIME_BUDGET_KEY).orElse(0L);
+        return new TimeBudget(budgetSeconds, System::nanoTime, sensorContext::isCancelled);
+    }
+
+    boolean isLimited()
+    {
+        return budgetSeconds > 0;
+    }
+
+    long getBudgetSeconds()
+    {
+        return budgetSeconds;
+    }
+
+    boolean isExhausted()
+    {
+        if (exhaustedReason != null)
+        {
+            return true;
+        }
+        if (isCancelled.getAsBoolean())
+        {
+            exhaustedReason = "Analysis has been cancelled";
+        }
+        else if (isLimited() && nanoClock.getAsLong() - deadlineNanos >= 0)
+        {
+            exhaustedReason = "Time budget of " + budgetSeconds + "s has been exceeded";
+        }
+        return exhaustedReason != null;
+    }
+
+    /**
+     * @return The reason why the budget is exhausted, or null if it is not
+     */
+    String getExhaustedReason()
+    {
+        return exhaustedReason;
+    }
+}
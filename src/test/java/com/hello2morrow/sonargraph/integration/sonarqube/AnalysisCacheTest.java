@@ -0,0 +1,99 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.config.internal.MapSettings;
+
+public final class AnalysisCacheTest
+{
+    private static final String REPORT = "./src/test/report/IntegrationSonarqube.xml";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testDigest() throws IOException
+    {
+        final List<File> reportFiles = Collections.singletonList(new File(REPORT));
+        final List<String> ruleKeys = Arrays.asList("ARCHITECTURE_VIOLATION", "THRESHOLD_VIOLATION");
+        final List<String> projectFiles = Arrays.asList("src/A.java", "src/B.java");
+        final Configuration config = new MapSettings().asConfig();
+
+        final String digest = AnalysisCache.computeDigest(reportFiles, SonargraphBase.JAVA, ruleKeys, projectFiles,
+                config);
+        final List<String> reorderedRuleKeys = Arrays.asList(ruleKeys.get(1), ruleKeys.get(0));
+        assertEquals("Digest must not depend on the order of the rules", digest, AnalysisCache
+                .computeDigest(reportFiles, SonargraphBase.JAVA, reorderedRuleKeys, projectFiles, config));
+        assertNotEquals("Digest must depend on the rules", digest, AnalysisCache.computeDigest(reportFiles,
+                SonargraphBase.JAVA, ruleKeys.subList(0, 1), projectFiles, config));
+
+        final List<String> reorderedProjectFiles = Arrays.asList(projectFiles.get(1), projectFiles.get(0));
+        assertEquals("Digest must not depend on the order of the project files", digest, AnalysisCache
+                .computeDigest(reportFiles, SonargraphBase.JAVA, ruleKeys, reorderedProjectFiles, config));
+        assertNotEquals("Digest must depend on the project files", digest, AnalysisCache.computeDigest(reportFiles,
+                SonargraphBase.JAVA, ruleKeys, projectFiles.subList(0, 1), config));
+
+        final MapSettings settings = new MapSettings();
+        settings.setProperty(SonargraphBase.ISSUE_SEVERITIES_EXCLUDE_KEY, "Info");
+        assertNotEquals("Digest must depend on the issue selection", digest, AnalysisCache.computeDigest(reportFiles,
+                SonargraphBase.JAVA, ruleKeys, projectFiles, settings.asConfig()));
+    }
+
+    @Test
+    public void testStoreAndLoad()
+    {
+        final AnalysisCache cache = new AnalysisCache(new File(tempFolder.getRoot(), "cache"));
+        assertNull("Empty cache expected", cache.load("digest"));
+
+        final IssueIndex issueIndex = new IssueIndex();
+        issueIndex.add("src/A.java", "hash", new IssueIndex.Entry("repository:rule", 1, 2, "message"));
+        cache.store("digest", issueIndex);
+
+        final IssueIndex loaded = cache.load("digest");
+        assertNotNull("Cache entry expected", loaded);
+        assertEquals("Wrong number of issues", 1, loaded.size());
+        assertEquals("Wrong hash", "hash", loaded.getHash("src/A.java"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedAreRemoved()
+    {
+        final AnalysisCache cache = new AnalysisCache(new File(tempFolder.getRoot(), "cache"));
+        for (int i = 0; i <= AnalysisCache.MAX_CACHED_REPORTS; i++)
+        {
+            cache.store("digest" + i, new IssueIndex());
+        }
+        assertEquals("Wrong number of cache entries", AnalysisCache.MAX_CACHED_REPORTS,
+                cache.getDirectory().listFiles().length);
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public final class BlockingExecutorTest
+{
+    private static void checkConcurrencyLimit(final boolean useVirtualThreads)
+    {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 30; i++)
+        {
+            items.add(Integer.valueOf(i));
+        }
+
+        try (BlockingExecutor executor = new BlockingExecutor("Test", useVirtualThreads, 3))
+        {
+            executor.forEach(items, item ->
+            {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try
+                {
+                    TimeUnit.MILLISECONDS.sleep(5);
+                }
+                catch (final InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            });
+        }
+        assertTrue("Concurrency limit exceeded: " + maxRunning.get(), maxRunning.get() <= 3);
+        assertEquals("All items must be processed", 0, running.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrencyLimitOfPlatformThreads()
+    {
+        checkConcurrencyLimit(false);
+    }
+
+    /**
+     * Runs on virtual threads on Java 21 or later, on platform threads otherwise.
+     */
+    @Test(timeout = 10000)
+    public void testConcurrencyLimitOfVirtualThreads()
+    {
+        checkConcurrencyLimit(true);
+    }
+
+    @Test
+    public void testDefaultConcurrencyLimit()
+    {
+        try (BlockingExecutor executor = new BlockingExecutor("Test", false, 0))
+        {
+            assertEquals("Wrong default for platform threads", BlockingExecutor.DEFAULT_PLATFORM_CONCURRENCY_LIMIT,
+                    executor.getConcurrencyLimit());
+        }
+        try (BlockingExecutor executor = new BlockingExecutor("Test", true, 0))
+        {
+            assertEquals("Wrong default", executor.isVirtual() ? BlockingExecutor.DEFAULT_VIRTUAL_CONCURRENCY_LIMIT
+                    : BlockingExecutor.DEFAULT_PLATFORM_CONCURRENCY_LIMIT, executor.getConcurrencyLimit());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFailureIsPropagated()
+    {
+        final RuntimeException failure = new RuntimeException("Item failed");
+        try (BlockingExecutor executor = new BlockingExecutor("Test", true, 2))
+        {
+            executor.forEach(Arrays.asList("a", "b", "c"), item ->
+            {
+                if ("b".equals(item))
+                {
+                    throw failure;
+                }
+            });
+            fail("Exception expected");
+        }
+        catch (final IllegalStateException e)
+        {
+            assertSame("Wrong cause", failure, e.getCause());
+        }
+    }
+}
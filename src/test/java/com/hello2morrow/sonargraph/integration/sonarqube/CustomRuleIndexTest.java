@@ -0,0 +1,142 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class CustomRuleIndexTest
+{
+    private static final String WARNING_KEY = "script_test.xml_typeissue_warning";
+    private static final String WARNING_VALUE = "Sonargraph Integration: TypeIssue (./Test.xml)|ScriptBased|script-based,typeissue,test.xml|MINOR|Description 'TypeIssue', category 'Script Based'";
+    private static final String ERROR_KEY = "script_test.xml_typeissue_error";
+    private static final String ERROR_VALUE = WARNING_VALUE.replace("|MINOR|", "|MAJOR|");
+    private static final String PLUGIN_KEY = "plugin_com.hello2morrow.sonargraph.plugin.spotbugs_spotbugs-warning_warning";
+    private static final String PLUGIN_VALUE = "Sonargraph Integration: Spotbugs warning (com.hello2morrow.sonargraph.plugin.spotbugs)|PluginBased|plugin-based,spotbugs-warning,com.hello2morrow.sonargraph.plugin.spotbugs|MINOR|Description 'Spotbugs warning', category 'Plugin Based'";
+
+    private static final String PROJECT = "project";
+    private static final String OTHER_PROJECT = "otherProject";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndRead() throws IOException
+    {
+        final CustomRuleIndex index = new CustomRuleIndex();
+        index.put(PROJECT, WARNING_KEY, WARNING_VALUE);
+        index.put(PROJECT, PLUGIN_KEY, PLUGIN_VALUE);
+        index.put(PROJECT, ERROR_KEY, ERROR_VALUE);
+        index.put(PROJECT, "invalid", "no separators");
+        index.completeAnalysis(PROJECT, 0);
+
+        final File file = new File(tempFolder.getRoot(), CustomRuleIndex.FILE_NAME);
+        index.write(file);
+        assertEquals("Invalid rule must be dropped", 3, index.size());
+
+        final CustomRuleIndex read = CustomRuleIndex.read(file);
+        assertEquals("Wrong current analysis", 2, read.getCurrentAnalysis(PROJECT));
+        final Properties properties = new SortedProperties();
+        read.copyTo(properties);
+        assertEquals("Wrong rules", Arrays.asList(PLUGIN_KEY, ERROR_KEY, WARNING_KEY),
+                Arrays.asList(properties.keySet().stream().map(Object::toString).sorted().toArray()));
+        assertEquals("Wrong value", WARNING_VALUE, properties.getProperty(WARNING_KEY));
+        assertEquals("Wrong value", ERROR_VALUE, properties.getProperty(ERROR_KEY));
+        assertEquals("Wrong value", PLUGIN_VALUE, properties.getProperty(PLUGIN_KEY));
+        final File[] tempFiles = tempFolder.getRoot().listFiles((dir, name) -> name.endsWith(".tmp"));
+        assertEquals("Temporary file must be removed", 0, tempFiles.length);
+    }
+
+    @Test
+    public void testDropUnseenRules() throws IOException
+    {
+        final CustomRuleIndex index = new CustomRuleIndex();
+        index.put(PROJECT, WARNING_KEY, WARNING_VALUE);
+        index.put(PROJECT, ERROR_KEY, ERROR_VALUE);
+        assertEquals("No rule expected to be dropped", 0, index.completeAnalysis(PROJECT, 2));
+
+        index.markSeen(PROJECT, WARNING_KEY);
+        assertEquals("No rule expected to be dropped", 0, index.completeAnalysis(PROJECT, 2));
+
+        //The last seen analyses survive writing and reading
+        final File file = new File(tempFolder.getRoot(), CustomRuleIndex.FILE_NAME);
+        index.write(file);
+        final CustomRuleIndex read = CustomRuleIndex.read(file);
+        assertEquals("Rule not seen for 2 analyses expected to be dropped", 1, read.completeAnalysis(PROJECT, 2));
+        final Properties properties = new Properties();
+        read.copyTo(properties);
+        assertEquals("Wrong remaining rule", WARNING_VALUE, properties.getProperty(WARNING_KEY));
+    }
+
+    @Test
+    public void testUpdateFromProperties()
+    {
+        final CustomRuleIndex index = new CustomRuleIndex();
+        index.put(PROJECT, WARNING_KEY, WARNING_VALUE);
+        index.completeAnalysis(PROJECT, 0);
+
+        final Properties properties = new Properties();
+        properties.setProperty(WARNING_KEY, WARNING_VALUE);
+        properties.setProperty(PLUGIN_KEY, PLUGIN_VALUE);
+        final CustomRuleIndex updated = index.update(properties);
+        assertEquals("Wrong number of rules", 2, updated.size());
+        assertEquals("Wrong current analysis", 2, updated.getCurrentAnalysis(PROJECT));
+
+        //The rule only known from the properties has never been seen
+        assertEquals("Wrong number of dropped rules", 1, updated.completeAnalysis(PROJECT, 2));
+    }
+
+    @Test
+    public void testAnalysesAreCountedPerProject() throws IOException
+    {
+        final CustomRuleIndex index = new CustomRuleIndex();
+        index.put(PROJECT, WARNING_KEY, WARNING_VALUE);
+        index.put(OTHER_PROJECT, PLUGIN_KEY, PLUGIN_VALUE);
+        index.markSeen(OTHER_PROJECT, WARNING_KEY);
+        assertEquals("No rule expected to be dropped", 0, index.completeAnalysis(PROJECT, 2));
+        assertEquals("No rule expected to be dropped", 0, index.completeAnalysis(OTHER_PROJECT, 2));
+
+        //Analyses of the other project do not count for the rule only the project has seen
+        for (int i = 0; i < 3; i++)
+        {
+            index.markSeen(OTHER_PROJECT, PLUGIN_KEY);
+            assertEquals("No rule expected to be dropped", 0, index.completeAnalysis(OTHER_PROJECT, 2));
+        }
+        assertEquals("Wrong current analysis", 5, index.getCurrentAnalysis(OTHER_PROJECT));
+
+        final File file = new File(tempFolder.getRoot(), CustomRuleIndex.FILE_NAME);
+        index.write(file);
+        final CustomRuleIndex read = CustomRuleIndex.read(file);
+        assertEquals("Wrong current analysis", 2, read.getCurrentAnalysis(PROJECT));
+
+        //The warning rule has not been seen by either project in their last 2 analyses, the plugin rule only by the project
+        assertEquals("No rule expected to be dropped", 0, read.completeAnalysis(PROJECT, 2));
+        assertEquals("Rule unseen by all projects expected to be dropped", 1, read.completeAnalysis(PROJECT, 2));
+        final Properties properties = new Properties();
+        read.copyTo(properties);
+        assertEquals("Wrong remaining rule", PLUGIN_VALUE, properties.getProperty(PLUGIN_KEY));
+    }
+}
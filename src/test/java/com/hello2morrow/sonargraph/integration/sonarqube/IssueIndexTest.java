@@ -0,0 +1,134 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+
+public final class IssueIndexTest
+{
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testEscape()
+    {
+        final String message = "a\tb\nc\\d\re";
+        assertEquals("Wrong escaping", "a\\tb\\nc\\\\d\\re", IssueIndex.escape(message));
+        assertEquals("Wrong unescaping", message, IssueIndex.unescape(IssueIndex.escape(message)));
+    }
+
+    @Test
+    public void testCreateKey()
+    {
+        final File baseDir = tempFolder.getRoot();
+        final InputFile inputFile = TestInputFileBuilder.create("projectKey", baseDir, new File(baseDir, "src/A.java"))
+                .build();
+        assertEquals("Wrong key", "src/A.java", IssueIndex.createKey(baseDir, inputFile));
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException
+    {
+        final IssueIndex index = new IssueIndex();
+        index.add("src/B.java", null, new IssueIndex.Entry("sonargraphintegration_java:CycleGroup", 0, 0,
+                "Cycle\tgroup", Arrays.asList(new IssueIndex.Location("src/A.java", 0, 0, "Part of cycle group"),
+                        new IssueIndex.Location("src/C.java", 5, 6, ""))));
+        index.add("src/A.java", "a-hash", new IssueIndex.Entry("sonargraphintegration_java:ArchitectureViolation", 3,
+                4, "Violation\nof architecture"));
+        index.add("src/A.java", "a-hash",
+                new IssueIndex.Entry("sonargraphintegration_java:ThresholdViolation", 10, 11, ""));
+
+        final File file = new File(tempFolder.getRoot(), "index/sonargraph-issues.idx");
+        index.write(file);
+
+        final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals("Wrong header", IssueIndex.HEADER, lines.get(0));
+        assertEquals("Paths must be sorted", "src/A.java\ta-hash", lines.get(1));
+
+        final IssueIndex read = IssueIndex.read(file);
+        assertEquals("Wrong number of issues", 3, read.size());
+        assertEquals("Wrong number of files", 2, read.getNumberOfFiles());
+
+        final List<IssueIndex.Entry> entries = read.get("src/A.java");
+        assertEquals("Wrong number of issues for file", 2, entries.size());
+        assertEquals("Wrong rule key", "sonargraphintegration_java:ArchitectureViolation", entries.get(0).getRuleKey());
+        assertEquals("Wrong start line", 3, entries.get(0).getStartLine());
+        assertEquals("Wrong end line", 4, entries.get(0).getEndLine());
+        assertEquals("Wrong message", "Violation\nof architecture", entries.get(0).getMessage());
+        assertEquals("Wrong message", "", entries.get(1).getMessage());
+        assertEquals("Wrong hash", "a-hash", read.getHash("src/A.java"));
+        assertNull("No hash expected", read.getHash("src/B.java"));
+
+        final IssueIndex.Entry cycleGroup = read.get("src/B.java").get(0);
+        assertEquals("Wrong message", "Cycle\tgroup", cycleGroup.getMessage());
+        assertEquals("Wrong number of secondary locations", 2, cycleGroup.getSecondaryLocations().size());
+        final IssueIndex.Location secondary = cycleGroup.getSecondaryLocations().get(1);
+        assertEquals("Wrong path", "src/C.java", secondary.getPath());
+        assertEquals("Wrong start line", 5, secondary.getStartLine());
+        assertEquals("Wrong end line", 6, secondary.getEndLine());
+        assertEquals("Wrong message", "", secondary.getMessage());
+        assertTrue("No issues expected", read.get("src/C.java").isEmpty());
+        assertTrue("Cached index expected", IssueIndex.load(file) == IssueIndex.load(file));
+    }
+
+    @Test
+    public void testReadSharesStrings() throws IOException
+    {
+        final IssueIndex index = new IssueIndex();
+        index.add("src/A.java", null, new IssueIndex.Entry("repository:CycleGroup", 0, 0, "Cycle group",
+                Arrays.asList(new IssueIndex.Location("src/C.java", 0, 0, "Part of cycle group"))));
+        index.add("src/B.java", null, new IssueIndex.Entry("repository:CycleGroup", 0, 0, "Cycle group",
+                Arrays.asList(new IssueIndex.Location("src/C.java", 0, 0, "Part of cycle group"))));
+        final File file = new File(tempFolder.getRoot(), "shared.idx");
+        index.write(file);
+
+        final IssueIndex read = IssueIndex.read(file);
+        final IssueIndex.Entry a = read.get("src/A.java").get(0);
+        final IssueIndex.Entry b = read.get("src/B.java").get(0);
+        assertSame("Rule key not shared", a.getRuleKey(), b.getRuleKey());
+        assertSame("Message not shared", a.getMessage(), b.getMessage());
+        assertSame("Path not shared", a.getSecondaryLocations().get(0).getPath(),
+                b.getSecondaryLocations().get(0).getPath());
+        assertSame("Location message not shared", a.getSecondaryLocations().get(0).getMessage(),
+                b.getSecondaryLocations().get(0).getMessage());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadInvalidIndex() throws IOException
+    {
+        final File file = tempFolder.newFile("invalid.idx");
+        Files.write(file.toPath(), "no index".getBytes(StandardCharsets.UTF_8));
+        IssueIndex.read(file);
+    }
+}
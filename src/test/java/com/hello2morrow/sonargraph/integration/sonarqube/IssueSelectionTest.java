@@ -0,0 +1,122 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+import org.sonar.api.config.internal.MapSettings;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ControllerFactory;
+import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
+import com.hello2morrow.sonargraph.integration.access.foundation.Result;
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueCategory;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueProvider;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
+import com.hello2morrow.sonargraph.integration.access.model.Severity;
+
+public final class IssueSelectionTest
+{
+    @Test
+    public void testSelectingAll()
+    {
+        final IssueSelection selection = IssueSelection.create(new MapSettings().asConfig());
+        assertTrue(selection.isSelectingAll());
+        assertTrue(selection.isSelected("Core"));
+    }
+
+    @Test
+    public void testModules()
+    {
+        final MapSettings settings = new MapSettings();
+        settings.setProperty(SonargraphBase.MODULES_INCLUDE_KEY, "Core*, Foundation");
+        settings.setProperty(SonargraphBase.MODULES_EXCLUDE_KEY, "*Test");
+        final IssueSelection selection = IssueSelection.create(settings.asConfig());
+
+        assertFalse(selection.isSelectingAll());
+        assertTrue(selection.isSelected("Core"));
+        assertTrue(selection.isSelected("core.api"));
+        assertTrue(selection.isSelected("Foundation"));
+        assertFalse(selection.isSelected("CoreTest"));
+        assertFalse(selection.isSelected("Foundation2"));
+        assertFalse(selection.isSelected("Shared"));
+    }
+
+    @Test
+    public void testCategoriesAndSeverities()
+    {
+        final ISonargraphSystemController controller = ControllerFactory.createController();
+        final Result result = controller.loadSystemReport(new File("./src/test/report/IntegrationSonarqube.xml"));
+        assertTrue("Failed to load report", result.isSuccess());
+        final List<IIssue> issues = controller.createSystemInfoProcessor().getIssues(issue -> true);
+
+        final MapSettings settings = new MapSettings();
+        settings.setProperty(SonargraphBase.ISSUE_CATEGORIES_INCLUDE_KEY, "Threshold Violation");
+        final IssueSelection categorySelection = IssueSelection.create(settings.asConfig());
+        settings.setProperty(SonargraphBase.ISSUE_SEVERITIES_EXCLUDE_KEY, "error");
+        final IssueSelection categoryAndSeveritySelection = IssueSelection.create(settings.asConfig());
+
+        int selected = 0;
+        for (final IIssue nextIssue : issues)
+        {
+            final boolean isThresholdViolation = "ThresholdViolation"
+                    .equals(nextIssue.getIssueType().getCategory().getName());
+            assertEquals("Wrong selection of '" + nextIssue.getPresentationName() + "'", isThresholdViolation,
+                    categorySelection.isSelected(nextIssue));
+            assertEquals("Wrong selection of '" + nextIssue.getPresentationName() + "'",
+                    isThresholdViolation && nextIssue.getSeverity() != Severity.ERROR,
+                    categoryAndSeveritySelection.isSelected(nextIssue));
+            if (isThresholdViolation)
+            {
+                selected++;
+            }
+        }
+        assertTrue("No threshold violations selected", selected > 0);
+    }
+
+    @Test
+    public void testProvidersOfIssuesOfTheSameType()
+    {
+        final ModelProxies proxies = new ModelProxies();
+        final IIssueCategory category = proxies.create(IIssueCategory.class, "getName", "Script",
+                "getPresentationName", "Script");
+        final IIssueType issueType = proxies.create(IIssueType.class, "getName", "ScriptIssue", "getCategory",
+                category);
+        final IIssueProvider included = proxies.create(IIssueProvider.class, "getName", "./Scripts/Included.scr",
+                "getPresentationName", "Included");
+        final IIssueProvider excluded = proxies.create(IIssueProvider.class, "getName", "./Scripts/Excluded.scr",
+                "getPresentationName", "Excluded");
+
+        final MapSettings settings = new MapSettings();
+        settings.setProperty(SonargraphBase.ISSUE_PROVIDERS_EXCLUDE_KEY, "Excluded");
+        final IssueSelection selection = IssueSelection.create(settings.asConfig());
+
+        assertTrue(selection.isSelected(proxies.create(IIssue.class, "getIssueType", issueType, "getSeverity",
+                Severity.WARNING, "getIssueProvider", included)));
+        assertFalse(selection.isSelected(proxies.create(IIssue.class, "getIssueType", issueType, "getSeverity",
+                Severity.WARNING, "getIssueProvider", excluded)));
+        assertTrue(selection.isSelected(proxies.create(IIssue.class, "getIssueType", issueType, "getSeverity",
+                Severity.ERROR, "getIssueProvider", included)));
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+
+public final class LineRangeValidatorTest
+{
+    @Test
+    public void testCreateRange()
+    {
+        //4 lines, the last one is empty
+        final InputFile inputFile = TestInputFileBuilder.create("projectKey", "src/main/java/A.java")
+                .initMetadata("line 1\nline 2\nline 3\n").build();
+        final LineRangeValidator validator = new LineRangeValidator();
+
+        final TextRange valid = validator.createRange(inputFile, 1, 3);
+        assertEquals(1, valid.start().line());
+        assertEquals(3, valid.end().line());
+
+        final TextRange single = validator.createRange(inputFile, 3, 3);
+        assertEquals(3, single.start().line());
+        assertEquals(4, single.end().line());
+        assertEquals(0, validator.getClampedRanges());
+        assertEquals(0, validator.getDroppedRanges());
+
+        final TextRange clamped = validator.createRange(inputFile, 2, 10);
+        assertEquals(2, clamped.start().line());
+        assertEquals(4, clamped.end().line());
+        assertEquals(1, validator.getClampedRanges());
+
+        final TextRange lastLine = validator.createRange(inputFile, 4, 5);
+        assertEquals(4, lastLine.start().line());
+        assertEquals(4, lastLine.end().line());
+        assertNull(validator.createRange(inputFile, 12, 13));
+        assertNull(validator.createRange(inputFile, 0, 1));
+        assertEquals(1, validator.getClampedRanges());
+        assertEquals(2, validator.getDroppedRanges());
+    }
+
+    @Test
+    public void testCreateRangeWithoutTrailingNewline()
+    {
+        //3 lines, the last one has content
+        final InputFile inputFile = TestInputFileBuilder.create("projectKey", "src/main/java/A.java")
+                .initMetadata("line 1\nline 2\nline 3").build();
+        final LineRangeValidator validator = new LineRangeValidator();
+
+        final TextRange lastLine = validator.createRange(inputFile, 3, 4);
+        assertEquals(3, lastLine.start().line());
+        assertEquals(0, lastLine.start().lineOffset());
+        assertEquals(3, lastLine.end().line());
+        assertEquals(6, lastLine.end().lineOffset());
+
+        //Duplicate code block of 2 lines ending at the end of the file
+        final TextRange block = validator.createRange(inputFile, 2, 4);
+        assertEquals(2, block.start().line());
+        assertEquals(3, block.end().line());
+        assertEquals(6, block.end().lineOffset());
+        assertEquals(0, validator.getClampedRanges());
+        assertEquals(0, validator.getDroppedRanges());
+
+        final TextRange clamped = validator.createRange(inputFile, 2, 8);
+        assertEquals(3, clamped.end().line());
+        assertEquals(6, clamped.end().lineOffset());
+        assertEquals(1, validator.getClampedRanges());
+
+        assertNull(validator.createRange(inputFile, 4, 5));
+        assertEquals(1, validator.getDroppedRanges());
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.measure.Measure;
+import org.sonar.api.measures.Metric;
+
+public final class MetricValueStoreTest
+{
+    private static final Metric<Integer> INT_METRIC = new Metric.Builder("sg_i.TEST_INT", "Test Int", Metric.ValueType.INT)
+            .create();
+    private static final Metric<Double> FLOAT_METRIC = new Metric.Builder("sg_i.TEST_FLOAT", "Test Float",
+            Metric.ValueType.FLOAT).create();
+
+    @Test
+    public void testPutAndGet()
+    {
+        final SensorContextTester context = SensorContextTester.create(new File("."));
+        final MetricValueStore store = new MetricValueStore();
+        final int projectId = store.getComponentId(context.project());
+        assertEquals(projectId, store.getComponentId(context.project()));
+
+        assertFalse(store.contains(INT_METRIC.key(), projectId));
+        store.putInt(INT_METRIC, projectId, 42);
+        store.put(FLOAT_METRIC, projectId, true, 0.5);
+        assertTrue(store.contains(INT_METRIC.key(), projectId));
+        assertEquals(42, store.getInt(INT_METRIC.key(), projectId));
+        assertEquals(0.5, store.getDouble(FLOAT_METRIC.key(), projectId), 0.0);
+
+        store.putInt(INT_METRIC, projectId, 43);
+        assertEquals("Overwritten value must not be counted twice", 2, store.size());
+    }
+
+    @Test
+    public void testSave()
+    {
+        final SensorContextTester context = SensorContextTester.create(new File("."));
+        final MetricValueStore store = new MetricValueStore();
+        final int projectId = store.getComponentId(context.project());
+        store.put(INT_METRIC, projectId, false, 7.0);
+        store.putDouble(FLOAT_METRIC, projectId, 1.25);
+        store.save(context);
+
+        final Measure<Integer> intMeasure = context.measure(context.project().key(), INT_METRIC.key());
+        assertEquals(Integer.valueOf(7), intMeasure.value());
+        final Measure<Double> floatMeasure = context.measure(context.project().key(), FLOAT_METRIC.key());
+        assertEquals(Double.valueOf(1.25), floatMeasure.value());
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates instances of the Sonargraph model interfaces for tests that need a controlled model instead of a report. Each method returns
+ * the value given for its name, primitive results default to 0 or false, other results to null. Instances are equal by identity only.
+ */
+final class ModelProxies
+{
+    private final Map<String, AtomicInteger> calls = new HashMap<>();
+
+    /**
+     * @param methodsAndResults Method names followed by the value returned by the method
+     */
+    <T> T create(final Class<T> type, final Object... methodsAndResults)
+    {
+        final Map<String, Object> results = new HashMap<>();
+        for (int i = 0; i < methodsAndResults.length; i += 2)
+        {
+            results.put((String) methodsAndResults[i], methodsAndResults[i + 1]);
+        }
+        final Object instance = Proxy.newProxyInstance(ModelProxies.class.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) ->
+                {
+                    switch (method.getName())
+                    {
+                    case "equals":
+                        return Boolean.valueOf(proxy == args[0]);
+                    case "hashCode":
+                        return Integer.valueOf(System.identityHashCode(proxy));
+                    case "toString":
+                        return type.getSimpleName() + results;
+                    default:
+                        break;
+                    }
+                    synchronized (calls)
+                    {
+                        calls.computeIfAbsent(method.getName(), k -> new AtomicInteger()).incrementAndGet();
+                    }
+                    final Object result = results.get(method.getName());
+                    if (result == null && method.getReturnType() == boolean.class)
+                    {
+                        return Boolean.FALSE;
+                    }
+                    if (result == null && method.getReturnType() == int.class)
+                    {
+                        return Integer.valueOf(0);
+                    }
+                    return result;
+                });
+        return type.cast(instance);
+    }
+
+    /**
+     * @return The number of calls of the method on all instances created
+     */
+    int getCalls(final String methodName)
+    {
+        synchronized (calls)
+        {
+            final AtomicInteger count = calls.get(methodName);
+            return count != null ? count.get() : 0;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.hello2morrow.sonargraph.integration.access.controller.IInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.controller.IModuleInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.model.IDuplicateCodeBlockIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IDuplicateCodeBlockOccurrence;
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueCategory;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueProvider;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
+import com.hello2morrow.sonargraph.integration.access.model.ISourceFile;
+import com.hello2morrow.sonargraph.integration.access.model.Severity;
+
+public final class ModuleIssuePartitionTest
+{
+    private final ModelProxies proxies = new ModelProxies();
+    private final IssueSelection selectAll = IssueSelection.create(key -> new String[0]);
+    private final IIssueProvider provider = proxies.create(IIssueProvider.class, "getPresentationName", "Core");
+
+    private IIssueType createIssueType(final String name, final String categoryName)
+    {
+        final IIssueCategory category = proxies.create(IIssueCategory.class, "getName", categoryName,
+                "getPresentationName", categoryName);
+        return proxies.create(IIssueType.class, "getName", name, "getPresentationName", name, "getCategory", category);
+    }
+
+    private IIssue createIssue(final IIssueType issueType, final Severity severity, final int line)
+    {
+        return proxies.create(IIssue.class, "getIssueType", issueType, "getSeverity", severity, "getLine",
+                Integer.valueOf(line), "getPresentationName", issueType.getPresentationName(), "getDescription",
+                "Line " + line, "getIssueProvider", provider);
+    }
+
+    private ISourceFile createSourceFile(final String rootDirectory, final String relativePath)
+    {
+        return proxies.create(ISourceFile.class, "getRelativeRootDirectory", rootDirectory, "getRelativePath",
+                relativePath, "getOriginalLocation", Optional.empty());
+    }
+
+    private IDuplicateCodeBlockOccurrence createOccurrence(final ISourceFile sourceFile, final int startLine,
+            final int blockSize)
+    {
+        return proxies.create(IDuplicateCodeBlockOccurrence.class, "getSourceFile", sourceFile, "getStartLine",
+                Integer.valueOf(startLine), "getBlockSize", Integer.valueOf(blockSize));
+    }
+
+    private ModuleIssuePartition createPartition(final Map<ISourceFile, List<IIssue>> sourceFileIssues,
+            final Map<String, List<IIssue>> directoryIssues)
+    {
+        final IModuleInfoProcessor moduleInfoProcessor = proxies.create(IModuleInfoProcessor.class,
+                "getIssuesForSourceFiles", sourceFileIssues, "getIssuesForDirectories", directoryIssues);
+        final IssueDescriptions issueDescriptions = new IssueDescriptions(ResolutionIndex
+                .create(proxies.create(IInfoProcessor.class, "getResolutions", Collections.emptyList())));
+        return ModuleIssuePartition.create(moduleInfoProcessor, new ModuleIssuePartition.IssueFilter(selectAll),
+                issueDescriptions, new StringPool());
+    }
+
+    @Test
+    public void testGroupingBySourceFileAndDirectory()
+    {
+        final IIssueType threshold = createIssueType("ThresholdViolation", "ThresholdViolation");
+        final ISourceFile a = createSourceFile("rootB", "x/A.java");
+        final ISourceFile b = createSourceFile("rootA", "y/B.java");
+        final ISourceFile c = createSourceFile("rootA", "a/C.java");
+        final IIssue a1 = createIssue(threshold, Severity.WARNING, 3);
+        final IIssue a2 = createIssue(threshold, Severity.WARNING, 0);
+        final IIssue b1 = createIssue(threshold, Severity.WARNING, 7);
+        final IIssue c1 = createIssue(threshold, Severity.WARNING, 1);
+        final IIssue dirA1 = createIssue(threshold, Severity.WARNING, 0);
+        final IIssue dirA2 = createIssue(threshold, Severity.WARNING, 0);
+        final IIssue dirB1 = createIssue(threshold, Severity.WARNING, 0);
+
+        final Map<ISourceFile, List<IIssue>> sourceFileIssues = new HashMap<>();
+        sourceFileIssues.put(a, Arrays.asList(a1, a2));
+        sourceFileIssues.put(b, Arrays.asList(b1));
+        sourceFileIssues.put(c, Arrays.asList(c1));
+        final Map<String, List<IIssue>> directoryIssues = new LinkedHashMap<>();
+        directoryIssues.put("src/b", Arrays.asList(dirB1));
+        directoryIssues.put("src/a", Arrays.asList(dirA1, dirA2));
+        final ModuleIssuePartition partition = createPartition(sourceFileIssues, directoryIssues);
+
+        assertEquals(7, partition.getNumberOfIssues());
+        assertEquals("Source files are ordered by root directory and path", Arrays.asList(c, b, a),
+                partition.getSourceFiles());
+        assertEquals(2, partition.getNumberOfRootDirectories());
+        assertEquals(0, partition.getRootDirectoryStart(0));
+        assertEquals(2, partition.getRootDirectoryEnd(0));
+        assertEquals(2, partition.getRootDirectoryStart(1));
+        assertEquals(3, partition.getRootDirectoryEnd(1));
+
+        assertEquals(2, partition.getNumberOfDirectories());
+        assertEquals("src/a", partition.getDirectory(0));
+        assertEquals("src/b", partition.getDirectory(1));
+        assertEquals(3, partition.getDirectoryFileId(0));
+
+        final String[] expectedDescriptions = { "Line 1", "Line 7", "Line 3", "Line 0", "Line 0", "Line 0", "Line 0" };
+        final int[] expectedFileIds = { 0, 1, 2, 2, 3, 3, 4 };
+        final int[] expectedLines = { 1, 7, 3, 1, 0, 0, 0 };
+        for (int position = 0; position < expectedDescriptions.length; position++)
+        {
+            assertEquals("Message at " + position, "[ThresholdViolation] " + expectedDescriptions[position] + " [Core]",
+                    partition.getMessage(position, ""));
+            assertEquals("File id at " + position, expectedFileIds[position], partition.getFileId(position));
+            assertEquals("Line at " + position, expectedLines[position], partition.getLine(position));
+            final int fileId = partition.getFileId(position);
+            assertTrue(partition.getStart(fileId) <= position && position < partition.getEnd(fileId));
+        }
+        assertEquals(0, partition.getStart(0));
+        assertEquals(7, partition.getEnd(4));
+    }
+
+    @Test
+    public void testIssueFilter()
+    {
+        final ModuleIssuePartition.IssueFilter filter = new ModuleIssuePartition.IssueFilter(selectAll);
+        final IIssueType threshold = createIssueType("ThresholdViolation", "ThresholdViolation");
+        final IIssueType workspace = createIssueType("WorkspaceProblem", "Workspace");
+
+        assertTrue(filter.test(createIssue(threshold, Severity.WARNING, 1)));
+        assertFalse("Ignored issue", filter.test(proxies.create(IIssue.class, "getIssueType", threshold,
+                "getSeverity", Severity.WARNING, "isIgnored", Boolean.TRUE)));
+        assertFalse("Ignored issue type category", filter.test(createIssue(workspace, Severity.WARNING, 1)));
+
+        final int categoryCalls = proxies.getCalls("getCategory");
+        assertTrue(filter.test(createIssue(threshold, Severity.ERROR, 2)));
+        assertFalse(filter.test(createIssue(workspace, Severity.ERROR, 2)));
+        assertEquals("Issue type checks are done once per issue type", categoryCalls,
+                proxies.getCalls("getCategory"));
+    }
+
+    @Test
+    public void testDuplicateCodeBlockOccurrences()
+    {
+        final IIssueType duplicateCode = createIssueType("DuplicateCode", "DuplicateCode");
+        final ISourceFile a = createSourceFile("root", "A.java");
+        final ISourceFile b = createSourceFile("root", "B.java");
+        final ISourceFile copyOfB = proxies.create(ISourceFile.class, "getRelativeRootDirectory", "other",
+                "getRelativePath", "B.java", "getOriginalLocation", Optional.of(b));
+        final IDuplicateCodeBlockIssue duplicate = proxies.create(IDuplicateCodeBlockIssue.class, "getIssueType",
+                duplicateCode, "getSeverity", Severity.WARNING, "getOccurrences",
+                Arrays.asList(createOccurrence(a, 10, 5), createOccurrence(b, 20, 6), createOccurrence(a, 40, 5),
+                        createOccurrence(copyOfB, 60, 6)),
+                "getPresentationName", "DuplicateCode", "getDescription", "Duplicate", "getIssueProvider", provider);
+
+        final Map<ISourceFile, List<IIssue>> sourceFileIssues = new LinkedHashMap<>();
+        sourceFileIssues.put(b, Collections.singletonList(duplicate));
+        sourceFileIssues.put(a, Collections.singletonList(duplicate));
+        final ModuleIssuePartition partition = createPartition(sourceFileIssues, Collections.emptyMap());
+
+        //One position per occurrence in the file, occurrences in copies count for the original file
+        assertEquals(4, partition.getNumberOfIssues());
+        assertEquals(Arrays.asList(a, b), partition.getSourceFiles());
+        final int[] expectedFileIds = { 0, 0, 1, 1 };
+        final int[] expectedLines = { 10, 40, 20, 60 };
+        final int[] expectedBlockSizes = { 5, 5, 6, 6 };
+        for (int position = 0; position < partition.getNumberOfIssues(); position++)
+        {
+            assertEquals("Message at " + position, "[DuplicateCode] Duplicate 2 more [Core]",
+                    partition.getMessage(position, "2 more"));
+            assertEquals("File id at " + position, expectedFileIds[position], partition.getFileId(position));
+            assertEquals("Line at " + position, expectedLines[position], partition.getLine(position));
+            assertEquals("Block size at " + position, expectedBlockSizes[position], partition.getBlockSize(position));
+        }
+        assertEquals(0, partition.getStart(0));
+        assertEquals(2, partition.getEnd(0));
+        assertEquals(2, partition.getStart(1));
+        assertEquals(4, partition.getEnd(1));
+
+        //The other occurrences of the first occurrence in A.java
+        assertEquals(3, partition.getOtherEnd(0) - partition.getOtherStart(0));
+        final int other = partition.getOtherStart(0);
+        assertSame(b, partition.getOtherSourceFile(other));
+        assertEquals(20, partition.getOtherLine(other));
+        assertEquals(6, partition.getOtherBlockSize(other));
+        assertSame(a, partition.getOtherSourceFile(other + 1));
+        assertEquals(40, partition.getOtherLine(other + 1));
+        assertSame(copyOfB, partition.getOtherSourceFile(other + 2));
+        assertEquals(60, partition.getOtherLine(other + 2));
+    }
+
+    @Test
+    public void testRuleKeyIndices()
+    {
+        final IIssueType threshold = createIssueType("ThresholdViolation", "ThresholdViolation");
+        final IIssueType cycle = createIssueType("NamespaceCycleGroup", "CycleGroup");
+        final ISourceFile a = createSourceFile("root", "A.java");
+        final IIssue warning1 = createIssue(threshold, Severity.WARNING, 1);
+        final IIssue cycle1 = createIssue(cycle, Severity.WARNING, 2);
+        final IIssue error1 = createIssue(threshold, Severity.ERROR, 3);
+        final IIssue warning2 = createIssue(threshold, Severity.WARNING, 4);
+
+        final Map<ISourceFile, List<IIssue>> sourceFileIssues = new HashMap<>();
+        sourceFileIssues.put(a, Arrays.asList(warning1, cycle1, error1, warning2));
+        final ModuleIssuePartition partition = createPartition(sourceFileIssues, Collections.emptyMap());
+
+        //Type ids are assigned in the order the issue types occur
+        final int numberOfSeverities = Severity.values().length;
+        final int[] expectedIndices = { Severity.WARNING.ordinal(), numberOfSeverities + Severity.WARNING.ordinal(),
+                Severity.ERROR.ordinal(), Severity.WARNING.ordinal() };
+        final IIssue[] issues = { warning1, cycle1, error1, warning2 };
+        final List<String> ruleKeys = partition.getRuleKeys();
+        assertEquals(2 * numberOfSeverities, ruleKeys.size());
+        for (int position = 0; position < issues.length; position++)
+        {
+            final int index = partition.getRuleKeyIndex(position);
+            assertEquals("Rule key index at " + position, expectedIndices[position], index);
+            final String expectedKey = SonargraphBase.createRuleKeyToCheck(issues[position].getIssueType(),
+                    issues[position].getSeverity());
+            assertEquals("Rule key at " + position, expectedKey, ruleKeys.get(index));
+            assertEquals("Rule key at " + position, expectedKey, partition.getRuleKey(position));
+        }
+        assertSame("Rule keys are shared by issues of the same type and severity", partition.getRuleKey(0),
+                partition.getRuleKey(3));
+        assertFalse("Different rule keys per severity", partition.getRuleKey(0).equals(partition.getRuleKey(2)));
+        assertNull("Unused combinations have no rule key", ruleKeys.get(Severity.INFO.ordinal()));
+
+        assertSame(threshold, partition.getIssueType(2));
+        assertEquals(Severity.ERROR, partition.getSeverity(2));
+        assertEquals("No cycle group", partition.getCycleGroupStart(0), partition.getCycleGroupEnd(0));
+        assertEquals(1, partition.getCycleGroupEnd(1) - partition.getCycleGroupStart(1));
+        assertEquals(0, partition.getCycleGroupFileId(partition.getCycleGroupStart(1)));
+    }
+
+    @Test
+    public void testCycleGroupParticipants()
+    {
+        final IIssueType cycle = createIssueType("NamespaceCycleGroup", "CycleGroup");
+        final ISourceFile a = createSourceFile("root", "A.java");
+        final ISourceFile b = createSourceFile("root", "B.java");
+        final ISourceFile c = createSourceFile("root", "C.java");
+        final IIssue cycle1 = createIssue(cycle, Severity.WARNING, 1);
+        final IIssue cycle2 = createIssue(cycle, Severity.WARNING, 2);
+
+        final Map<ISourceFile, List<IIssue>> sourceFileIssues = new HashMap<>();
+        sourceFileIssues.put(a, Arrays.asList(cycle1));
+        sourceFileIssues.put(b, Arrays.asList(cycle1, cycle2));
+        sourceFileIssues.put(c, Arrays.asList(cycle2));
+        final ModuleIssuePartition partition = createPartition(sourceFileIssues, Collections.emptyMap());
+
+        //Positions: cycle1 on A, cycle1 and cycle2 on B, cycle2 on C
+        assertEquals(Arrays.asList(Integer.valueOf(0), Integer.valueOf(1)), getCycleGroupFileIds(partition, 0));
+        assertEquals(Arrays.asList(Integer.valueOf(0), Integer.valueOf(1)), getCycleGroupFileIds(partition, 1));
+        assertEquals(Arrays.asList(Integer.valueOf(1), Integer.valueOf(2)), getCycleGroupFileIds(partition, 2));
+        assertEquals(Arrays.asList(Integer.valueOf(1), Integer.valueOf(2)), getCycleGroupFileIds(partition, 3));
+    }
+
+    @Test
+    public void testCreateSourceFileIssue()
+    {
+        final IIssueType duplicateCode = createIssueType("DuplicateCode", "DuplicateCode");
+        final IIssueType cycle = createIssueType("NamespaceCycleGroup", "CycleGroup");
+        final ISourceFile a = createSourceFile("root", "A.java");
+        final ISourceFile b = createSourceFile("root", "B.java");
+        final ISourceFile outside = createSourceFile("other", "C.java");
+        final IDuplicateCodeBlockIssue duplicate = proxies.create(IDuplicateCodeBlockIssue.class, "getIssueType",
+                duplicateCode, "getSeverity", Severity.WARNING, "getOccurrences",
+                Arrays.asList(createOccurrence(a, 10, 5), createOccurrence(b, 20, 5), createOccurrence(outside, 30, 5)),
+                "getPresentationName", "DuplicateCode", "getDescription", "Duplicate", "getIssueProvider", provider);
+        final IIssue cycle1 = createIssue(cycle, Severity.WARNING, 2);
+
+        final Map<ISourceFile, List<IIssue>> sourceFileIssues = new LinkedHashMap<>();
+        sourceFileIssues.put(a, Arrays.asList(duplicate, cycle1));
+        sourceFileIssues.put(b, Arrays.asList(cycle1));
+        final ModuleIssuePartition partition = createPartition(sourceFileIssues, Collections.emptyMap());
+
+        //Files are referenced by their relative paths, the one outside of the project is not located
+        final Function<ISourceFile, String> locator = f -> f == outside ? null : f.getRelativePath();
+        final ModuleIssuePartition.IssueFactory<String, List<String>> factory = new ModuleIssuePartition.IssueFactory<>()
+        {
+            @Override
+            public List<String> createIssue(final int position, final String file, final int startLine,
+                    final int endLine, final String message)
+            {
+                return new ArrayList<>(Collections.singletonList(file + ":" + startLine + "-" + endLine + " " + message));
+            }
+
+            @Override
+            public void addSecondaryLocation(final List<String> issue, final String file, final int startLine,
+                    final int endLine, final String message)
+            {
+                issue.add(file + ":" + startLine + "-" + endLine + " " + message);
+            }
+        };
+
+        assertEquals(Arrays.asList("A.java:10-15 [DuplicateCode] Duplicate Duplicate of C.java line(s) 30-34 [Core]",
+                "B.java:20-25 " + ModuleIssuePartition.DUPLICATE_LOCATION_MESSAGE),
+                partition.createSourceFileIssue(0, "A.java", locator, factory));
+        assertEquals(Arrays.asList("A.java:2-3 [NamespaceCycleGroup] Line 2 [Core]",
+                "B.java:0-0 " + ModuleIssuePartition.CYCLE_GROUP_LOCATION_MESSAGE),
+                partition.createSourceFileIssue(1, "A.java", locator, factory));
+    }
+
+    private static List<Integer> getCycleGroupFileIds(final ModuleIssuePartition partition, final int position)
+    {
+        final List<Integer> result = new ArrayList<>();
+        for (int i = partition.getCycleGroupStart(position); i < partition.getCycleGroupEnd(position); i++)
+        {
+            result.add(Integer.valueOf(partition.getCycleGroupFileId(i)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.hello2morrow.sonargraph.integration.access.controller.IInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.controller.IModuleInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueCategory;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueProvider;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
+import com.hello2morrow.sonargraph.integration.access.model.ISourceFile;
+import com.hello2morrow.sonargraph.integration.access.model.Severity;
+
+public final class ModuleIssueSplitterTest
+{
+    private static final int NUMBER_OF_ROOT_DIRECTORIES = 3;
+    private static final int FILES_PER_ROOT_DIRECTORY = 40;
+
+    private final ModelProxies proxies = new ModelProxies();
+    private final ModuleIssueSplitter splitter = new ModuleIssueSplitter(4, 4, 16);
+
+    @After
+    public void after()
+    {
+        splitter.shutdown();
+    }
+
+    /**
+     * Creates source files in several root directories with 1 to 5 issues each.
+     */
+    private ModuleIssuePartition createPartition()
+    {
+        final IIssueCategory category = proxies.create(IIssueCategory.class, "getName", "ThresholdViolation");
+        final IIssueType issueType = proxies.create(IIssueType.class, "getName", "ThresholdViolation", "getCategory",
+                category);
+        final IIssueProvider provider = proxies.create(IIssueProvider.class, "getPresentationName", "Core");
+        final Map<ISourceFile, List<IIssue>> sourceFileIssues = new HashMap<>();
+        for (int root = 0; root < NUMBER_OF_ROOT_DIRECTORIES; root++)
+        {
+            for (int file = 0; file < FILES_PER_ROOT_DIRECTORY; file++)
+            {
+                final ISourceFile sourceFile = proxies.create(ISourceFile.class, "getRelativeRootDirectory",
+                        "root" + root, "getRelativePath", String.format("File%03d.java", Integer.valueOf(file)),
+                        "getOriginalLocation", Optional.empty());
+                final List<IIssue> issues = new ArrayList<>();
+                for (int line = 1; line <= (root + file) % 5 + 1; line++)
+                {
+                    issues.add(proxies.create(IIssue.class, "getIssueType", issueType, "getSeverity", Severity.WARNING,
+                            "getLine", Integer.valueOf(line), "getIssueProvider", provider));
+                }
+                sourceFileIssues.put(sourceFile, issues);
+            }
+        }
+        final IModuleInfoProcessor moduleInfoProcessor = proxies.create(IModuleInfoProcessor.class,
+                "getIssuesForSourceFiles", sourceFileIssues, "getIssuesForDirectories", Collections.emptyMap());
+        return ModuleIssuePartition.create(moduleInfoProcessor,
+                new ModuleIssuePartition.IssueFilter(IssueSelection.create(key -> new String[0])),
+                new IssueDescriptions(ResolutionIndex
+                        .create(proxies.create(IInfoProcessor.class, "getResolutions", Collections.emptyList()))),
+                new StringPool());
+    }
+
+    private static List<Integer> processSequentially(final ModuleIssuePartition partition)
+    {
+        final List<Integer> result = new ArrayList<>();
+        for (int fileId = 0; fileId < partition.getNumberOfSourceFiles(); fileId++)
+        {
+            for (int position = partition.getStart(fileId); position < partition.getEnd(fileId); position++)
+            {
+                result.add(Integer.valueOf(position));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testOrderIsSequentialOrder()
+    {
+        final ModuleIssuePartition partition = createPartition();
+        assertEquals(NUMBER_OF_ROOT_DIRECTORIES, partition.getNumberOfRootDirectories());
+        assertTrue("Module must be split", splitter.isSplit(partition));
+
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final List<Integer> result = new ArrayList<>();
+        splitter.<Integer> run(partition, (fileId, fileSink) ->
+        {
+            threads.add(Thread.currentThread().getName());
+            for (int position = partition.getStart(fileId); position < partition.getEnd(fileId); position++)
+            {
+                fileSink.accept(Integer.valueOf(position));
+            }
+        }, () -> false, result::add);
+
+        assertEquals("Results must be passed on in the order of sequential processing", processSequentially(partition),
+                result);
+        assertFalse("Source files must not be processed on the calling thread",
+                threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void testCancellation()
+    {
+        final ModuleIssuePartition partition = createPartition();
+        final AtomicBoolean isCancelled = new AtomicBoolean();
+        final Set<Integer> processedFiles = ConcurrentHashMap.newKeySet();
+        final List<Integer> result = new ArrayList<>();
+        splitter.<Integer> run(partition, (fileId, fileSink) ->
+        {
+            processedFiles.add(Integer.valueOf(fileId));
+            if (fileId == 10)
+            {
+                isCancelled.set(true);
+            }
+            fileSink.accept(Integer.valueOf(fileId));
+        }, isCancelled::get, result::add);
+
+        assertTrue("Processing must stop after cancellation: " + processedFiles.size(),
+                processedFiles.size() < partition.getNumberOfSourceFiles());
+        assertEquals("Each processed file must be passed on", processedFiles.size(), result.size());
+        for (int i = 1; i < result.size(); i++)
+        {
+            assertTrue("Results must be passed on in file order", result.get(i - 1).intValue() < result.get(i).intValue());
+        }
+
+        final List<Integer> nothing = new ArrayList<>();
+        splitter.<Integer> run(partition, (fileId, fileSink) -> fileSink.accept(Integer.valueOf(fileId)), () -> true,
+                nothing::add);
+        assertTrue("No source file must be processed if cancelled before", nothing.isEmpty());
+    }
+}
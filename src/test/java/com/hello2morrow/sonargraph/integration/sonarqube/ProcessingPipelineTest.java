@@ -0,0 +1,142 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public final class ProcessingPipelineTest
+{
+    @Test(timeout = 10000)
+    public void testOrderIsPreserved()
+    {
+        final List<String> emitted = new ArrayList<>();
+        new ProcessingPipeline<Integer, String>("Test", 1, 2).run(sink ->
+        {
+            for (int i = 0; i < 100; i++)
+            {
+                sink.accept(Integer.valueOf(i));
+            }
+        }, (item, sink) ->
+        {
+            sink.accept(item + "a");
+            sink.accept(item + "b");
+        }, emitted::add);
+
+        assertEquals(200, emitted.size());
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(i + "a", emitted.get(2 * i));
+            assertEquals(i + "b", emitted.get(2 * i + 1));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFailingTransformerDoesNotBlockReader()
+    {
+        final RuntimeException failure = new RuntimeException("Transformer failed");
+        try
+        {
+            new ProcessingPipeline<Integer, Integer>("Test", 1, 1).run(sink ->
+            {
+                for (int i = 0; i < 100; i++)
+                {
+                    sink.accept(Integer.valueOf(i));
+                }
+            }, (item, sink) ->
+            {
+                if (item.intValue() == 3)
+                {
+                    throw failure;
+                }
+                sink.accept(item);
+            }, item ->
+            {
+                //Nothing to do
+            });
+            fail("Exception expected");
+        }
+        catch (final IllegalStateException e)
+        {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFailingEmitterStopsOtherStages()
+    {
+        final RuntimeException failure = new RuntimeException("Emitter failed");
+        try
+        {
+            new ProcessingPipeline<Integer, Integer>("Test", 1, 1).run(sink ->
+            {
+                for (int i = 0; i < 1000; i++)
+                {
+                    sink.accept(Integer.valueOf(i));
+                }
+            }, (item, sink) -> sink.accept(item), item ->
+            {
+                throw failure;
+            });
+            fail("Exception expected");
+        }
+        catch (final RuntimeException e)
+        {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFailingEmitterWaitsForBusyStage()
+    {
+        final RuntimeException failure = new RuntimeException("Emitter failed");
+        final AtomicBoolean isReaderFinished = new AtomicBoolean();
+        try
+        {
+            new ProcessingPipeline<Integer, Integer>("Test", 1, 1).run(sink ->
+            {
+                sink.accept(Integer.valueOf(0));
+                //Work that does not respond to interrupts
+                final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                while (System.nanoTime() < end)
+                {
+                    Thread.onSpinWait();
+                }
+                isReaderFinished.set(true);
+            }, (item, sink) -> sink.accept(item), item ->
+            {
+                throw failure;
+            });
+            fail("Exception expected");
+        }
+        catch (final RuntimeException e)
+        {
+            assertSame(failure, e);
+        }
+        assertTrue("Pipeline returned before the reader finished", isReaderFinished.get());
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public final class ProgressReporterTest
+{
+    @Test
+    public void testMessage()
+    {
+        final AtomicLong clock = new AtomicLong(0);
+        final ProgressReporter reporter = new ProgressReporter(4, 1000, clock::get);
+        assertTrue(reporter.createMessage(TimeUnit.SECONDS.toNanos(1))
+                .startsWith("0/4 module(s) processed, 0 issue(s) processed (0/s), ETA unknown"));
+
+        for (int i = 0; i < 50; i++)
+        {
+            reporter.issueEmitted();
+        }
+        reporter.moduleFinished();
+        assertEquals(1, reporter.getFinishedModules());
+        assertEquals(50, reporter.getEmittedIssues());
+
+        final String message = reporter.createMessage(TimeUnit.SECONDS.toNanos(10));
+        assertTrue(message, message.startsWith("1/4 module(s) processed, 50 issue(s) processed (5/s), ETA 30s, heap "));
+    }
+
+    @Test
+    public void testFormatDuration()
+    {
+        assertEquals("0s", ProgressReporter.formatDuration(0));
+        assertEquals("59s", ProgressReporter.formatDuration(59_999));
+        assertEquals("1m 05s", ProgressReporter.formatDuration(65_000));
+        assertEquals("61m 00s", ProgressReporter.formatDuration(3_660_000));
+    }
+}
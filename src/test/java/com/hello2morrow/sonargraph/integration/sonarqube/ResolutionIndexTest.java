@@ -0,0 +1,55 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ControllerFactory;
+import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
+import com.hello2morrow.sonargraph.integration.access.controller.ISystemInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.foundation.Result;
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+
+public final class ResolutionIndexTest
+{
+    @Test
+    public void testIndexMatchesResolutionsOfReport()
+    {
+        final ISonargraphSystemController controller = ControllerFactory.createController();
+        final Result result = controller
+                .loadSystemReport(new File("./src/test/test-project/target/sonargraph/sonargraph-sonarqube-report.xml"));
+        assertTrue("Failed to load report", result.isSuccess());
+
+        final ISystemInfoProcessor systemInfoProcessor = controller.createSystemInfoProcessor();
+        final ResolutionIndex index = ResolutionIndex.create(systemInfoProcessor);
+        assertEquals("Wrong number of issues with resolution", 4, index.size());
+
+        final List<IIssue> issues = systemInfoProcessor.getIssues(issue -> true);
+        for (final IIssue nextIssue : issues)
+        {
+            assertEquals("Resolution mismatch for issue '" + nextIssue.getPresentationName() + "'",
+                    systemInfoProcessor.getResolution(nextIssue) != null, index.getResolution(nextIssue) != null);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public final class SensorDiagnosticsTest
+{
+    @Test
+    public void testCountsAndSamples()
+    {
+        final SensorDiagnostics diagnostics = new SensorDiagnostics();
+        assertTrue(diagnostics.isEmpty());
+
+        for (int i = 0; i < 10; i++)
+        {
+            final int index = i;
+            diagnostics.add(SensorDiagnostics.Reason.SOURCE_FILE_NOT_FOUND, () -> "File " + index);
+        }
+        diagnostics.add(SensorDiagnostics.Reason.ISSUE_CREATION_FAILED, () -> "Issue",
+                new IllegalArgumentException("Invalid range"));
+        diagnostics.add(SensorDiagnostics.Reason.LINE_RANGE_SHORTENED, 5);
+        diagnostics.add(SensorDiagnostics.Reason.LINE_RANGE_OMITTED, 0);
+
+        assertFalse(diagnostics.isEmpty());
+        assertEquals(10, diagnostics.getCount(SensorDiagnostics.Reason.SOURCE_FILE_NOT_FOUND));
+        assertEquals(SensorDiagnostics.MAX_SAMPLES_PER_REASON,
+                diagnostics.getSamples(SensorDiagnostics.Reason.SOURCE_FILE_NOT_FOUND).size());
+        assertEquals("File 0", diagnostics.getSamples(SensorDiagnostics.Reason.SOURCE_FILE_NOT_FOUND).get(0));
+
+        assertEquals(1, diagnostics.getCount(SensorDiagnostics.Reason.ISSUE_CREATION_FAILED));
+        assertTrue(diagnostics.getSamples(SensorDiagnostics.Reason.ISSUE_CREATION_FAILED).get(0)
+                .contains("Invalid range"));
+
+        assertEquals(5, diagnostics.getCount(SensorDiagnostics.Reason.LINE_RANGE_SHORTENED));
+        assertTrue(diagnostics.getSamples(SensorDiagnostics.Reason.LINE_RANGE_SHORTENED).isEmpty());
+        assertEquals(0, diagnostics.getCount(SensorDiagnostics.Reason.LINE_RANGE_OMITTED));
+
+        diagnostics.logSummary();
+    }
+}
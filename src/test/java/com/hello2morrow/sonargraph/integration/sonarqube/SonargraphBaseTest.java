@@ -115,6 +115,16 @@ public final class SonargraphBaseTest
         assertEquals("Input", SonargraphBase.toLowerCase("input", false));
     }
 
+    @Test
+    public void testIndexOfGlobCharacter()
+    {
+        assertEquals(-1, SonargraphBase.indexOfGlobCharacter("target/sonargraph/sonargraph-sonarqube-report.xml"));
+        assertEquals(18, SonargraphBase.indexOfGlobCharacter("target/sonargraph/*.xml"));
+        assertEquals(7, SonargraphBase.indexOfGlobCharacter("target/**/report.xml"));
+        assertEquals(13, SonargraphBase.indexOfGlobCharacter("target/report?.xml"));
+        assertEquals(14, SonargraphBase.indexOfGlobCharacter("target/report-{a,b}.xml"));
+    }
+
     @Test
     public void testTrimDescription()
     {
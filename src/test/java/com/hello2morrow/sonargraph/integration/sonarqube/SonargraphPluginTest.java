@@ -80,6 +80,6 @@ public final class SonargraphPluginTest
 
         @SuppressWarnings("rawtypes")
         final List extensions = context.getExtensions();
-        assertEquals("Wrong number of extensions", 9, extensions.size());
+        assertEquals("Wrong number of extensions", 10, extensions.size());
     }
 }
\ No newline at end of file
@@ -21,14 +21,17 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.net.ServerSocket;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -53,6 +56,7 @@ import org.sonar.api.batch.rule.internal.NewActiveRule;
 import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
 import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.batch.sensor.issue.IssueLocation;
 import org.sonar.api.batch.sensor.measure.Measure;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.config.internal.MapSettings;
@@ -65,6 +69,7 @@ import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphRulesProvider
 public final class SonargraphSensorTest
 {
     private static final String REPORT = "./src/test/report/IntegrationSonarqube_2020-11-06_11-39-26.xml";
+    private static final String CACHED_MARKER = "(cached) ";
 
     private static final String DUMMY_CONTENT = "bla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla"
             + "\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla"
@@ -74,6 +79,13 @@ public final class SonargraphSensorTest
     private static final String SONARGRAPH_RULES_PROVIDER = "src/main/java/com/hello2morrow/sonargraph/integration/sonarqube/SonargraphRulesProvider.java";
     private static final String SONARGRAPH_RULES = "src/main/java/com/hello2morrow/sonargraph/integration/sonarqube/SonargraphRules.java";
 
+    private static final String ALARM_CLOCK_REPORT = "./src/test/smallTestProject/AlarmClock.xml";
+    private static final String ALARM_CLOCK_BASE = "./src/test/smallTestProject";
+    private static final String DUPLICATE_IN_FOUNDATION = "src/test/smallTestProject/AlarmClock/Foundation/src/main/java/com/h2m/common/observer/DuplicateInFoundation.java";
+    private static final String DUPLICATE_IN_MODEL = "src/test/smallTestProject/AlarmClock/Model/src/main/java/com/h2m/alarm/model/DuplicateInModel.java";
+    private static final String ALARM_TO_CONSOLE = "src/test/smallTestProject/AlarmClock/View/src/main/java/com/h2m/alarm/presentation/console/AlarmToConsole.java";
+    private static final String ALARM_TO_FILE = "src/test/smallTestProject/AlarmClock/View/src/main/java/com/h2m/alarm/presentation/file/AlarmToFile.java";
+
     private final SensorDescriptor sensorDescriptor = new SensorDescriptor()
     {
         @Override
@@ -279,6 +291,238 @@ public final class SonargraphSensorTest
         }
     }
 
+    @Test
+    public void testSonargraphSensorOnSeveralReportFiles() throws IOException
+    {
+        final List<String> paths = Arrays.asList(SONARGRAPH_BASE, SONARGRAPH_RULES, SONARGRAPH_RULES_PROVIDER);
+        final SensorContextTester singleReportContext = setupAndExecuteSensor(REPORT, paths);
+
+        final File reportsDirectory = tempFolder.newFolder("reports");
+        final File firstReport = new File(reportsDirectory, "first.xml");
+        final File secondReport = new File(reportsDirectory, "second.xml");
+        Files.copy(new File(REPORT).toPath(), firstReport.toPath());
+        Files.copy(new File(REPORT).toPath(), secondReport.toPath());
+
+        //Same system in both reports: system issues, system metrics and modules must only be processed once
+        final SensorContextTester listContext = setupAndExecuteSensor(
+                firstReport.getAbsolutePath() + "," + secondReport.getAbsolutePath(), paths);
+        final Measure<Integer> coreComponentsMetric = listContext.measure(listContext.module().key(),
+                SonargraphBase.createMetricKeyFromStandardName("CoreComponents"));
+        assertNotNull("Missing measure", coreComponentsMetric);
+        assertEquals("Wrong value", 21, coreComponentsMetric.value().intValue());
+        assertEquals("Wrong number of issues", singleReportContext.allIssues().size(),
+                listContext.allIssues().size());
+
+        final SensorContextTester globContext = setupAndExecuteSensor(reportsDirectory.getAbsolutePath() + "/*.xml",
+                paths);
+        assertEquals("Wrong number of issues", singleReportContext.allIssues().size(),
+                globContext.allIssues().size());
+    }
+
+    @Test
+    public void testSecondaryLocationsOfDuplicatesAndCycleGroups() throws IOException
+    {
+        final SensorContextTester context = setupAndExecuteSensor(ALARM_CLOCK_REPORT,
+                Arrays.asList(DUPLICATE_IN_FOUNDATION, DUPLICATE_IN_MODEL, ALARM_TO_CONSOLE, ALARM_TO_FILE),
+                Collections.singletonMap(SonargraphBase.SONARGRAPH_BASE_DIR_KEY, ALARM_CLOCK_BASE));
+
+        //The other occurrence is part of the project: it is a secondary location and not mentioned in the message
+        final Issue duplicate = getIssue(context, "DuplicateCodeBlock", DUPLICATE_IN_FOUNDATION);
+        assertTrue("Wrong message: " + duplicate.primaryLocation().message(),
+                duplicate.primaryLocation().message().endsWith("] 2 occurrences with 45 line(s) found in 2 file(s) [Core]"));
+        assertEquals("Wrong start line", 11, duplicate.primaryLocation().textRange().start().line());
+        assertEquals("Wrong end line", 56, duplicate.primaryLocation().textRange().end().line());
+        assertEquals("Wrong number of flows", 1, duplicate.flows().size());
+        assertEquals("Wrong number of locations", 1, duplicate.flows().get(0).locations().size());
+        final IssueLocation otherOccurrence = duplicate.flows().get(0).locations().get(0);
+        assertEquals("Wrong component", "projectKey:" + DUPLICATE_IN_MODEL, otherOccurrence.inputComponent().key());
+        assertEquals("Wrong message", ModuleIssuePartition.DUPLICATE_LOCATION_MESSAGE, otherOccurrence.message());
+        assertEquals("Wrong start line", 9, otherOccurrence.textRange().start().line());
+        assertEquals("Wrong end line", 54, otherOccurrence.textRange().end().line());
+
+        //The other participant of the cycle group is a secondary location referring to the whole file
+        final Issue cycleGroup = getIssue(context, "ComponentCycleGroup", ALARM_TO_CONSOLE);
+        assertTrue("Wrong message: " + cycleGroup.primaryLocation().message(),
+                cycleGroup.primaryLocation().message().endsWith("] 2 cyclic components [Core]"));
+        assertEquals("Wrong number of flows", 1, cycleGroup.flows().size());
+        assertEquals("Wrong number of locations", 1, cycleGroup.flows().get(0).locations().size());
+        final IssueLocation participant = cycleGroup.flows().get(0).locations().get(0);
+        assertEquals("Wrong component", "projectKey:" + ALARM_TO_FILE, participant.inputComponent().key());
+        assertEquals("Wrong message", ModuleIssuePartition.CYCLE_GROUP_LOCATION_MESSAGE, participant.message());
+        assertNull("Location must refer to the whole file", participant.textRange());
+    }
+
+    private static Issue getIssue(final SensorContextTester context, final String sonargraphIssueKey, final String path)
+    {
+        final String ruleKey = SonargraphBase.createRuleKey(sonargraphIssueKey);
+        final List<Issue> issues = context.allIssues().stream()
+                .filter(issue -> issue.ruleKey().rule().equals(ruleKey)
+                        && issue.primaryLocation().inputComponent().key().equals("projectKey:" + path))
+                .collect(Collectors.toList());
+        assertEquals("Wrong number of " + sonargraphIssueKey + " issues on " + path, 1, issues.size());
+        return issues.get(0);
+    }
+
+    @Test
+    public void testSonargraphSensorWithoutActiveRules() throws IOException
+    {
+        //No Sonargraph rules in the quality profile: metrics are still saved, issues are not processed
+        rulesBuilder = new ActiveRulesBuilder();
+        final SensorContextTester context = setupAndExecuteSensor(REPORT,
+                Arrays.asList(SONARGRAPH_BASE, SONARGRAPH_RULES, SONARGRAPH_RULES_PROVIDER));
+        final Measure<Integer> coreComponentsMetric = context.measure(context.module().key(),
+                SonargraphBase.createMetricKeyFromStandardName("CoreComponents"));
+        assertNotNull("Missing measure", coreComponentsMetric);
+        assertEquals("Wrong value", 21, coreComponentsMetric.value().intValue());
+        assertEquals("No issues expected", 0, context.allIssues().size());
+        assertEquals("No custom rules expected", 0, sonargraphRules.getRulesProvider().loadCustomRules().size());
+    }
+
+    @Test
+    public void testSonargraphSensorWithCache() throws IOException
+    {
+        final List<String> paths = Arrays.asList(SONARGRAPH_BASE, SONARGRAPH_RULES, SONARGRAPH_RULES_PROVIDER);
+        final File cacheDir = tempFolder.newFolder("cache");
+        final File indexFile = new File(tempFolder.getRoot(), "index/sonargraph-issues.idx");
+        final Map<String, String> settings = new HashMap<>();
+        settings.put(SonargraphBase.CACHE_DIR_KEY, cacheDir.getAbsolutePath());
+        settings.put(SonargraphBase.ISSUE_INDEX_PATH_KEY, indexFile.getAbsolutePath());
+
+        final SensorContextTester firstContext = setupAndExecuteSensor(REPORT, paths, settings);
+        assertEquals("One cache entry expected", 1, cacheDir.listFiles().length);
+        assertTrue("Issue index expected", indexFile.exists());
+        final IssueIndex firstIndex = IssueIndex.read(indexFile);
+        assertTrue("Indexed issues expected", firstIndex.size() > 0);
+
+        //Marks the cached messages, so that replayed issues can be told apart from issues created from the report
+        final File cacheEntry = cacheDir.listFiles()[0];
+        final IssueIndex cachedIssues = IssueIndex.read(cacheEntry);
+        final IssueIndex markedIssues = new IssueIndex();
+        for (final String nextPath : cachedIssues.getPaths())
+        {
+            for (final IssueIndex.Entry nextEntry : cachedIssues.get(nextPath))
+            {
+                markedIssues.add(nextPath, cachedIssues.getHash(nextPath),
+                        new IssueIndex.Entry(nextEntry.getRuleKey(), nextEntry.getStartLine(), nextEntry.getEndLine(),
+                                CACHED_MARKER + nextEntry.getMessage(), nextEntry.getSecondaryLocations()));
+            }
+        }
+        markedIssues.write(cacheEntry);
+
+        //Same report and unchanged files: the issues of the files are replayed from the cache
+        final SensorContextTester secondContext = setupAndExecuteSensor(REPORT, paths, settings);
+        assertEquals("Wrong number of issues", firstContext.allIssues().size(), secondContext.allIssues().size());
+        final long replayedIssues = secondContext.allIssues().stream()
+                .filter(i -> i.primaryLocation().message().startsWith(CACHED_MARKER)).count();
+        assertEquals("All file issues must be replayed from the cache", firstIndex.size(), replayedIssues);
+        assertEquals("One cache entry expected", 1, cacheDir.listFiles().length);
+        final IssueIndex secondIndex = IssueIndex.read(indexFile);
+        assertEquals("Wrong number of indexed issues", firstIndex.size(), secondIndex.size());
+        assertEquals("Wrong indexed files", firstIndex.getPaths(), secondIndex.getPaths());
+    }
+
+    @Test
+    public void testSonargraphSensorWithReportDaemon() throws IOException
+    {
+        final List<String> paths = Arrays.asList(SONARGRAPH_BASE, SONARGRAPH_RULES, SONARGRAPH_RULES_PROVIDER);
+        final SensorContextTester inProcessContext = setupAndExecuteSensor(REPORT, paths);
+
+        try (SonargraphReportDaemon daemon = new SonargraphReportDaemon(0,
+                Collections.singletonList(new File(REPORT).getParentFile())))
+        {
+            daemon.start();
+            final Map<String, String> settings = Collections.singletonMap(SonargraphBase.DAEMON_PORT_KEY,
+                    Integer.toString(daemon.getPort()));
+            final SensorContextTester daemonContext = setupAndExecuteSensor(REPORT, paths, settings);
+            assertEquals("Wrong number of issues", inProcessContext.allIssues().size(),
+                    daemonContext.allIssues().size());
+
+            //The report stays loaded for the next analysis
+            final SensorContextTester secondDaemonContext = setupAndExecuteSensor(REPORT, paths, settings);
+            assertEquals("Wrong number of issues", inProcessContext.allIssues().size(),
+                    secondDaemonContext.allIssues().size());
+        }
+    }
+
+    @Test
+    public void testCustomRulesRetention() throws IOException
+    {
+        final int customRulesCount = 3;
+        final List<String> paths = Arrays.asList(SONARGRAPH_BASE, SONARGRAPH_RULES, SONARGRAPH_RULES_PROVIDER);
+        final Map<String, String> settings = new HashMap<>();
+        settings.put(SonargraphBase.CUSTOM_RULES_RETENTION_KEY, "1");
+        settings.put(SonargraphBase.CACHE_DIR_KEY, tempFolder.newFolder("cache").getAbsolutePath());
+
+        setupAndExecuteSensor(REPORT, paths, settings);
+        assertEquals("Wrong number of custom rules", customRulesCount,
+                sonargraphRules.getRulesProvider().loadCustomRules().size());
+
+        //The issues are replayed from the cache: the custom rules are not seen, but must not be dropped
+        setupAndExecuteSensor(REPORT, paths, settings);
+        setupAndExecuteSensor(REPORT, paths, settings);
+        assertEquals("Custom rules must be kept for replayed issues", customRulesCount,
+                sonargraphRules.getRulesProvider().loadCustomRules().size());
+
+        //The daemon does not provide the issue types: the custom rules are not seen, but must not be dropped
+        try (SonargraphReportDaemon daemon = new SonargraphReportDaemon(0,
+                Collections.singletonList(new File(REPORT).getParentFile())))
+        {
+            daemon.start();
+            final Map<String, String> daemonSettings = new HashMap<>(settings);
+            daemonSettings.remove(SonargraphBase.CACHE_DIR_KEY);
+            daemonSettings.put(SonargraphBase.DAEMON_PORT_KEY, Integer.toString(daemon.getPort()));
+            setupAndExecuteSensor(REPORT, paths, daemonSettings);
+            setupAndExecuteSensor(REPORT, paths, daemonSettings);
+        }
+        assertEquals("Custom rules must be kept for the report daemon", customRulesCount,
+                sonargraphRules.getRulesProvider().loadCustomRules().size());
+
+        //A complete in-process analysis without cache sees the custom rules again
+        setupAndExecuteSensor(REPORT, paths,
+                Collections.singletonMap(SonargraphBase.CUSTOM_RULES_RETENTION_KEY, "1"));
+        assertEquals("Custom rules seen in the analysis must be kept", customRulesCount,
+                sonargraphRules.getRulesProvider().loadCustomRules().size());
+    }
+
+    @Test
+    public void testReportDaemonRejectsReportsOutsideReportDirectories() throws IOException
+    {
+        try (SonargraphReportDaemon daemon = new SonargraphReportDaemon(0,
+                Collections.singletonList(tempFolder.newFolder("reports"))))
+        {
+            daemon.start();
+            final ReportDaemonClient client = new ReportDaemonClient(daemon.getPort(),
+                    Collections.singletonList(new File(REPORT)), null, new MapSettings().asConfig());
+            try
+            {
+                client.querySystem();
+                fail("Report outside of the report directories must not be loaded");
+            }
+            catch (final IOException e)
+            {
+                assertTrue("Unexpected message: " + e.getMessage(),
+                        e.getMessage().contains("not within the report directories"));
+            }
+        }
+    }
+
+    @Test
+    public void testSonargraphSensorWithUnavailableReportDaemon() throws IOException
+    {
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0))
+        {
+            port = socket.getLocalPort();
+        }
+
+        final List<String> paths = Arrays.asList(SONARGRAPH_BASE, SONARGRAPH_RULES, SONARGRAPH_RULES_PROVIDER);
+        final SensorContextTester inProcessContext = setupAndExecuteSensor(REPORT, paths);
+        final SensorContextTester fallbackContext = setupAndExecuteSensor(REPORT, paths,
+                Collections.singletonMap(SonargraphBase.DAEMON_PORT_KEY, Integer.toString(port)));
+        assertEquals("Wrong number of issues", inProcessContext.allIssues().size(),
+                fallbackContext.allIssues().size());
+    }
+
     private void verifyCustomRule(final RuleDto ruleDto, final String key, final String name,
             final List<String> categoryTags, final String severity)
     {
@@ -290,6 +534,12 @@ public final class SonargraphSensorTest
 
     private SensorContextTester setupAndExecuteSensor(final String reportPath, final List<String> paths)
             throws IOException
+    {
+        return setupAndExecuteSensor(reportPath, paths, Collections.emptyMap());
+    }
+
+    private SensorContextTester setupAndExecuteSensor(final String reportPath, final List<String> paths,
+            final Map<String, String> additionalSettings) throws IOException
     {
         final File moduleBaseDir = new File(".").getCanonicalFile();
         final SensorContextTester context = SensorContextTester.create(moduleBaseDir);
@@ -303,6 +553,7 @@ public final class SonargraphSensorTest
         final MapSettings settings = new MapSettings();
         settings.setProperty(SonargraphBase.XML_REPORT_FILE_PATH_KEY, reportPath);
         settings.setProperty(SonargraphBase.SONARGRAPH_BASE_DIR_KEY, ".");
+        additionalSettings.forEach(settings::setProperty);
         context.setSettings(settings);
 
         final ActiveRules activeRules = rulesBuilder.build();
@@ -0,0 +1,122 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueCategory;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
+import com.hello2morrow.sonargraph.integration.access.model.INamedElement;
+import com.hello2morrow.sonargraph.integration.access.model.ISoftwareSystem;
+import com.hello2morrow.sonargraph.integration.access.model.Severity;
+
+public final class SystemIssueClassifierTest
+{
+    private final ModelProxies proxies = new ModelProxies();
+    private final ISoftwareSystem softwareSystem = proxies.create(ISoftwareSystem.class, "getName", "System");
+
+    private IIssueType createIssueType(final String categoryName, final Severity... supportedSeverities)
+    {
+        final IIssueCategory category = proxies.create(IIssueCategory.class, "getName", categoryName,
+                "getPresentationName", categoryName);
+        return proxies.create(IIssueType.class, "getName", categoryName + "Type", "getCategory", category,
+                "getSupportedSeverities", EnumSet.copyOf(Arrays.asList(supportedSeverities)));
+    }
+
+    private IIssue createIssue(final IIssueType issueType, final Severity severity, final boolean isIgnored,
+            final INamedElement... affectedElements)
+    {
+        return proxies.create(IIssue.class, "getIssueType", issueType, "getSeverity", severity, "isIgnored",
+                Boolean.valueOf(isIgnored), "getAffectedNamedElements", Arrays.asList(affectedElements));
+    }
+
+    private static IssueSelection selectAll()
+    {
+        return IssueSelection.create(key -> new String[0]);
+    }
+
+    @Test
+    public void testClassify()
+    {
+        final SystemIssueClassifier classifier = new SystemIssueClassifier(softwareSystem, selectAll());
+        final IIssueType qualityGate = createIssueType(SonargraphBase.QUALITY_GATE_ISSUE_CATEGORY, Severity.ERROR);
+        final IIssueType threshold = createIssueType("ThresholdViolation", Severity.WARNING);
+        final IIssueType setupProblem = createIssueType("SystemConfiguration", Severity.ERROR, Severity.INFO);
+        final IIssueType ignoredInfo = createIssueType("Workspace", Severity.INFO);
+        final INamedElement module = proxies.create(INamedElement.class, "getName", "Core");
+
+        assertEquals(SystemIssueClassifier.Classification.EMIT,
+                classifier.classify(createIssue(qualityGate, Severity.ERROR, false)));
+        assertEquals(SystemIssueClassifier.Classification.SKIP,
+                classifier.classify(createIssue(qualityGate, Severity.ERROR, true)));
+        assertEquals(SystemIssueClassifier.Classification.EMIT,
+                classifier.classify(createIssue(threshold, Severity.WARNING, false, module, softwareSystem)));
+        assertEquals(SystemIssueClassifier.Classification.SKIP,
+                classifier.classify(createIssue(threshold, Severity.WARNING, false, module)));
+        assertEquals(SystemIssueClassifier.Classification.IGNORED_SETUP_PROBLEM,
+                classifier.classify(createIssue(setupProblem, Severity.ERROR, false, softwareSystem)));
+        assertEquals("Setup problems are logged even if they are ignored",
+                SystemIssueClassifier.Classification.IGNORED_SETUP_PROBLEM,
+                classifier.classify(createIssue(setupProblem, Severity.INFO, true)));
+        assertEquals(SystemIssueClassifier.Classification.SKIP,
+                classifier.classify(createIssue(ignoredInfo, Severity.INFO, false, softwareSystem)));
+    }
+
+    @Test
+    public void testUnselectedIssues()
+    {
+        final IssueSelection selection = IssueSelection.create(
+                key -> SonargraphBase.ISSUE_SEVERITIES_EXCLUDE_KEY.equals(key) ? new String[] { "warning" }
+                        : new String[0]);
+        final SystemIssueClassifier classifier = new SystemIssueClassifier(softwareSystem, selection);
+        final IIssueType qualityGate = createIssueType(SonargraphBase.QUALITY_GATE_ISSUE_CATEGORY, Severity.ERROR,
+                Severity.WARNING);
+        final IIssueType setupProblem = createIssueType("SystemConfiguration", Severity.WARNING);
+
+        assertEquals(SystemIssueClassifier.Classification.EMIT,
+                classifier.classify(createIssue(qualityGate, Severity.ERROR, false)));
+        assertEquals(SystemIssueClassifier.Classification.SKIP,
+                classifier.classify(createIssue(qualityGate, Severity.WARNING, false)));
+        assertEquals(SystemIssueClassifier.Classification.IGNORED_SETUP_PROBLEM,
+                classifier.classify(createIssue(setupProblem, Severity.WARNING, false)));
+    }
+
+    @Test
+    public void testCategoryIsResolvedOncePerIssueType()
+    {
+        final SystemIssueClassifier classifier = new SystemIssueClassifier(softwareSystem, selectAll());
+        final IIssueType threshold = createIssueType("ThresholdViolation", Severity.WARNING);
+
+        classifier.classify(createIssue(threshold, Severity.WARNING, false, softwareSystem));
+        final int categoryCalls = proxies.getCalls("getCategory");
+        final int severityCalls = proxies.getCalls("getSupportedSeverities");
+        for (int i = 0; i < 10; i++)
+        {
+            assertEquals(SystemIssueClassifier.Classification.EMIT,
+                    classifier.classify(createIssue(threshold, Severity.WARNING, false, softwareSystem)));
+        }
+        assertEquals(categoryCalls, proxies.getCalls("getCategory"));
+        assertEquals(severityCalls, proxies.getCalls("getSupportedSeverities"));
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2021 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public final class TimeBudgetTest
+{
+    @Test
+    public void testUnlimited()
+    {
+        final AtomicLong clock = new AtomicLong();
+        final TimeBudget timeBudget = new TimeBudget(0, clock::get, () -> false);
+        clock.set(TimeUnit.HOURS.toNanos(10));
+        assertFalse("No time limit expected", timeBudget.isLimited());
+        assertFalse("Unlimited budget must not be exhausted", timeBudget.isExhausted());
+        assertNull("No reason expected", timeBudget.getExhaustedReason());
+    }
+
+    @Test
+    public void testBudgetExceeded()
+    {
+        final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+        final TimeBudget timeBudget = new TimeBudget(60, clock::get, () -> false);
+        assertTrue("Time limit expected", timeBudget.isLimited());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertFalse("Budget must not be exhausted yet", timeBudget.isExhausted());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertTrue("Budget must be exhausted", timeBudget.isExhausted());
+        assertEquals("Wrong reason", "Time budget of 60s has been exceeded", timeBudget.getExhaustedReason());
+    }
+
+    @Test
+    public void testCancelled()
+    {
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final TimeBudget timeBudget = new TimeBudget(0, () -> 0L, cancelled::get);
+        assertFalse("Budget must not be exhausted yet", timeBudget.isExhausted());
+
+        cancelled.set(true);
+        assertTrue("Budget must be exhausted", timeBudget.isExhausted());
+        cancelled.set(false);
+        assertTrue("Budget must stay exhausted", timeBudget.isExhausted());
+        assertEquals("Wrong reason", "Analysis has been cancelled", timeBudget.getExhaustedReason());
+    }
+}